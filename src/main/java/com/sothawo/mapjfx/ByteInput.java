@@ -0,0 +1,140 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Internal helper class. Sequential byte access either to a file that is memory mapped in consecutive windows, so that
+ * files larger than 2GB can be read, or to an InputStream that is read into a buffer.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+final class ByteInput implements Closeable {
+
+    /** marker for the end of the input. */
+    static final int EOF = -1;
+
+    /** buffer size when reading from a stream. */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /** the channel of a mapped file, null when reading from a stream */
+    private final FileChannel channel;
+    /** the stream, null when reading from a file */
+    private final InputStream inputStream;
+    /** size of the mapped windows */
+    private final long windowSize;
+    /** position in the file of the next window */
+    private long nextWindowPosition;
+    /** the current window or stream buffer */
+    private ByteBuffer buffer;
+
+    private ByteInput(final FileChannel channel, final InputStream inputStream, final long windowSize) {
+        this.channel = channel;
+        this.inputStream = inputStream;
+        this.windowSize = windowSize;
+        this.buffer = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * creates a ByteInput that maps the file.
+     *
+     * @param path
+     *         the file
+     * @param windowSize
+     *         the maximum size of a mapped window
+     * @return the ByteInput
+     * @throws IOException
+     *         if the file cannot be opened
+     */
+    static ByteInput mapped(final Path path, final int windowSize) throws IOException {
+        return new ByteInput(FileChannel.open(requireNonNull(path), StandardOpenOption.READ), null, windowSize);
+    }
+
+    /**
+     * creates a ByteInput reading from a stream.
+     *
+     * @param inputStream
+     *         the stream, it is closed when this object is closed
+     * @return the ByteInput
+     */
+    static ByteInput of(final InputStream inputStream) {
+        return new ByteInput(null, requireNonNull(inputStream), STREAM_BUFFER_SIZE);
+    }
+
+    /**
+     * @return the next byte as unsigned value or {@link #EOF}.
+     * @throws IOException
+     *         if reading fails
+     */
+    int read() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return EOF;
+        }
+        return buffer.get() & 0xff;
+    }
+
+    /**
+     * @return the next byte as unsigned value or {@link #EOF} without consuming it.
+     * @throws IOException
+     *         if reading fails
+     */
+    int peek() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return EOF;
+        }
+        return buffer.get(buffer.position()) & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        if (null != channel) {
+            final long size = channel.size();
+            if (nextWindowPosition >= size) {
+                return false;
+            }
+            final long length = Math.min(windowSize, size - nextWindowPosition);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, nextWindowPosition, length);
+            nextWindowPosition += length;
+            return true;
+        }
+        if (buffer.capacity() == 0) {
+            buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        }
+        final int numRead = inputStream.read(buffer.array(), 0, buffer.capacity());
+        if (numRead < 0) {
+            return false;
+        }
+        buffer.position(0).limit(numRead);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (null != channel) {
+            channel.close();
+        } else {
+            inputStream.close();
+        }
+    }
+}
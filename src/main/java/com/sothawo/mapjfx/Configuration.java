@@ -24,11 +24,19 @@ public class Configuration {
 
     private final boolean interactive;
     private final boolean showZoomControls;
+    private final boolean simplifyCoordinateLines;
+    private final boolean canvasLabels;
+    private final int maxRetainedMapTypes;
 
-    private Configuration(final Projection projection, final boolean interactive, final boolean showZoomControls) {
+    private Configuration(final Projection projection, final boolean interactive, final boolean showZoomControls,
+                          final boolean simplifyCoordinateLines, final boolean canvasLabels,
+                          final int maxRetainedMapTypes) {
         this.projection = projection;
         this.interactive = interactive;
         this.showZoomControls = showZoomControls && interactive;
+        this.simplifyCoordinateLines = simplifyCoordinateLines;
+        this.canvasLabels = canvasLabels;
+        this.maxRetainedMapTypes = maxRetainedMapTypes;
     }
 
     /**
@@ -44,6 +52,9 @@ public class Configuration {
             "projection=" + projection +
             ", interactive=" + interactive +
             ", showZoomControls=" + showZoomControls +
+            ", simplifyCoordinateLines=" + simplifyCoordinateLines +
+            ", canvasLabels=" + canvasLabels +
+            ", maxRetainedMapTypes=" + maxRetainedMapTypes +
             '}';
     }
 
@@ -69,7 +80,8 @@ public class Configuration {
             "\"projection\":" +
             '"' + projection.getOlName() + "\"," +
             "\"interactive\":" + getInteractive() + "," +
-            "\"showZoomControls\":" + showZoomControls() +
+            "\"showZoomControls\":" + showZoomControls() + "," +
+            "\"maxRetainedMapTypes\":" + maxRetainedMapTypes() +
             '}';
     }
 
@@ -80,10 +92,37 @@ public class Configuration {
         return showZoomControls;
     }
 
+    /**
+     * @return true if long CoordinateLines are shown in a variant that is simplified for the current zoom level. This
+     * changes the drawn geometry, so it is off by default.
+     */
+    public boolean simplifyCoordinateLines() {
+        return simplifyCoordinateLines;
+    }
+
+    /**
+     * @return true if MapLabels are drawn as text on a canvas layer instead of being html elements. Canvas labels
+     * scale to thousands of labels and are decluttered, but css is only used for font, colors, border and padding.
+     */
+    public boolean canvasLabels() {
+        return canvasLabels;
+    }
+
+    /**
+     * @return the number of map types whose layers are kept in the map after switching to another map type. Switching
+     * back to a kept map type just changes the layer visibility and reuses the tiles that were already loaded.
+     */
+    public int maxRetainedMapTypes() {
+        return maxRetainedMapTypes;
+    }
+
     public static final class ConfigurationBuilder {
         private Projection projection = Projection.WEB_MERCATOR;
         private boolean interactive = true;
         private boolean showZoomControls = true;
+        private boolean simplifyCoordinateLines = false;
+        private boolean canvasLabels = false;
+        private int maxRetainedMapTypes = 3;
 
         private ConfigurationBuilder() {
         }
@@ -104,8 +143,34 @@ public class Configuration {
             return this;
         }
 
+        public ConfigurationBuilder simplifyCoordinateLines(final boolean simplifyCoordinateLines) {
+            this.simplifyCoordinateLines = simplifyCoordinateLines;
+            return this;
+        }
+
+        public ConfigurationBuilder canvasLabels(final boolean canvasLabels) {
+            this.canvasLabels = canvasLabels;
+            return this;
+        }
+
+        /**
+         * @param maxRetainedMapTypes
+         *     the number of map types whose layers are kept, must be at least 1
+         * @return this object
+         * @throws IllegalArgumentException
+         *     if maxRetainedMapTypes is less than 1
+         */
+        public ConfigurationBuilder maxRetainedMapTypes(final int maxRetainedMapTypes) {
+            if (maxRetainedMapTypes < 1) {
+                throw new IllegalArgumentException("invalid number of retained map types: " + maxRetainedMapTypes);
+            }
+            this.maxRetainedMapTypes = maxRetainedMapTypes;
+            return this;
+        }
+
         public Configuration build() {
-            return new Configuration(projection, interactive, showZoomControls);
+            return new Configuration(projection, interactive, showZoomControls, simplifyCoordinateLines,
+                canvasLabels, maxRetainedMapTypes);
         }
     }
 }
@@ -20,14 +20,17 @@ import static java.util.Objects.requireNonNull;
 /**
  * Coordinates with longitude and latitude values. Tha class is finalmaking a Coordinate object immutable.
  *
+ * The values are stored as primitive doubles. {@link #latitude()} and {@link #longitude()} return them without
+ * boxing, and {@link #of(double, double)} creates a Coordinate without boxed arguments.
+ *
  * @author P.J.Meisch (pj.meisch@sothawo.com)
  */
 public final class Coordinate {
 
     /** latitude value */
-    private final Double latitude;
+    private final double latitude;
     /** longitude value */
-    private final Double longitude;
+    private final double longitude;
 
 
     /**
@@ -43,8 +46,35 @@ public final class Coordinate {
      *         if either value is null
      */
     public Coordinate(Double latitude, Double longitude) {
-        this.latitude = requireNonNull(latitude);
-        this.longitude = requireNonNull(longitude);
+        this(requireNonNull(latitude).doubleValue(), requireNonNull(longitude).doubleValue(), true);
+    }
+
+    /**
+     * internal constructor with primitive values.
+     *
+     * @param latitude
+     *         latitude of the coordinate
+     * @param longitude
+     *         longitude of the coordinate
+     * @param unused
+     *         only to distinguish from the public constructor
+     */
+    private Coordinate(final double latitude, final double longitude, final boolean unused) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * creates a coordinate from primitive values.
+     *
+     * @param latitude
+     *         latitude of the coordinate
+     * @param longitude
+     *         longitude of the coordinate
+     * @return the new Coordinate
+     */
+    public static Coordinate of(final double latitude, final double longitude) {
+        return new Coordinate(latitude, longitude, true);
     }
 
     public final Double getLatitude() {
@@ -55,10 +85,24 @@ public final class Coordinate {
         return longitude;
     }
 
+    /**
+     * @return the latitude as primitive value
+     */
+    public double latitude() {
+        return latitude;
+    }
+
+    /**
+     * @return the longitude as primitive value
+     */
+    public double longitude() {
+        return longitude;
+    }
+
     @Override
     public int hashCode() {
-        int result = latitude.hashCode();
-        result = 31 * result + longitude.hashCode();
+        int result = Double.hashCode(latitude);
+        result = 31 * result + Double.hashCode(longitude);
         return result;
     }
 
@@ -69,7 +113,9 @@ public final class Coordinate {
 
         final Coordinate that = (Coordinate) o;
 
-        return latitude.equals(that.latitude) && longitude.equals(that.longitude);
+        // same semantics as Double.equals()
+        return Double.doubleToLongBits(latitude) == Double.doubleToLongBits(that.latitude)
+                && Double.doubleToLongBits(longitude) == Double.doubleToLongBits(that.longitude);
     }
 
     @Override
@@ -80,8 +126,8 @@ public final class Coordinate {
     }
 
     public Coordinate normalize() {
-        Double l = getLongitude();
+        double l = longitude;
         while(l < -180.0) l += 360;
         while(l > 180.0) l -= 360;
-        return new Coordinate(latitude, l);    }
+        return of(latitude, l);    }
 }
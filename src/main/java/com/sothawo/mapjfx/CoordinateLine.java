@@ -17,8 +17,13 @@ package com.sothawo.mapjfx;
 
 import javafx.scene.paint.Color;
 
+import java.nio.DoubleBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static java.util.Objects.*;
@@ -28,6 +33,15 @@ import static java.util.Objects.*;
  * property that enables to switch the visibility on the map off without removing the CoordinateLine frmthe map.
  * Invisible CoordinateLines can easily be switched to visiblae again.
  *
+ * The coordinates are stored as packed latitude/longitude pairs in a double array, which needs 16 bytes per point
+ * instead of about 80 bytes for a list of Coordinate objects. They can be read without creating Coordinate objects by
+ * {@link #forEachCoordinate(CoordinateConsumer)} or the index based accessors.
+ *
+ * A CoordinateLine can be extended with {@link #appendCoordinate(double, double)} or
+ * {@link #appendCoordinates(double...)} and shortened with {@link #trimHead(int)}, for example for a live track. When
+ * the line is shown in a MapView, only the changed coordinates are sent to the map, the line does not need to be
+ * removed and re-added. These methods must then be called on the JavaFX application thread.
+ *
  * @author P.J.Meisch (pj.meisch@sothawo.com)
  */
 public class CoordinateLine extends MapElement {
@@ -43,8 +57,20 @@ public class CoordinateLine extends MapElement {
     private final static AtomicLong nextId = new AtomicLong(1);
     /** unique id for this object */
     private final String id;
-    /** the coordinates of the line */
-    private final List<Coordinate> coordinates = new ArrayList<>();
+    /** the coordinates of the line as latitude/longitude pairs, the used values start at offset */
+    private double[] coordinates;
+    /** index of the first used value in coordinates */
+    private int offset;
+    /** number of used values in coordinates */
+    private int length;
+    /** listeners that are informed about appended and trimmed coordinates */
+    private final List<CoordinatesListener> coordinatesListeners = new CopyOnWriteArrayList<>();
+    /** number of coordinates that were trimmed from the head since the line was created */
+    private long numTrimmed;
+    /** the last calculated simplification, it may not cover coordinates that were appended since */
+    private CoordinateLineSimplification simplification;
+    /** flag if a simplification is being calculated */
+    private boolean simplificationRunning;
     /** color of the line */
     private Color color;
     /** fill color of the line, only relevant when the line is closed */
@@ -64,12 +90,7 @@ public class CoordinateLine extends MapElement {
      *         if coordinates is null
      */
     public CoordinateLine(List<? extends Coordinate> coordinates) {
-        this.id = "coordinateline-" + nextId.getAndIncrement();
-        requireNonNull(coordinates).stream().forEach(this.coordinates::add);
-        // slightly transparent limegreen
-        this.color = DEFAULT_COLOR;
-        this.fillColor = DEFAULT_FILL_COLOR;
-        this.width = DEFAULT_WIDTH;
+        this(toLatLonArray(requireNonNull(coordinates)), false);
     }
 
     /**
@@ -85,6 +106,88 @@ public class CoordinateLine extends MapElement {
         this(Arrays.asList(requireNonNull(coordinates)));
     }
 
+    /**
+     * Creates a CoordinateLine from packed coordinate values.
+     *
+     * @param latLon
+     *         latitude/longitude pairs, the values are copied.
+     * @throws java.lang.NullPointerException
+     *         if latLon is null
+     * @throws java.lang.IllegalArgumentException
+     *         if latLon has an odd number of values
+     */
+    public CoordinateLine(final double[] latLon) {
+        this(checkPairs(requireNonNull(latLon).clone()), false);
+    }
+
+    /**
+     * Creates a CoordinateLine from packed coordinate values. The remaining values of the buffer are copied, the
+     * buffer's position is not changed.
+     *
+     * @param latLon
+     *         buffer with latitude/longitude pairs.
+     * @throws java.lang.NullPointerException
+     *         if latLon is null
+     * @throws java.lang.IllegalArgumentException
+     *         if latLon has an odd number of remaining values
+     */
+    public CoordinateLine(final DoubleBuffer latLon) {
+        this(checkPairs(toArray(requireNonNull(latLon))), false);
+    }
+
+    /**
+     * internal constructor that takes ownership of the passed array.
+     *
+     * @param latLon
+     *         the packed coordinates
+     * @param unused
+     *         only to distinguish from the public constructor
+     */
+    private CoordinateLine(final double[] latLon, final boolean unused) {
+        this(latLon, latLon.length);
+    }
+
+    /**
+     * internal constructor that takes ownership of the passed array, the values after length are free capacity.
+     *
+     * @param latLon
+     *         the packed coordinates
+     * @param length
+     *         the number of used values, must be even
+     */
+    CoordinateLine(final double[] latLon, final int length) {
+        this.id = "coordinateline-" + nextId.getAndIncrement();
+        this.coordinates = latLon;
+        this.length = length;
+        // slightly transparent limegreen
+        this.color = DEFAULT_COLOR;
+        this.fillColor = DEFAULT_FILL_COLOR;
+        this.width = DEFAULT_WIDTH;
+    }
+
+    private static double[] toLatLonArray(final List<? extends Coordinate> coordinates) {
+        final double[] latLon = new double[coordinates.size() * 2];
+        int i = 0;
+        for (final Coordinate coordinate : coordinates) {
+            latLon[i++] = coordinate.latitude();
+            latLon[i++] = coordinate.longitude();
+        }
+        return latLon;
+    }
+
+    private static double[] toArray(final DoubleBuffer buffer) {
+        final double[] values = new double[buffer.remaining()];
+        buffer.duplicate().get(values);
+        return values;
+    }
+
+    private static double[] checkPairs(final double[] latLon) {
+        if (latLon.length % 2 != 0) {
+            throw new IllegalArgumentException("odd number of coordinate values: " + latLon.length);
+        }
+        return latLon;
+    }
+
     public Color getColor() {
         return color;
     }
@@ -173,7 +276,7 @@ public class CoordinateLine extends MapElement {
     public String toString() {
         return "CoordinateLine{" +
                 "id='" + id + '\'' +
-                ", coordinates=" + coordinates +
+                ", numCoordinates=" + getNumCoordinates() +
                 ", color=" + color +
                 ", fillCclor=" + fillColor +
                 ", width=" + width +
@@ -191,6 +294,279 @@ public class CoordinateLine extends MapElement {
      * the internal list.
      */
     public Stream<Coordinate> getCoordinateStream() {
-        return coordinates.stream();
+        return IntStream.range(0, getNumCoordinates()).mapToObj(i -> Coordinate.of(getLatitude(i), getLongitude(i)));
+    }
+
+    /**
+     * @return the number of coordinates in this line.
+     */
+    public int getNumCoordinates() {
+        return length / 2;
+    }
+
+    /**
+     * @param index
+     *         index of the coordinate
+     * @return the latitude of the coordinate at the given index.
+     * @throws IndexOutOfBoundsException
+     *         if index is not valid
+     */
+    public double getLatitude(final int index) {
+        return coordinates[offset + Objects.checkIndex(index, getNumCoordinates()) * 2];
+    }
+
+    /**
+     * @param index
+     *         index of the coordinate
+     * @return the longitude of the coordinate at the given index.
+     * @throws IndexOutOfBoundsException
+     *         if index is not valid
+     */
+    public double getLongitude(final int index) {
+        return coordinates[offset + Objects.checkIndex(index, getNumCoordinates()) * 2 + 1];
+    }
+
+    /**
+     * @return a copy of the coordinates as latitude/longitude pairs.
+     */
+    public double[] toLatLonArray() {
+        return Arrays.copyOfRange(coordinates, offset, offset + length);
+    }
+
+    /**
+     * passes all coordinates to the consumer without creating Coordinate objects.
+     *
+     * @param consumer
+     *         the consumer
+     * @throws java.lang.NullPointerException
+     *         if consumer is null
+     */
+    public void forEachCoordinate(final CoordinateConsumer consumer) {
+        requireNonNull(consumer);
+        for (int i = offset, end = offset + length; i < end; i += 2) {
+            consumer.accept(coordinates[i], coordinates[i + 1]);
+        }
+    }
+
+    /**
+     * appends a coordinate to the end of the line.
+     *
+     * @param latitude
+     *         the latitude
+     * @param longitude
+     *         the longitude
+     * @return this object
+     */
+    public CoordinateLine appendCoordinate(final double latitude, final double longitude) {
+        ensureCapacity(2);
+        final int end = offset + length;
+        coordinates[end] = latitude;
+        coordinates[end + 1] = longitude;
+        length += 2;
+        fireAppended(end, 2);
+        return this;
+    }
+
+    /**
+     * appends coordinates to the end of the line.
+     *
+     * @param latLon
+     *         latitude/longitude pairs, the values are copied.
+     * @return this object
+     * @throws java.lang.NullPointerException
+     *         if latLon is null
+     * @throws java.lang.IllegalArgumentException
+     *         if latLon has an odd number of values
+     */
+    public CoordinateLine appendCoordinates(final double... latLon) {
+        checkPairs(requireNonNull(latLon));
+        if (latLon.length > 0) {
+            ensureCapacity(latLon.length);
+            final int end = offset + length;
+            System.arraycopy(latLon, 0, coordinates, end, latLon.length);
+            length += latLon.length;
+            fireAppended(end, latLon.length);
+        }
+        return this;
+    }
+
+    /**
+     * appends coordinates to the end of the line.
+     *
+     * @param coordinates
+     *         the coordinates to append
+     * @return this object
+     * @throws java.lang.NullPointerException
+     *         if coordinates is null
+     */
+    public CoordinateLine appendCoordinates(final List<? extends Coordinate> coordinates) {
+        return appendCoordinates(toLatLonArray(requireNonNull(coordinates)));
+    }
+
+    /**
+     * removes coordinates from the start of the line.
+     *
+     * @param count
+     *         the number of coordinates to remove
+     * @return this object
+     * @throws java.lang.IllegalArgumentException
+     *         if count is negative or greater than the number of coordinates
+     */
+    public CoordinateLine trimHead(final int count) {
+        if (count < 0 || count > getNumCoordinates()) {
+            throw new IllegalArgumentException("cannot trim " + count + " of " + getNumCoordinates() + " coordinates");
+        }
+        if (count > 0) {
+            numTrimmed += count;
+            offset += count * 2;
+            length -= count * 2;
+            if (length == 0) {
+                offset = 0;
+            }
+            coordinatesListeners.forEach(listener -> listener.headTrimmed(this, count));
+        }
+        return this;
+    }
+
+    /**
+     * makes sure that the given number of values can be stored after the used values. The used values are moved to
+     * the start of the array when enough space was freed by trimming, otherwise the array is grown.
+     *
+     * @param numValues
+     *         number of values to add
+     */
+    private void ensureCapacity(final int numValues) {
+        if (offset + length + numValues <= coordinates.length) {
+            return;
+        }
+        if (length + numValues <= coordinates.length && offset >= length) {
+            System.arraycopy(coordinates, offset, coordinates, 0, length);
+        } else {
+            final double[] grown = new double[Math.max(coordinates.length * 2, Math.max(length + numValues, 16))];
+            System.arraycopy(coordinates, offset, grown, 0, length);
+            coordinates = grown;
+        }
+        offset = 0;
+    }
+
+    /**
+     * @return the last calculated simplification, null if none was calculated yet.
+     */
+    CoordinateLineSimplification getSimplification() {
+        return simplification;
+    }
+
+    /**
+     * @return the number of coordinates that were trimmed from the head since the line was created.
+     */
+    long getNumTrimmed() {
+        return numTrimmed;
+    }
+
+    /**
+     * @return true if there is no simplification or if enough coordinates were appended since it was calculated.
+     */
+    boolean isSimplificationOutdated() {
+        if (null == simplification) {
+            return true;
+        }
+        final long covered = simplification.getFirst() + simplification.getNumPoints();
+        return numTrimmed + getNumCoordinates() - covered >= CoordinateLineSimplification.MIN_TAIL_POINTS;
+    }
+
+    /**
+     * starts calculating a new simplification in the given pool if the current one is outdated and no calculation is
+     * running. When there is a simplification that still covers the line's current last coordinates, it is extended
+     * with the appended coordinates, otherwise the whole line is processed. The coordinates are copied in the calling
+     * thread. The result must be set with {@link #publishSimplification(CoordinateLineSimplification)} in the thread
+     * that modifies the line.
+     *
+     * @param pool
+     *         the pool to run the calculation in
+     * @return the future simplification, null if no calculation was started
+     */
+    CompletableFuture<CoordinateLineSimplification> updateSimplification(final ForkJoinPool pool) {
+        if (simplificationRunning || !isSimplificationOutdated()) {
+            return null;
+        }
+        simplificationRunning = true;
+        final CoordinateLineSimplification previous = simplification;
+        final long first = numTrimmed;
+        final long lastCovered = null == previous ? -1 : previous.getFirst() + previous.getNumPoints() - 1;
+        if (null == previous || lastCovered < first) {
+            final double[] latLon = toLatLonArray();
+            return CompletableFuture.supplyAsync(() -> CoordinateLineSimplification.compute(latLon, pool, first), pool);
+        }
+        final int tailStart = offset + (int) (lastCovered - first) * 2;
+        final double[] tail = Arrays.copyOfRange(coordinates, tailStart, offset + length);
+        return CompletableFuture.supplyAsync(() -> previous.extend(tail, first, pool), pool);
+    }
+
+    /**
+     * sets the result of a calculation started with {@link #updateSimplification(ForkJoinPool)}.
+     *
+     * @param simplification
+     *         the new simplification, null if the calculation failed
+     */
+    void publishSimplification(final CoordinateLineSimplification simplification) {
+        if (null != simplification) {
+            this.simplification = simplification;
+        }
+        simplificationRunning = false;
+    }
+
+    private void fireAppended(final int from, final int numValues) {
+        coordinatesListeners.forEach(listener -> listener.coordinatesAppended(this, coordinates, from, numValues));
+    }
+
+    void addCoordinatesListener(final CoordinatesListener listener) {
+        coordinatesListeners.add(requireNonNull(listener));
+    }
+
+    void removeCoordinatesListener(final CoordinatesListener listener) {
+        coordinatesListeners.remove(listener);
+    }
+
+    /**
+     * Internal listener that is informed when coordinates are appended or trimmed.
+     */
+    interface CoordinatesListener {
+        /**
+         * called after coordinates were appended. The values must be read before the method returns.
+         *
+         * @param coordinateLine
+         *         the changed line
+         * @param latLon
+         *         array containing the appended latitude/longitude pairs
+         * @param from
+         *         index of the first appended value
+         * @param numValues
+         *         number of appended values
+         */
+        void coordinatesAppended(CoordinateLine coordinateLine, double[] latLon, int from, int numValues);
+
+        /**
+         * called after coordinates were removed from the start of the line.
+         *
+         * @param coordinateLine
+         *         the changed line
+         * @param count
+         *         number of removed coordinates
+         */
+        void headTrimmed(CoordinateLine coordinateLine, int count);
+    }
+
+    /**
+     * Consumer for coordinate values that does not need Coordinate objects.
+     */
+    @FunctionalInterface
+    public interface CoordinateConsumer {
+        /**
+         * @param latitude
+         *         the latitude
+         * @param longitude
+         *         the longitude
+         */
+        void accept(double latitude, double longitude);
     }
 }
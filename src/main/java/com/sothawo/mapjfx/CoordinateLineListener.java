@@ -28,18 +28,28 @@ final class CoordinateLineListener {
 
     /** listener for visibilty changes */
     private final ChangeListener<Boolean> visibileChangeListener;
+    /** listener for appended and trimmed coordinates */
+    private final CoordinateLine.CoordinatesListener coordinatesListener;
 
     /**
      * @param visibileChangeListener
      *     visibility change listener
+     * @param coordinatesListener
+     *     listener for coordinate changes
      * @throws NullPointerException
      *     if either argument is null
      */
-    public CoordinateLineListener(ChangeListener<Boolean> visibileChangeListener) {
+    public CoordinateLineListener(ChangeListener<Boolean> visibileChangeListener,
+                                  CoordinateLine.CoordinatesListener coordinatesListener) {
         this.visibileChangeListener = Objects.requireNonNull(visibileChangeListener);
+        this.coordinatesListener = Objects.requireNonNull(coordinatesListener);
     }
 
     public ChangeListener<Boolean> getVisibileChangeListener() {
         return visibileChangeListener;
     }
+
+    public CoordinateLine.CoordinatesListener getCoordinatesListener() {
+        return coordinatesListener;
+    }
 }
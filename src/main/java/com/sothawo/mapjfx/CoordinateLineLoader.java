@@ -0,0 +1,601 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Loads a {@link CoordinateLine} from a GPX, GeoJSON or CSV file. The data is parsed in one streaming pass directly
+ * into the packed representation of the line without creating Coordinate objects; CSV and GeoJSON files are memory
+ * mapped. In the same pass the extent of the track is computed and points that are closer than a minimum distance to
+ * the previously kept point can be dropped.
+ *
+ * <ul>
+ * <li>GPX: all trkpt and rtept elements in document order.</li>
+ * <li>GeoJSON: the positions of all "coordinates" members in document order, so a FeatureCollection is loaded as one
+ * line.</li>
+ * <li>CSV: one point per line, by default latitude and longitude in the first two columns separated by commas.
+ * Lines without numbers in these columns like headers are skipped.</li>
+ * </ul>
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public final class CoordinateLineLoader {
+
+    /** Logger for the class */
+    private static final Logger logger = LoggerFactory.getLogger(CoordinateLineLoader.class);
+
+    /** size of the mapped windows. */
+    private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    /** meters per degree latitude. */
+    private static final double METERS_PER_DEGREE = 111_195.0;
+    /** the loaded values are copied to an array of the exact size if more than 1/n of the used size is unused */
+    private static final int MAX_UNUSED_FRACTION = 8;
+    /** exact powers of ten for fast number parsing */
+    private static final double[] POWERS_OF_TEN = new double[23];
+    /** the key of GeoJSON coordinate members */
+    private static final byte[] COORDINATES_KEY = "coordinates".getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+        }
+    }
+
+    /** minimum distance in meters between kept points */
+    private double minDistance = 0.0;
+    /** separator for CSV columns */
+    private char csvSeparator = ',';
+    /** CSV column of the latitude */
+    private int csvLatitudeColumn = 0;
+    /** CSV column of the longitude */
+    private int csvLongitudeColumn = 1;
+    /** size of mapped windows */
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+
+    /**
+     * sets the minimum distance between two points of the loaded line, points closer to the previously kept point are
+     * dropped while loading. The last point is always kept. The default of 0 keeps all points.
+     *
+     * @param minDistance
+     *         the distance in meters
+     * @return this object
+     * @throws IllegalArgumentException
+     *         if minDistance is negative
+     */
+    public CoordinateLineLoader setMinDistance(final double minDistance) {
+        if (!(minDistance >= 0.0)) {
+            throw new IllegalArgumentException("minDistance must not be negative: " + minDistance);
+        }
+        this.minDistance = minDistance;
+        return this;
+    }
+
+    /**
+     * sets the separator for CSV columns, the default is a comma.
+     *
+     * @param csvSeparator
+     *         the separator
+     * @return this object
+     */
+    public CoordinateLineLoader setCsvSeparator(final char csvSeparator) {
+        this.csvSeparator = csvSeparator;
+        return this;
+    }
+
+    /**
+     * sets the CSV columns containing latitude and longitude, the default is 0 and 1.
+     *
+     * @param latitudeColumn
+     *         zero based column of the latitude
+     * @param longitudeColumn
+     *         zero based column of the longitude
+     * @return this object
+     * @throws IllegalArgumentException
+     *         if a column is negative or both are the same
+     */
+    public CoordinateLineLoader setCsvColumns(final int latitudeColumn, final int longitudeColumn) {
+        if (latitudeColumn < 0 || longitudeColumn < 0 || latitudeColumn == longitudeColumn) {
+            throw new IllegalArgumentException("invalid columns: " + latitudeColumn + ", " + longitudeColumn);
+        }
+        this.csvLatitudeColumn = latitudeColumn;
+        this.csvLongitudeColumn = longitudeColumn;
+        return this;
+    }
+
+    void setWindowSize(final int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * loads a file, the format is determined from the file extension.
+     *
+     * @param path
+     *         the file to load
+     * @return the result
+     * @throws IOException
+     *         if the file cannot be read or parsed
+     * @throws IllegalArgumentException
+     *         if the format cannot be determined from the file name
+     */
+    public Result load(final Path path) throws IOException {
+        return load(path, Format.forPath(requireNonNull(path))
+            .orElseThrow(() -> new IllegalArgumentException("unknown format for " + path)));
+    }
+
+    /**
+     * loads a file.
+     *
+     * @param path
+     *         the file to load
+     * @param format
+     *         the format of the file
+     * @return the result
+     * @throws IOException
+     *         if the file cannot be read or parsed
+     */
+    public Result load(final Path path, final Format format) throws IOException {
+        requireNonNull(path);
+        if (requireNonNull(format) == Format.GPX) {
+            return load(new BufferedInputStream(Files.newInputStream(path)), format);
+        }
+        try (final ByteInput input = ByteInput.mapped(path, windowSize)) {
+            return parse(input, format);
+        }
+    }
+
+    /**
+     * loads the data from a stream, the stream is closed after reading.
+     *
+     * @param inputStream
+     *         the stream to read
+     * @param format
+     *         the format of the data
+     * @return the result
+     * @throws IOException
+     *         if the data cannot be read or parsed
+     */
+    public Result load(final InputStream inputStream, final Format format) throws IOException {
+        requireNonNull(inputStream);
+        if (requireNonNull(format) == Format.GPX) {
+            try (inputStream) {
+                final Sink sink = new Sink(minDistance);
+                parseGpx(inputStream, sink);
+                return sink.toResult();
+            }
+        }
+        try (final ByteInput input = ByteInput.of(inputStream)) {
+            return parse(input, format);
+        }
+    }
+
+    private Result parse(final ByteInput input, final Format format) throws IOException {
+        final long start = System.nanoTime();
+        final Sink sink = new Sink(minDistance);
+        final Parser parser = new Parser(input, sink);
+        if (format == Format.CSV) {
+            parser.parseCsv(csvSeparator, csvLatitudeColumn, csvLongitudeColumn);
+        } else {
+            parser.parseGeoJson();
+        }
+        final Result result = sink.toResult();
+        if (logger.isDebugEnabled()) {
+            logger.debug("loaded {} of {} coordinates from {} in {} ms", result.getCoordinateLine().getNumCoordinates(),
+                result.getNumCoordinatesRead(), format, (System.nanoTime() - start) / 1_000_000);
+        }
+        return result;
+    }
+
+    private static void parseGpx(final InputStream inputStream, final Sink sink) throws IOException {
+        try {
+            final XMLInputFactory factory = XMLInputFactory.newFactory();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            final XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        final String name = reader.getLocalName();
+                        if ("trkpt".equals(name) || "rtept".equals(name)) {
+                            final String latitude = reader.getAttributeValue(null, "lat");
+                            final String longitude = reader.getAttributeValue(null, "lon");
+                            if (null != latitude && null != longitude) {
+                                try {
+                                    sink.add(Double.parseDouble(latitude.trim()), Double.parseDouble(longitude.trim()));
+                                } catch (NumberFormatException e) {
+                                    if (logger.isWarnEnabled()) {
+                                        logger.warn("invalid point lat={} lon={}", latitude, longitude);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("cannot parse GPX data", e);
+        }
+    }
+
+    /**
+     * The supported formats.
+     */
+    public enum Format {
+        GPX, GEOJSON, CSV;
+
+        /**
+         * determines the format from the file extension.
+         *
+         * @param path
+         *         the file
+         * @return the format if the extension is known
+         */
+        public static Optional<Format> forPath(final Path path) {
+            final Path fileName = requireNonNull(path).getFileName();
+            final String name = null == fileName ? "" : fileName.toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".gpx")) {
+                return Optional.of(GPX);
+            } else if (name.endsWith(".geojson") || name.endsWith(".json")) {
+                return Optional.of(GEOJSON);
+            } else if (name.endsWith(".csv") || name.endsWith(".txt")) {
+                return Optional.of(CSV);
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The result of loading.
+     */
+    public static final class Result {
+        private final CoordinateLine coordinateLine;
+        private final Extent extent;
+        private final long numCoordinatesRead;
+
+        private Result(final CoordinateLine coordinateLine, final Extent extent, final long numCoordinatesRead) {
+            this.coordinateLine = coordinateLine;
+            this.extent = extent;
+            this.numCoordinatesRead = numCoordinatesRead;
+        }
+
+        /**
+         * @return the loaded line
+         */
+        public CoordinateLine getCoordinateLine() {
+            return coordinateLine;
+        }
+
+        /**
+         * @return the extent of all read coordinates, empty if no coordinates were read.
+         */
+        public Optional<Extent> getExtent() {
+            return Optional.ofNullable(extent);
+        }
+
+        /**
+         * @return the number of read coordinates including the ones dropped because of the minimum distance.
+         */
+        public long getNumCoordinatesRead() {
+            return numCoordinatesRead;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                "coordinateLine=" + coordinateLine +
+                ", extent=" + extent +
+                ", numCoordinatesRead=" + numCoordinatesRead +
+                '}';
+        }
+    }
+
+    /**
+     * collects the coordinates into a growing array, computes the extent and drops points that are too close.
+     */
+    private static final class Sink {
+        private final double minDistanceSquared;
+        private double[] values = new double[2048];
+        private int size;
+        private long numRead;
+        private double minLatitude = Double.POSITIVE_INFINITY;
+        private double maxLatitude = Double.NEGATIVE_INFINITY;
+        private double minLongitude = Double.POSITIVE_INFINITY;
+        private double maxLongitude = Double.NEGATIVE_INFINITY;
+        /** the last dropped point, it is added at the end so that the line ends at the last point */
+        private boolean pending;
+        private double pendingLatitude;
+        private double pendingLongitude;
+
+        Sink(final double minDistance) {
+            this.minDistanceSquared = minDistance * minDistance;
+        }
+
+        void add(final double latitude, final double longitude) {
+            if (!(latitude >= -90.0 && latitude <= 90.0 && longitude >= -180.0 && longitude <= 180.0)) {
+                return;
+            }
+            numRead++;
+            minLatitude = Math.min(minLatitude, latitude);
+            maxLatitude = Math.max(maxLatitude, latitude);
+            minLongitude = Math.min(minLongitude, longitude);
+            maxLongitude = Math.max(maxLongitude, longitude);
+            if (size > 0 && minDistanceSquared > 0.0 && squaredDistance(latitude, longitude) < minDistanceSquared) {
+                pending = true;
+                pendingLatitude = latitude;
+                pendingLongitude = longitude;
+                return;
+            }
+            store(latitude, longitude);
+        }
+
+        private double squaredDistance(final double latitude, final double longitude) {
+            final double lastLatitude = values[size - 2];
+            final double dy = (latitude - lastLatitude) * METERS_PER_DEGREE;
+            final double dx = (longitude - values[size - 1]) * METERS_PER_DEGREE
+                * Math.cos(Math.toRadians((latitude + lastLatitude) / 2));
+            return dx * dx + dy * dy;
+        }
+
+        private void store(final double latitude, final double longitude) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = latitude;
+            values[size++] = longitude;
+            pending = false;
+        }
+
+        Result toResult() {
+            if (pending) {
+                store(pendingLatitude, pendingLongitude);
+            }
+            final Extent extent = numRead == 0 ? null
+                : Extent.forBounds(minLatitude, minLongitude, maxLatitude, maxLongitude);
+            // the growth array can be up to twice the needed size, for large files that is a lot of heap
+            if (values.length - size > size / MAX_UNUSED_FRACTION) {
+                values = Arrays.copyOf(values, size);
+            }
+            return new Result(new CoordinateLine(values, size), extent, numRead);
+        }
+    }
+
+    /**
+     * byte level parser for CSV and GeoJSON.
+     */
+    private static final class Parser {
+        private final ByteInput input;
+        private final Sink sink;
+        /** text of the current number for the fallback parsing */
+        private final StringBuilder number = new StringBuilder();
+
+        Parser(final ByteInput input, final Sink sink) {
+            this.input = input;
+            this.sink = sink;
+        }
+
+        void parseCsv(final char separator, final int latitudeColumn, final int longitudeColumn) throws IOException {
+            final int lastColumn = Math.max(latitudeColumn, longitudeColumn);
+            while (input.peek() != ByteInput.EOF) {
+                double latitude = Double.NaN;
+                double longitude = Double.NaN;
+                int column = 0;
+                int c;
+                while ((c = input.peek()) != ByteInput.EOF && c != '\n') {
+                    if (c == separator) {
+                        input.read();
+                        column++;
+                    } else if (column > lastColumn) {
+                        skipLine();
+                        break;
+                    } else if (column == latitudeColumn || column == longitudeColumn) {
+                        skipBlanks(separator);
+                        final double value = readNumber();
+                        skipBlanks(separator);
+                        c = input.peek();
+                        if (Double.isNaN(value) || !(c == separator || c == '\n' || c == ByteInput.EOF)) {
+                            skipLine();
+                            break;
+                        }
+                        if (column == latitudeColumn) {
+                            latitude = value;
+                        } else {
+                            longitude = value;
+                        }
+                    } else {
+                        input.read();
+                    }
+                }
+                if (input.peek() == '\n') {
+                    input.read();
+                }
+                if (!Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+                    sink.add(latitude, longitude);
+                }
+            }
+        }
+
+        private void skipBlanks(final char separator) throws IOException {
+            int c;
+            while ((c = input.peek()) != separator && (c == ' ' || c == '\t' || c == '\r' || c == '"')) {
+                input.read();
+            }
+        }
+
+        private void skipLine() throws IOException {
+            int c;
+            while ((c = input.peek()) != ByteInput.EOF && c != '\n') {
+                input.read();
+            }
+        }
+
+        void parseGeoJson() throws IOException {
+            int c;
+            while ((c = input.read()) != ByteInput.EOF) {
+                if (c == '"' && readStringMatching(COORDINATES_KEY)) {
+                    skipWhitespace();
+                    if (input.peek() == ':') {
+                        input.read();
+                        skipWhitespace();
+                        if (input.peek() == '[') {
+                            parseCoordinateArray();
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * reads the rest of a JSON string whose opening quote was read.
+         *
+         * @return true if the string equals the key
+         */
+        private boolean readStringMatching(final byte[] key) throws IOException {
+            int index = 0;
+            boolean matches = true;
+            int c;
+            while ((c = input.read()) != ByteInput.EOF && c != '"') {
+                if (c == '\\') {
+                    input.read();
+                    matches = false;
+                } else if (matches) {
+                    matches = index < key.length && key[index++] == c;
+                }
+            }
+            return matches && index == key.length;
+        }
+
+        /**
+         * parses a nested array of positions, the opening bracket was peeked.
+         */
+        private void parseCoordinateArray() throws IOException {
+            input.read();
+            skipWhitespace();
+            if (input.peek() == '[') {
+                int c;
+                do {
+                    skipWhitespace();
+                    if (input.peek() == '[') {
+                        parseCoordinateArray();
+                    }
+                    skipWhitespace();
+                } while ((c = input.read()) == ',');
+                if (c != ']') {
+                    throw new IOException("invalid GeoJSON coordinates, unexpected " + describe(c));
+                }
+            } else {
+                // a position: longitude, latitude and an optional altitude
+                final double longitude = readNumber();
+                skipWhitespace();
+                double latitude = Double.NaN;
+                if (input.peek() == ',') {
+                    input.read();
+                    skipWhitespace();
+                    latitude = readNumber();
+                }
+                int c;
+                while ((c = input.read()) != ']') {
+                    if (c == ByteInput.EOF) {
+                        throw new IOException("invalid GeoJSON coordinates, unexpected end of input");
+                    }
+                }
+                sink.add(latitude, longitude);
+            }
+        }
+
+        private static String describe(final int c) {
+            return c == ByteInput.EOF ? "end of input" : "'" + (char) c + "'";
+        }
+
+        private void skipWhitespace() throws IOException {
+            int c;
+            while ((c = input.peek()) == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                input.read();
+            }
+        }
+
+        /**
+         * reads a decimal number. Numbers with up to 15 significant digits and no exponent are converted by dividing by
+         * an exact power of ten which is correctly rounded, all others are parsed with Double.parseDouble.
+         *
+         * @return the number or NaN if there is no valid number at the current position.
+         */
+        private double readNumber() throws IOException {
+            number.setLength(0);
+            long mantissa = 0;
+            int numDigits = 0;
+            int numFractionDigits = 0;
+            boolean fraction = false;
+            boolean simple = true;
+            boolean anyDigit = false;
+            int c = input.peek();
+            if (c == '-' || c == '+') {
+                number.append((char) input.read());
+                c = input.peek();
+            }
+            while (true) {
+                if (c >= '0' && c <= '9') {
+                    anyDigit = true;
+                    if (mantissa != 0 || c != '0') {
+                        numDigits++;
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (fraction) {
+                        numFractionDigits++;
+                    }
+                } else if (c == '.' && !fraction) {
+                    fraction = true;
+                } else if (c == 'e' || c == 'E' || ((c == '-' || c == '+') && !simple)) {
+                    simple = false;
+                } else {
+                    break;
+                }
+                number.append((char) input.read());
+                c = input.peek();
+            }
+            if (!anyDigit) {
+                return Double.NaN;
+            }
+            if (simple && numDigits <= 15 && numFractionDigits < POWERS_OF_TEN.length) {
+                final double value = mantissa / POWERS_OF_TEN[numFractionDigits];
+                return number.charAt(0) == '-' ? -value : value;
+            }
+            try {
+                return Double.parseDouble(number.toString());
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+    }
+}
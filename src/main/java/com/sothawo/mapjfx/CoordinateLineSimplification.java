@@ -0,0 +1,322 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Multi-resolution Douglas-Peucker simplification of packed latitude/longitude values. The line is processed once
+ * without a tolerance, recording for every point the distance at which it was kept (its significance). The
+ * simplified variant for a zoom level then just contains the points whose significance is at least the size of one
+ * pixel at that zoom level. Distances are measured in web mercator meters. The variants are cached.
+ *
+ * A simplification is immutable and covers the points of a line from an absolute index, which counts the points that
+ * were trimmed from the line's head, up to the points the line had when it was calculated. Appended points are added
+ * with {@link #extend(double[], long, ForkJoinPool)}, which only processes the new tail from the last covered point
+ * on; that point is kept at all zoom levels.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+final class CoordinateLineSimplification {
+
+    /** size of one pixel in web mercator meters at zoom level 0 with 256 pixel tiles. */
+    static final double RESOLUTION_AT_ZOOM_0 = 156_543.03392804097;
+    /** from this zoom level on the full geometry is used. */
+    static final int FULL_GEOMETRY_ZOOM = 17;
+    /** number of appended points from which on a simplification should be extended. */
+    static final int MIN_TAIL_POINTS = 1_000;
+    /** segments with fewer points are processed in the current task. */
+    private static final int SEQUENTIAL_THRESHOLD = 8_192;
+    private static final double EARTH_RADIUS = 6_378_137.0;
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    /** absolute index of the first point. */
+    private final long first;
+    /** squared distance at which a point is kept, infinite for the end points. */
+    private final double[] significance;
+    /** cached indices per zoom level, null entries are not yet calculated. */
+    private final int[][] indicesPerZoom = new int[FULL_GEOMETRY_ZOOM][];
+
+    private CoordinateLineSimplification(final double[] significance, final long first) {
+        this.significance = significance;
+        this.first = first;
+    }
+
+    /**
+     * calculates the significance of all points.
+     *
+     * @param latLon
+     *         latitude/longitude pairs
+     * @param pool
+     *         the pool to run the calculation in
+     * @return the simplification
+     */
+    static CoordinateLineSimplification compute(final double[] latLon, final ForkJoinPool pool) {
+        return compute(latLon, pool, 0);
+    }
+
+    /**
+     * calculates the significance of all points.
+     *
+     * @param latLon
+     *         latitude/longitude pairs
+     * @param pool
+     *         the pool to run the calculation in
+     * @param first
+     *         the absolute index of the first point
+     * @return the simplification
+     */
+    static CoordinateLineSimplification compute(final double[] latLon, final ForkJoinPool pool, final long first) {
+        final int numPoints = latLon.length / 2;
+        final double[] x = new double[numPoints];
+        final double[] y = new double[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            final double latitude = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latLon[2 * i]));
+            x[i] = EARTH_RADIUS * Math.toRadians(latLon[2 * i + 1]);
+            y[i] = EARTH_RADIUS * Math.log(Math.tan(Math.PI / 4 + Math.toRadians(latitude) / 2));
+        }
+        final double[] significance = new double[numPoints];
+        if (numPoints > 0) {
+            significance[0] = Double.POSITIVE_INFINITY;
+            significance[numPoints - 1] = Double.POSITIVE_INFINITY;
+        }
+        if (numPoints > 2) {
+            pool.invoke(new SignificanceTask(x, y, significance, 0, numPoints - 1, Double.POSITIVE_INFINITY));
+        }
+        return new CoordinateLineSimplification(significance, first);
+    }
+
+    /**
+     * creates a simplification for a line that was trimmed and extended since this one was calculated. The points
+     * before newFirst are dropped and the significance of the tail is calculated for the tail only.
+     *
+     * @param tail
+     *         latitude/longitude pairs starting with the last point of this simplification
+     * @param newFirst
+     *         the absolute index of the line's first point, must not be after the last point of this simplification
+     * @param pool
+     *         the pool to run the calculation in
+     * @return the new simplification
+     */
+    CoordinateLineSimplification extend(final double[] tail, final long newFirst, final ForkJoinPool pool) {
+        final double[] tailSignificance = compute(tail, pool).significance;
+        final int skip = (int) (Math.max(newFirst, first) - first);
+        final int keep = significance.length - skip;
+        final double[] merged = new double[keep + Math.max(0, tailSignificance.length - 1)];
+        System.arraycopy(significance, skip, merged, 0, keep);
+        if (tailSignificance.length > 1) {
+            System.arraycopy(tailSignificance, 1, merged, keep, tailSignificance.length - 1);
+        }
+        // the new first point is an end point of the line now
+        merged[0] = Double.POSITIVE_INFINITY;
+        return new CoordinateLineSimplification(merged, first + skip);
+    }
+
+    /**
+     * @param zoom
+     *         the zoom level
+     * @return the tolerance in meters for the zoom level, the size of one pixel.
+     */
+    static double toleranceForZoom(final int zoom) {
+        return RESOLUTION_AT_ZOOM_0 / Math.pow(2, Math.max(0, zoom));
+    }
+
+    /**
+     * @return the absolute index of the first point.
+     */
+    long getFirst() {
+        return first;
+    }
+
+    /**
+     * @return the number of points that are covered.
+     */
+    int getNumPoints() {
+        return significance.length;
+    }
+
+    /**
+     * returns the indices of the points to draw at a zoom level.
+     *
+     * @param zoom
+     *         the zoom level
+     * @return the ascending indices relative to the first point, or null if the full geometry should be used. The
+     * arrays are cached, so the same array is returned for the same variant.
+     */
+    int[] indicesForZoom(final int zoom) {
+        if (zoom >= FULL_GEOMETRY_ZOOM) {
+            return null;
+        }
+        final int level = Math.max(0, zoom);
+        int[] indices = indicesPerZoom[level];
+        if (null == indices) {
+            indices = filter(toleranceForZoom(level));
+            indicesPerZoom[level] = indices;
+        }
+        return indices.length == significance.length ? null : indices;
+    }
+
+    /**
+     * converts the indices of a variant to indices of the line's current coordinates. Trimmed coordinates are
+     * dropped, the line's first coordinate and the coordinates that were appended after this simplification was
+     * calculated are added.
+     *
+     * @param variant
+     *         indices relative to the first point, as returned by {@link #indicesForZoom(int)}
+     * @param numTrimmed
+     *         the number of coordinates that were trimmed from the line's head
+     * @param numCoordinates
+     *         the current number of coordinates of the line
+     * @return the ascending indices of the line's coordinates to show
+     */
+    int[] toLineIndices(final int[] variant, final long numTrimmed, final int numCoordinates) {
+        final long start = first - numTrimmed;
+        final int tailStart = (int) Math.max(0, start + significance.length);
+        final int[] indices = new int[variant.length + 1 + Math.max(0, numCoordinates - tailStart)];
+        int count = 0;
+        for (final int relative : variant) {
+            final long index = start + relative;
+            if (index >= 0 && index < numCoordinates) {
+                if (count == 0 && index > 0) {
+                    indices[count++] = 0;
+                }
+                indices[count++] = (int) index;
+            }
+        }
+        for (int i = count == 0 ? 0 : Math.max(tailStart, indices[count - 1] + 1); i < numCoordinates; i++) {
+            indices[count++] = i;
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
+    /**
+     * @param tolerance
+     *         the tolerance in meters
+     * @return the indices of the points that are kept with the given tolerance.
+     */
+    int[] filter(final double tolerance) {
+        final double squaredTolerance = tolerance * tolerance;
+        final int[] indices = new int[significance.length];
+        int count = 0;
+        for (int i = 0; i < significance.length; i++) {
+            if (significance[i] >= squaredTolerance) {
+                indices[count++] = i;
+            }
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
+    /**
+     * Douglas-Peucker on a segment. Each point gets the squared distance from the segment in which it was the
+     * farthest point, limited by the significance of the enclosing segment so that a point is never kept without the
+     * points that were kept before it. Large segments are split into subtasks.
+     */
+    private static final class SignificanceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] x;
+        private final double[] y;
+        private final double[] significance;
+        private final int first;
+        private final int last;
+        private final double limit;
+
+        SignificanceTask(final double[] x, final double[] y, final double[] significance, final int first,
+                         final int last, final double limit) {
+            this.x = x;
+            this.y = y;
+            this.significance = significance;
+            this.first = first;
+            this.last = last;
+            this.limit = limit;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first < SEQUENTIAL_THRESHOLD) {
+                computeSequential(first, last, limit);
+            } else {
+                final int index = farthestPoint(first, last);
+                final double value = Math.min(limit, squaredDistance(index, first, last));
+                significance[index] = value;
+                invokeAll(new SignificanceTask(x, y, significance, first, index, value),
+                        new SignificanceTask(x, y, significance, index, last, value));
+            }
+        }
+
+        private void computeSequential(final int start, final int end, final double startLimit) {
+            // explicit stack of segments, recursion would be too deep for long lines
+            final int[] stack = new int[2 * (end - start + 1)];
+            final double[] limits = new double[end - start + 1];
+            int top = 0;
+            stack[0] = start;
+            stack[1] = end;
+            limits[0] = startLimit;
+            top++;
+            while (top > 0) {
+                top--;
+                final int segmentFirst = stack[2 * top];
+                final int segmentLast = stack[2 * top + 1];
+                final double segmentLimit = limits[top];
+                if (segmentLast - segmentFirst < 2) {
+                    continue;
+                }
+                final int index = farthestPoint(segmentFirst, segmentLast);
+                final double value = Math.min(segmentLimit, squaredDistance(index, segmentFirst, segmentLast));
+                significance[index] = value;
+                stack[2 * top] = segmentFirst;
+                stack[2 * top + 1] = index;
+                limits[top] = value;
+                top++;
+                stack[2 * top] = index;
+                stack[2 * top + 1] = segmentLast;
+                limits[top] = value;
+                top++;
+            }
+        }
+
+        private int farthestPoint(final int segmentFirst, final int segmentLast) {
+            int index = segmentFirst + 1;
+            double max = -1.0;
+            for (int i = segmentFirst + 1; i < segmentLast; i++) {
+                final double distance = squaredDistance(i, segmentFirst, segmentLast);
+                if (distance > max) {
+                    max = distance;
+                    index = i;
+                }
+            }
+            return index;
+        }
+
+        /**
+         * @return the squared distance of point i from the segment between a and b.
+         */
+        private double squaredDistance(final int i, final int a, final int b) {
+            final double dx = x[b] - x[a];
+            final double dy = y[b] - y[a];
+            final double px = x[i] - x[a];
+            final double py = y[i] - y[a];
+            final double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared > 0 ? (px * dx + py * dy) / lengthSquared : 0.0;
+            t = Math.max(0.0, Math.min(1.0, t));
+            final double ex = px - t * dx;
+            final double ey = py - t * dy;
+            return ex * ex + ey * ey;
+        }
+    }
+}
@@ -72,12 +72,30 @@ public final class Extent {
         double maxLongitude = -Double.MAX_VALUE;
 
         for (Coordinate coordinate : coordinates) {
-            minLatitude = Math.min(minLatitude, coordinate.getLatitude());
-            maxLatitude = Math.max(maxLatitude, coordinate.getLatitude());
-            minLongitude = Math.min(minLongitude, coordinate.getLongitude());
-            maxLongitude = Math.max(maxLongitude, coordinate.getLongitude());
+            minLatitude = Math.min(minLatitude, coordinate.latitude());
+            maxLatitude = Math.max(maxLatitude, coordinate.latitude());
+            minLongitude = Math.min(minLongitude, coordinate.longitude());
+            maxLongitude = Math.max(maxLongitude, coordinate.longitude());
         }
-        return new Extent(new Coordinate(minLatitude, minLongitude), new Coordinate(maxLatitude, maxLongitude));
+        return new Extent(Coordinate.of(minLatitude, minLongitude), Coordinate.of(maxLatitude, maxLongitude));
+    }
+
+    /**
+     * creates the extent of two corner points given as primitive values. The corners may be passed in any order.
+     *
+     * @param latitude1
+     *         latitude of the first corner
+     * @param longitude1
+     *         longitude of the first corner
+     * @param latitude2
+     *         latitude of the second corner
+     * @param longitude2
+     *         longitude of the second corner
+     * @return Extent for the corners
+     */
+    public static Extent forBounds(double latitude1, double longitude1, double latitude2, double longitude2) {
+        return new Extent(Coordinate.of(Math.min(latitude1, latitude2), Math.min(longitude1, longitude2)),
+                Coordinate.of(Math.max(latitude1, latitude2), Math.max(longitude1, longitude2)));
     }
 
 // --------------------------- CONSTRUCTORS ---------------------------
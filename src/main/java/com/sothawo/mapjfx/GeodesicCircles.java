@@ -0,0 +1,195 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Creates polygons for circles on the earth, for example range rings. The vertices are computed with the great circle
+ * destination formula on a spherical earth, so the circle keeps its true size and shape in every projection. The
+ * number of vertices is chosen so that the polygon deviates at most the given tolerance from the true circle. The
+ * computed polygons are cached per center, radius and tolerance.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public final class GeodesicCircles {
+
+    /** mean earth radius in meters. */
+    public static final double EARTH_RADIUS = 6_371_008.8;
+    /** minimum number of vertices of a circle. */
+    public static final int MIN_VERTICES = 16;
+    /** maximum number of vertices of a circle. */
+    public static final int MAX_VERTICES = 1024;
+
+    /** maximum number of cached polygons. */
+    private static final int MAX_CACHE_SIZE = 10_000;
+
+    /** cache of computed polygons, in access order to drop the least recently used. */
+    private static final Map<Key, double[]> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, double[]> eldest) {
+            return size() > MAX_CACHE_SIZE;
+        }
+    };
+
+    private GeodesicCircles() {
+    }
+
+    /**
+     * computes the vertices of a circle.
+     *
+     * @param center
+     *         the center of the circle
+     * @param radius
+     *         the radius in meters
+     * @param tolerance
+     *         the maximum distance in meters between the polygon and the true circle
+     * @return the vertices as latitude/longitude pairs in clockwise order, starting north of the center. The ring is
+     * not closed, the first vertex is not repeated. Longitudes are not normalized, so that a circle crossing the
+     * antimeridian stays continuous.
+     * @throws java.lang.NullPointerException
+     *         if center is null
+     * @throws java.lang.IllegalArgumentException
+     *         if radius is negative or tolerance is not positive
+     */
+    public static double[] circle(final Coordinate center, final double radius, final double tolerance) {
+        return cachedCircle(center, radius, tolerance).clone();
+    }
+
+    /**
+     * creates a closed CoordinateLine for a circle.
+     *
+     * @param center
+     *         the center of the circle
+     * @param radius
+     *         the radius in meters
+     * @param tolerance
+     *         the maximum distance in meters between the polygon and the true circle
+     * @return the CoordinateLine
+     * @throws java.lang.NullPointerException
+     *         if center is null
+     * @throws java.lang.IllegalArgumentException
+     *         if radius is negative or tolerance is not positive
+     * @see #circle(Coordinate, double, double)
+     */
+    public static CoordinateLine circleLine(final Coordinate center, final double radius, final double tolerance) {
+        return new CoordinateLine(cachedCircle(center, radius, tolerance)).setClosed(true);
+    }
+
+    /**
+     * returns the number of vertices that is needed so that the polygon deviates at most tolerance from the circle.
+     *
+     * @param radius
+     *         the radius in meters
+     * @param tolerance
+     *         the tolerance in meters
+     * @return the number of vertices between {@link #MIN_VERTICES} and {@link #MAX_VERTICES}
+     */
+    public static int numVertices(final double radius, final double tolerance) {
+        if (tolerance >= radius) {
+            return MIN_VERTICES;
+        }
+        // the distance between a chord spanning the angle 2 * a and the circle is radius * (1 - cos(a))
+        final double n = Math.ceil(Math.PI / Math.acos(1.0 - tolerance / radius));
+        return (int) Math.max(MIN_VERTICES, Math.min(MAX_VERTICES, n));
+    }
+
+    /**
+     * returns the cached vertices, computing them if necessary. The returned array must not be modified.
+     */
+    static double[] cachedCircle(final Coordinate center, final double radius, final double tolerance) {
+        requireNonNull(center);
+        if (!(radius >= 0.0)) {
+            throw new IllegalArgumentException("invalid radius: " + radius);
+        }
+        if (!(tolerance > 0.0)) {
+            throw new IllegalArgumentException("invalid tolerance: " + tolerance);
+        }
+        final Key key = new Key(center.latitude(), center.longitude(), radius, tolerance);
+        synchronized (cache) {
+            final double[] vertices = cache.get(key);
+            if (null != vertices) {
+                return vertices;
+            }
+        }
+        final double[] vertices = computeCircle(center.latitude(), center.longitude(), radius,
+            numVertices(radius, tolerance));
+        synchronized (cache) {
+            cache.put(key, vertices);
+        }
+        return vertices;
+    }
+
+    private static double[] computeCircle(final double latitude, final double longitude, final double radius,
+                                          final int numVertices) {
+        final double phi = Math.toRadians(latitude);
+        final double lambda = Math.toRadians(longitude);
+        final double delta = radius / EARTH_RADIUS;
+        final double sinPhi = Math.sin(phi);
+        final double cosPhi = Math.cos(phi);
+        final double sinDelta = Math.sin(delta);
+        final double cosDelta = Math.cos(delta);
+        final double[] vertices = new double[numVertices * 2];
+        for (int i = 0; i < numVertices; i++) {
+            final double bearing = 2 * Math.PI * i / numVertices;
+            final double sinPhi2 = sinPhi * cosDelta + cosPhi * sinDelta * Math.cos(bearing);
+            final double phi2 = Math.asin(sinPhi2);
+            final double lambda2 =
+                lambda + Math.atan2(Math.sin(bearing) * sinDelta * cosPhi, cosDelta - sinPhi * sinPhi2);
+            vertices[2 * i] = Math.toDegrees(phi2);
+            vertices[2 * i + 1] = Math.toDegrees(lambda2);
+        }
+        return vertices;
+    }
+
+    /**
+     * cache key.
+     */
+    private static final class Key {
+        private final double latitude;
+        private final double longitude;
+        private final double radius;
+        private final double tolerance;
+
+        Key(final double latitude, final double longitude, final double radius, final double tolerance) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radius = radius;
+            this.tolerance = tolerance;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key key = (Key) o;
+            return Double.compare(key.latitude, latitude) == 0 && Double.compare(key.longitude, longitude) == 0
+                && Double.compare(key.radius, radius) == 0 && Double.compare(key.tolerance, tolerance) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Double.hashCode(latitude);
+            result = 31 * result + Double.hashCode(longitude);
+            result = 31 * result + Double.hashCode(radius);
+            result = 31 * result + Double.hashCode(tolerance);
+            return result;
+        }
+    }
+}
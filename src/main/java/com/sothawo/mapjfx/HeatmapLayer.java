@@ -0,0 +1,491 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A heatmap of weighted points, intended for large numbers of points like a million GPS fixes. The points are stored as
+ * packed primitive values, already projected to web mercator. For display they are aggregated in Java into density
+ * cells of a few pixels for the current zoom level, and only the cells are sent to an OpenLayers heatmap layer in the
+ * map.
+ *
+ * Points can be appended at any time, also from other threads than the JavaFX application thread; a MapView showing
+ * the layer updates the map. When a time window is set, the weight of a point decreases linearly with its age and
+ * points older than the time window are removed.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class HeatmapLayer extends MapElement {
+
+    /** default radius of a point in pixels. */
+    public static final int DEFAULT_RADIUS = 8;
+    /** default blur size in pixels. */
+    public static final int DEFAULT_BLUR = 15;
+    /** default cell size for aggregation in pixels. */
+    public static final int DEFAULT_CELL_SIZE = 4;
+
+    private static final double EARTH_RADIUS = 6_378_137.0;
+    private static final double MAX_LATITUDE = 85.05112878;
+    /** values per point: web mercator x and y, weight */
+    private static final int STRIDE = 3;
+
+    /** counter for creating the id */
+    private final static AtomicLong nextId = new AtomicLong(1);
+    /** unique id for this object */
+    private final String id;
+    /** listeners that are informed when the points change */
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    /** point values, projected when they are appended, the used points start at offset */
+    private double[] values = new double[1024 * STRIDE];
+    /** time in milliseconds when the points were appended */
+    private long[] times = new long[1024];
+    /** index of the first used point */
+    private int offset;
+    /** number of used points */
+    private int size;
+    /** radius of a point in pixels */
+    private int radius = DEFAULT_RADIUS;
+    /** blur size in pixels */
+    private int blur = DEFAULT_BLUR;
+    /** aggregation cell size in pixels */
+    private int cellSize = DEFAULT_CELL_SIZE;
+    /** time window in milliseconds, 0 for no decay */
+    private long timeWindowMillis;
+    /** source of the current time */
+    private LongSupplier clock = System::currentTimeMillis;
+
+    public HeatmapLayer() {
+        this.id = "heatmap-" + nextId.getAndIncrement();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * sets the radius of a point. when changing the radius, the layer must be removed and re-added to the map in order
+     * to make the change visible.
+     *
+     * @param radius
+     *         the radius in pixels
+     * @return this object
+     */
+    public HeatmapLayer setRadius(final int radius) {
+        this.radius = radius;
+        return this;
+    }
+
+    public int getBlur() {
+        return blur;
+    }
+
+    /**
+     * sets the blur size. when changing the blur size, the layer must be removed and re-added to the map in order to
+     * make the change visible.
+     *
+     * @param blur
+     *         the blur size in pixels
+     * @return this object
+     */
+    public HeatmapLayer setBlur(final int blur) {
+        this.blur = blur;
+        return this;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * sets the size of the cells the points are aggregated into. Smaller cells are more exact but send more data to
+     * the map.
+     *
+     * @param cellSize
+     *         the cell size in pixels
+     * @return this object
+     * @throws IllegalArgumentException
+     *         if cellSize is not positive
+     */
+    public HeatmapLayer setCellSize(final int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("invalid cell size: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        fireChanged();
+        return this;
+    }
+
+    /**
+     * @return the time window, null if points do not decay.
+     */
+    public Duration getTimeWindow() {
+        return timeWindowMillis == 0 ? null : Duration.ofMillis(timeWindowMillis);
+    }
+
+    /**
+     * sets the time window. The weight of a point decreases linearly with its age and the point is removed when it is
+     * older than the window.
+     *
+     * @param timeWindow
+     *         the window, null for no decay
+     * @return this object
+     * @throws IllegalArgumentException
+     *         if timeWindow is not positive
+     */
+    public HeatmapLayer setTimeWindow(final Duration timeWindow) {
+        if (null != timeWindow && (timeWindow.isNegative() || timeWindow.isZero())) {
+            throw new IllegalArgumentException("invalid time window: " + timeWindow);
+        }
+        synchronized (this) {
+            this.timeWindowMillis = null == timeWindow ? 0 : timeWindow.toMillis();
+        }
+        fireChanged();
+        return this;
+    }
+
+    void setClock(final LongSupplier clock) {
+        this.clock = requireNonNull(clock);
+    }
+
+    /**
+     * @return the number of points, expired points are not counted.
+     */
+    public synchronized int getNumPoints() {
+        expire(clock.getAsLong());
+        return size;
+    }
+
+    /**
+     * appends a point.
+     *
+     * @param latitude
+     *         the latitude
+     * @param longitude
+     *         the longitude
+     * @param weight
+     *         the weight
+     * @return this object
+     */
+    public HeatmapLayer appendPoint(final double latitude, final double longitude, final double weight) {
+        synchronized (this) {
+            ensureCapacity(1);
+            store(latitude, longitude, weight, clock.getAsLong());
+        }
+        fireChanged();
+        return this;
+    }
+
+    /**
+     * appends points.
+     *
+     * @param latLonWeight
+     *         latitude/longitude/weight triples, the values are copied.
+     * @return this object
+     * @throws java.lang.NullPointerException
+     *         if latLonWeight is null
+     * @throws java.lang.IllegalArgumentException
+     *         if the number of values is not a multiple of 3
+     */
+    public HeatmapLayer appendPoints(final double[] latLonWeight) {
+        requireNonNull(latLonWeight);
+        if (latLonWeight.length % STRIDE != 0) {
+            throw new IllegalArgumentException("number of values is no multiple of 3: " + latLonWeight.length);
+        }
+        final int numPoints = latLonWeight.length / STRIDE;
+        if (numPoints > 0) {
+            synchronized (this) {
+                ensureCapacity(numPoints);
+                final long now = clock.getAsLong();
+                for (int i = 0; i < latLonWeight.length; i += STRIDE) {
+                    store(latLonWeight[i], latLonWeight[i + 1], latLonWeight[i + 2], now);
+                }
+            }
+            fireChanged();
+        }
+        return this;
+    }
+
+    /**
+     * removes all points.
+     *
+     * @return this object
+     */
+    public HeatmapLayer clear() {
+        synchronized (this) {
+            offset = 0;
+            size = 0;
+        }
+        fireChanged();
+        return this;
+    }
+
+    private void store(final double latitude, final double longitude, final double weight, final long time) {
+        final int index = offset + size;
+        values[index * STRIDE] = EARTH_RADIUS * Math.toRadians(longitude);
+        values[index * STRIDE + 1] = mercatorY(latitude);
+        values[index * STRIDE + 2] = weight;
+        times[index] = time;
+        size++;
+    }
+
+    private void ensureCapacity(final int numPoints) {
+        expire(clock.getAsLong());
+        if (offset + size + numPoints <= times.length) {
+            return;
+        }
+        if (size + numPoints <= times.length && offset >= size) {
+            System.arraycopy(values, offset * STRIDE, values, 0, size * STRIDE);
+            System.arraycopy(times, offset, times, 0, size);
+        } else {
+            final int capacity = Math.max(times.length * 2, size + numPoints);
+            final double[] newValues = new double[capacity * STRIDE];
+            final long[] newTimes = new long[capacity];
+            System.arraycopy(values, offset * STRIDE, newValues, 0, size * STRIDE);
+            System.arraycopy(times, offset, newTimes, 0, size);
+            values = newValues;
+            times = newTimes;
+        }
+        offset = 0;
+    }
+
+    private static double mercatorY(final double latitude) {
+        final double clampedLatitude = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+        return EARTH_RADIUS * Math.log(Math.tan(Math.PI / 4 + Math.toRadians(clampedLatitude) / 2));
+    }
+
+    /**
+     * removes the points that are older than the time window. As points are appended with increasing times, these
+     * are at the start.
+     */
+    private void expire(final long now) {
+        if (timeWindowMillis > 0) {
+            final long oldest = now - timeWindowMillis;
+            while (size > 0 && times[offset] <= oldest) {
+                offset++;
+                size--;
+            }
+            if (size == 0) {
+                offset = 0;
+            }
+        }
+    }
+
+    /**
+     * aggregates the points into cells for a zoom level. Only points in the extent enlarged by half its size on every
+     * side are used, so that the map can be moved a bit before new data is needed.
+     *
+     * @param zoom
+     *         the zoom level
+     * @param extent
+     *         the visible extent, null to use all points
+     * @return latitude/longitude/weight triples of the cell centers, the weights are normalized so that the maximum
+     * is 1.
+     */
+    synchronized double[] aggregate(final int zoom, final Extent extent) {
+        final long now = clock.getAsLong();
+        expire(now);
+        double minX = Double.NEGATIVE_INFINITY;
+        double maxX = Double.POSITIVE_INFINITY;
+        double minY = Double.NEGATIVE_INFINITY;
+        double maxY = Double.POSITIVE_INFINITY;
+        if (null != extent) {
+            final double x1 = EARTH_RADIUS * Math.toRadians(extent.getMin().longitude());
+            final double x2 = EARTH_RADIUS * Math.toRadians(extent.getMax().longitude());
+            final double y1 = mercatorY(extent.getMin().latitude());
+            final double y2 = mercatorY(extent.getMax().latitude());
+            minX = x1 - (x2 - x1) / 2;
+            maxX = x2 + (x2 - x1) / 2;
+            minY = y1 - (y2 - y1) / 2;
+            maxY = y2 + (y2 - y1) / 2;
+        }
+        final double cell = CoordinateLineSimplification.toleranceForZoom(zoom) * cellSize;
+        final double scale = 1.0 / cell;
+        final CellMap cells = new CellMap(1024);
+        for (int i = offset, end = offset + size; i < end; i++) {
+            final double x = values[i * STRIDE];
+            final double y = values[i * STRIDE + 1];
+            if (x < minX || x > maxX || y < minY || y > maxY) {
+                continue;
+            }
+            double weight = values[i * STRIDE + 2];
+            if (timeWindowMillis > 0) {
+                weight *= 1.0 - (double) (now - times[i]) / timeWindowMillis;
+            }
+            if (weight > 0.0) {
+                cells.add(((long) Math.floor(x * scale) << 32) | ((long) Math.floor(y * scale) & 0xffffffffL), weight);
+            }
+        }
+        final double[] result = new double[cells.size() * STRIDE];
+        final double max = cells.max();
+        int index = 0;
+        for (int slot = 0; slot < cells.keys.length; slot++) {
+            if (cells.used[slot]) {
+                final long key = cells.keys[slot];
+                final double x = ((key >> 32) + 0.5) * cell;
+                final double y = ((int) key + 0.5) * cell;
+                result[index++] = Math.toDegrees(2 * Math.atan(Math.exp(y / EARTH_RADIUS)) - Math.PI / 2);
+                result[index++] = Math.toDegrees(x / EARTH_RADIUS);
+                result[index++] = cells.sums[slot] / max;
+            }
+        }
+        return result;
+    }
+
+    void addChangeListener(final Runnable listener) {
+        changeListeners.add(requireNonNull(listener));
+    }
+
+    void removeChangeListener(final Runnable listener) {
+        changeListeners.remove(listener);
+    }
+
+    private void fireChanged() {
+        changeListeners.forEach(Runnable::run);
+    }
+
+    /**
+     * @param cells
+     *         the cells as returned by {@link #aggregate(int, Extent)}
+     * @return the comma separated values of the cells as they are sent to the map
+     */
+    static String toData(final double[] cells) {
+        final StringBuilder data = new StringBuilder(cells.length * 10);
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) {
+                data.append(',');
+            }
+            data.append(cells[i]);
+        }
+        return data.toString();
+    }
+
+    @Override
+    public HeatmapLayer setVisible(boolean visible) {
+        return (HeatmapLayer) super.setVisible(visible);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        HeatmapLayer that = (HeatmapLayer) o;
+
+        return id.equals(that.id);
+    }
+
+    @Override
+    public String toString() {
+        return "HeatmapLayer{" +
+            "id='" + id + '\'' +
+            ", radius=" + radius +
+            ", blur=" + blur +
+            ", cellSize=" + cellSize +
+            ", timeWindowMillis=" + timeWindowMillis +
+            "} " + super.toString();
+    }
+
+    /**
+     * open addressing hash map from cell keys to summed weights, avoids boxing for a million points.
+     */
+    private static final class CellMap {
+        private long[] keys;
+        private double[] sums;
+        private boolean[] used;
+        private int size;
+
+        CellMap(final int expectedSize) {
+            final int capacity = Integer.highestOneBit(expectedSize * 2 - 1) << 1;
+            keys = new long[capacity];
+            sums = new double[capacity];
+            used = new boolean[capacity];
+        }
+
+        void add(final long key, final double weight) {
+            final int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (used[slot]) {
+                if (keys[slot] == key) {
+                    sums[slot] += weight;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            used[slot] = true;
+            keys[slot] = key;
+            sums[slot] = weight;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            final long[] oldKeys = keys;
+            final double[] oldSums = sums;
+            final boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            sums = new double[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            final int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = mix(oldKeys[i]) & mask;
+                    while (used[slot]) {
+                        slot = (slot + 1) & mask;
+                    }
+                    used[slot] = true;
+                    keys[slot] = oldKeys[i];
+                    sums[slot] = oldSums[i];
+                }
+            }
+        }
+
+        private static int mix(final long key) {
+            final long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        int size() {
+            return size;
+        }
+
+        double max() {
+            double max = 0.0;
+            for (int i = 0; i < sums.length; i++) {
+                if (used[i] && sums[i] > max) {
+                    max = sums[i];
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -34,6 +34,8 @@ public class MapCircle extends MapElement {
     public static final Color DEFAULT_FILL_COLOR = Color.web("#ff8c00", 0.3);
     /** default width 3 */
     public static final int DEFAULT_WIDTH = 3;
+    /** default tolerance of the circle polygon: 1 meter */
+    public static final double DEFAULT_TOLERANCE = 1.0;
 
     /** counter for creating the id */
     private static final AtomicLong nextId = new AtomicLong(1);
@@ -55,6 +57,9 @@ public class MapCircle extends MapElement {
     /** width of the line */
     private int width;
 
+    /** maximum distance in meters between the drawn polygon and the true circle */
+    private double tolerance = DEFAULT_TOLERANCE;
+
     public MapCircle(Coordinate centerCoord, double radiusInMeter) {
         this.id = "mapcircle-" + nextId.getAndIncrement();
 
@@ -132,6 +137,37 @@ public class MapCircle extends MapElement {
         return this;
     }
 
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * sets the maximum distance between the drawn polygon and the true circle, this determines the number of vertices
+     * of the polygon. when changing the tolerance, the MapCircle must be removed and re-added to the map in order to
+     * make the change visible.
+     *
+     * @param tolerance
+     *     the tolerance in meters
+     * @return this object
+     * @throws IllegalArgumentException
+     *     when tolerance is not positive
+     */
+    public MapCircle setTolerance(final double tolerance) {
+        if (!(tolerance > 0.0)) {
+            throw new IllegalArgumentException("invalid tolerance: " + tolerance);
+        }
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * @return the vertices of the geodesic polygon for this circle as latitude/longitude pairs.
+     * @see GeodesicCircles#circle(Coordinate, double, double)
+     */
+    public double[] getPolygon() {
+        return GeodesicCircles.circle(centerCoord, radiusInMeter, tolerance);
+    }
+
     @Override
     public int hashCode() {
         return id.hashCode();
@@ -158,6 +194,7 @@ public class MapCircle extends MapElement {
             ", color=" + color +
             ", fillCclor=" + fillColor +
             ", width=" + width +
+            ", tolerance=" + tolerance +
             "} " + super.toString();
     }
 
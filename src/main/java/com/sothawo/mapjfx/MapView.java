@@ -20,6 +20,10 @@ import com.sothawo.mapjfx.event.MapLabelEvent;
 import com.sothawo.mapjfx.event.MapViewEvent;
 import com.sothawo.mapjfx.event.MarkerEvent;
 import com.sothawo.mapjfx.offline.OfflineCache;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.ReadOnlyBooleanWrapper;
@@ -42,7 +46,6 @@ import org.slf4j.LoggerFactory;
 
 import java.awt.*;
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -51,10 +54,10 @@ import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -63,7 +66,10 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
@@ -109,13 +115,44 @@ public final class MapView extends Region implements AutoCloseable {
 
     /** number of retries if Javascript object is not ready. */
     private static final int NUM_RETRIES_FOR_JS = 10;
+    /** time between the retries if the Javascript object is not ready. */
+    private static final javafx.util.Duration RETRY_DELAY_FOR_JS = javafx.util.Duration.millis(500);
+
+    /** CoordinateLines with fewer coordinates are always shown with all coordinates. */
+    private static final int MIN_COORDINATES_FOR_SIMPLIFICATION = 1_000;
+    /** marker for the full geometry in coordinateLineIndices. */
+    private static final int[] FULL_GEOMETRY = new int[0];
+    /** marker in coordinateLineIndices for a line whose first simplification is not yet calculated. */
+    private static final int[] PENDING_GEOMETRY = new int[0];
 
     /** marker for custom_mapview.css. */
     private static final String CUSTOM_MAPVIEW_CSS = "custom_mapview.css";
+    /** Pattern to find resources to include in the local html file. */
+    private static final Pattern HTML_INCLUDE_PATTERN = Pattern.compile("^#(.+)#$");
+    /**
+     * the assembled mapview html with all includes, shared by all MapView instances. The key is the URL of the custom
+     * css, or the empty string if there is none.
+     */
+    private static final Map<String, String> MAPVIEW_HTML_CACHE = new ConcurrentHashMap<>();
+    /** optional Javascript modules that are not part of the html, but loaded when they are first needed. */
+    private static final String JS_MODULE_WMS_PARAMS = "WMSParams.js";
+    private static final String JS_MODULE_MAP_CIRCLE = "mapcircle.js";
+    private static final String JS_MODULE_HEATMAP = "heatmap.js";
+    private static final String JS_MODULE_TILE_OVERLAY = "tileoverlay.js";
+    private static final String JS_MODULE_CANVAS_LABEL = "canvaslabel.js";
+    private static final String JS_MODULE_TILE_LAYER = "tilelayer.js";
+    /** the sources of the optional Javascript modules, shared by all MapView instances. */
+    private static final Map<String, String> JS_MODULE_CACHE = new ConcurrentHashMap<>();
     /** readonly property that informs if this MapView is fully initialized. */
     private final ReadOnlyBooleanWrapper initialized = new ReadOnlyBooleanWrapper(false);
     /** flag that is set to true after the technical infrastructure is set up, but before center, zoom etc are set. */
     private final AtomicBoolean mapViewReady = new AtomicBoolean(false);
+    /** completed when this MapView is fully initialized. */
+    private final CompletableFuture<MapView> initializedFuture = new CompletableFuture<>();
+    /** the configuration passed to initialize, needed when the Javascript code reports to be ready. */
+    private Configuration configuration;
+    /** the optional Javascript modules that are already loaded into the page. */
+    private final Set<String> loadedJSModules = new HashSet<>();
     /** used to store the last coordinate that was reported by the map to prevent setting it again in the map. */
     private final AtomicReference<Coordinate> lastCoordinateFromMap = new AtomicReference<>();
     /** used to store the last zoom value that was reported by the map to prevent setting it again in the map. */
@@ -139,19 +176,33 @@ public final class MapView extends Region implements AutoCloseable {
      * the listeners that are attached to the CoordinateLine objects.
      */
     private final Map<String, CoordinateLineListener> coordinateLineListeners = new HashMap<>();
+    /**
+     * the variants that are shown for the CoordinateLines: the indices of a simplification, {@link #FULL_GEOMETRY} when
+     * all coordinates are shown or {@link #PENDING_GEOMETRY}.
+     */
+    private final Map<String, int[]> coordinateLineIndices = new HashMap<>();
+    /** flag if long CoordinateLines are shown simplified for the current zoom level. */
+    private boolean simplifyCoordinateLines = false;
     /**
      * reference queue for the weak referenced objects. We don't need the objects themselves, so a list of Objects is
      * enough to handle Markers and CoordinateLines.
      */
     private final ReferenceQueue<Object> weakReferenceQueue = new ReferenceQueue<>();
-    /** cache for loading images in base64 strings */
-    private final ConcurrentHashMap<URL, String> imgCache = new ConcurrentHashMap<>();
+    /**
+     * the ids of the marker images registered in the map, by the external form of the image URL. Each image is
+     * registered once and shared by all markers using it.
+     */
+    private final Map<String, String> markerImageIds = new HashMap<>();
+    /** the number of marker images registered so far, used to create ids that are not reused after a reset. */
+    private int numMarkerImages;
     /** the OfflineCache. */
     private final OfflineCache offlineCache = OfflineCache.INSTANCE;
     /** the connector object in the web page; field to prevent it being gc'ed. */
     private final JavaConnector javaConnector = new JavaConnector();
     /** the WebEngine of the WebView containing the OpenLayers Map. */
     private WebEngine webEngine;
+    /** set when the page was unloaded from the WebEngine, no further load events are processed. */
+    private boolean unloaded;
     /** property containing the map's center. */
     private SimpleObjectProperty<Coordinate> center;
     /**
@@ -165,8 +216,6 @@ public final class MapView extends Region implements AutoCloseable {
     private SimpleObjectProperty<MapType> mapType;
     /** Connector object that is created in the web page and initialized when the page is fully loaded */
     private JSObject jsMapView;
-    /** Pattern to find resources to include in the local html file. */
-    private Pattern htmlIncludePattern = Pattern.compile("^#(.+)#$");
     /** Bing Maps API Key. */
     private Optional<String> bingMapsApiKey = Optional.empty();
     /** URL for custom mapview css. */
@@ -180,6 +229,46 @@ public final class MapView extends Region implements AutoCloseable {
 
     private final Map<String, WeakReference<MapCircle>> mapCircles = new HashMap<>();
 
+    /**
+     * a map from the ids of HeatmapLayers in the map to WeakReferences of the layers. When layers are gc'ed the keys
+     * in this map point to null and are used to clean up the internal structures.
+     */
+    private final Map<String, WeakReference<HeatmapLayer>> heatmapLayers = new HashMap<>();
+    /** the visibility listeners that are attached to the HeatmapLayer objects. */
+    private final Map<String, ChangeListener<Boolean>> heatmapLayerVisibleListeners = new HashMap<>();
+    /** the change listeners that are attached to the HeatmapLayer objects. */
+    private final Map<String, Runnable> heatmapLayerChangeListeners = new HashMap<>();
+    /** ids of the HeatmapLayers whose data must be sent to the map again. */
+    private final Set<String> heatmapLayersToRefresh = new HashSet<>();
+    /** ids of the HeatmapLayers that are being aggregated, only accessed on the JavaFX thread. */
+    private final Set<String> heatmapLayersAggregating = new HashSet<>();
+    /** ids of the HeatmapLayers that changed while being aggregated, only accessed on the JavaFX thread. */
+    private final Set<String> heatmapLayersOutdated = new HashSet<>();
+    /** the last extent reported by the map, used to restrict the heatmap data. */
+    private volatile Extent lastExtentFromMap;
+    /** refreshes the HeatmapLayers with a time window while there are HeatmapLayers in the map. */
+    private Timeline heatmapDecayTimeline;
+
+    /**
+     * a map from the ids of TileOverlays in the map to WeakReferences of the overlays. When overlays are gc'ed the keys
+     * in this map point to null and are used to clean up the internal structures.
+     */
+    private final Map<String, WeakReference<TileOverlay>> tileOverlays = new HashMap<>();
+    /** the visibility listeners that are attached to the TileOverlay objects. */
+    private final Map<String, ChangeListener<Boolean>> tileOverlayVisibleListeners = new HashMap<>();
+    /** the change listeners that are attached to the TileOverlay objects. */
+    private final Map<String, Runnable> tileOverlayChangeListeners = new HashMap<>();
+
+    /**
+     * a map from the ids of TileLayers in the map to WeakReferences of the layers. When layers are gc'ed the keys in
+     * this map point to null and are used to clean up the internal structures.
+     */
+    private final Map<String, WeakReference<TileLayer>> tileLayers = new HashMap<>();
+    /** the visibility listeners that are attached to the TileLayer objects. */
+    private final Map<String, ChangeListener<Boolean>> tileLayerVisibleListeners = new HashMap<>();
+    /** the change listeners that are attached to the TileLayer objects. */
+    private final Map<String, Runnable> tileLayerChangeListeners = new HashMap<>();
+
     /**
      * create a MapView with no initial center coordinate.
      */
@@ -200,6 +289,28 @@ public final class MapView extends Region implements AutoCloseable {
      */
     public void close() {
         stopWeakRefCleaner();
+        // the timeline references this object, it would keep a closed MapView with heatmaps from being collected
+        synchronized (heatmapLayers) {
+            if (null != heatmapDecayTimeline) {
+                heatmapDecayTimeline.stop();
+                heatmapDecayTimeline = null;
+            }
+        }
+    }
+
+    /**
+     * unloads the page from the WebEngine, so that the OpenLayers map with its layers and sources is released. The
+     * MapView is no longer initialized afterwards and cannot be used again.
+     */
+    void unload() {
+        if (null == webEngine || unloaded) {
+            return;
+        }
+        unloaded = true;
+        initialized.set(false);
+        jsMapView = null;
+        markerImageIds.clear();
+        webEngine.load("about:blank");
     }
 
     /**
@@ -227,6 +338,8 @@ public final class MapView extends Region implements AutoCloseable {
                 }
                 setZoomInMap();
             }
+            updateCoordinateLinesForZoom();
+            scheduleAllHeatmapLayersRefresh();
         });
 
         animationDuration = new SimpleIntegerProperty(0);
@@ -332,6 +445,51 @@ public final class MapView extends Region implements AutoCloseable {
                     // run on the JavaFX thread, as removeCoordinateLineWithId() calls methods from the WebView
                     Platform.runLater(
                         () -> mapCoordinateElementsToRemove.forEach(this::removeMapCoordinateElementWithId));
+
+                    // clean up the heatmapLayers entries
+                    final Set<String> heatmapLayersToRemove = new HashSet<>();
+                    synchronized (heatmapLayers) {
+                        heatmapLayers.forEach((k, v) -> {
+                            if (null == v.get()) {
+                                heatmapLayersToRemove.add(k);
+                                if (logger.isTraceEnabled()) {
+                                    logger.trace("need to cleanup gc'ed heatmap layer {}", k);
+                                }
+                            }
+                        });
+                    }
+                    // run on the JavaFX thread, as removeHeatmapLayerWithId() calls methods from the WebView
+                    Platform.runLater(() -> heatmapLayersToRemove.forEach(this::removeHeatmapLayerWithId));
+
+                    // clean up the tileOverlays entries
+                    final Set<String> tileOverlaysToRemove = new HashSet<>();
+                    synchronized (tileOverlays) {
+                        tileOverlays.forEach((k, v) -> {
+                            if (null == v.get()) {
+                                tileOverlaysToRemove.add(k);
+                                if (logger.isTraceEnabled()) {
+                                    logger.trace("need to cleanup gc'ed tile overlay {}", k);
+                                }
+                            }
+                        });
+                    }
+                    // run on the JavaFX thread, as removeTileOverlayWithId() calls methods from the WebView
+                    Platform.runLater(() -> tileOverlaysToRemove.forEach(this::removeTileOverlayWithId));
+
+                    // clean up the tileLayers entries
+                    final Set<String> tileLayersToRemove = new HashSet<>();
+                    synchronized (tileLayers) {
+                        tileLayers.forEach((k, v) -> {
+                            if (null == v.get()) {
+                                tileLayersToRemove.add(k);
+                                if (logger.isTraceEnabled()) {
+                                    logger.trace("need to cleanup gc'ed tile layer {}", k);
+                                }
+                            }
+                        });
+                    }
+                    // run on the JavaFX thread, as removeTileLayerWithId() calls methods from the WebView
+                    Platform.runLater(() -> tileLayersToRemove.forEach(this::removeTileLayerWithId));
                 } catch (InterruptedException e) {
                     if (logger.isDebugEnabled()) {
                         logger.debug("thread interrupted");
@@ -412,6 +570,7 @@ public final class MapView extends Region implements AutoCloseable {
             }
             bingMapsApiKey.ifPresent(apiKey -> jsMapView.call("setBingMapsApiKey", apiKey));
             wmsParam.ifPresent(wmsParam -> {
+                loadJSModule(JS_MODULE_WMS_PARAMS);
                 jsMapView.call("newWMSParams");
                 jsMapView.call("setWMSParamsUrl", wmsParam.getUrl());
                 wmsParam.getParams().forEach((key, value) -> jsMapView.call("addWMSParamsParams", key, value));
@@ -517,41 +676,247 @@ public final class MapView extends Region implements AutoCloseable {
         } else {
             // sync on the coordinatesLines map as the cleaner thread accesses this as well
             synchronized (coordinateLines) {
-                final String id = requireNonNull(coordinateLine).getId();
-                if (!coordinateLines.containsKey(id)) {
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("adding coordinate line {}", coordinateLine);
+                if (addCoordinateLineToMap(requireNonNull(coordinateLine))) {
+                    setCoordinateLineVisibleInMap(coordinateLine.getId());
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * adds several CoordinateLines to the map. Lines with the same color, fill color and width share one style object
+     * in the map, and the visible lines are added to the map in one batch, which is much faster than adding them one
+     * by one when there are thousands of lines. Apart from that this is the same as calling
+     * {@link #addCoordinateLine(CoordinateLine)} for each line.
+     *
+     * @param coordinateLines
+     *     the CoordinateLines to add
+     * @return this object
+     * @throws java.lang.NullPointerException
+     *     if the argument or one of the lines is null
+     */
+    public MapView addCoordinateLines(final Collection<? extends CoordinateLine> coordinateLines) {
+        requireNonNull(coordinateLines);
+        if (!getInitialized()) {
+            if (logger.isWarnEnabled()) {
+                logger.warn(MAP_VIEW_NOT_YET_INITIALIZED);
+            }
+        } else {
+            final List<String> visibleIds = new ArrayList<>();
+            synchronized (this.coordinateLines) {
+                for (final CoordinateLine coordinateLine : coordinateLines) {
+                    if (addCoordinateLineToMap(requireNonNull(coordinateLine)) && coordinateLine.getVisible()) {
+                        visibleIds.add(coordinateLine.getId());
                     }
-                    final JSObject jsCoordinateLine = (JSObject) jsMapView.call("getCoordinateLine", id);
-                    coordinateLine.getCoordinateStream().forEach(
-                        (coord) -> jsCoordinateLine
-                            .call("addCoordinate", coord.getLatitude(), coord.getLongitude()));
-                    final javafx.scene.paint.Color color = coordinateLine.getColor();
-                    jsCoordinateLine.call("setColor",
-                        color.getRed() * 255, color.getGreen() * 255, color.getBlue() * 255,
-                        color.getOpacity());
-                    final javafx.scene.paint.Color fillColor = coordinateLine.getFillColor();
-                    jsCoordinateLine.call("setFillColor",
-                        fillColor.getRed() * 255, fillColor.getGreen() * 255, fillColor.getBlue() * 255,
-                        fillColor.getOpacity());
-                    jsCoordinateLine.call("setWidth", coordinateLine.getWidth());
-                    jsCoordinateLine.call("setClosed", coordinateLine.isClosed());
-                    jsCoordinateLine.call("seal");
-
-                    final ChangeListener<Boolean> changeListener =
-                        (observable, newValue, oldValue) -> setCoordinateLineVisibleInMap(id);
-                    coordinateLine.visibleProperty().addListener(changeListener);
-                    // store the listener as we must unregister on removeCooridnateLine
-                    coordinateLineListeners.put(id, new CoordinateLineListener(changeListener));
-                    // store a weak reference to be able to remove the line from the map if the caller forgets to do so
-                    coordinateLines.put(id, new WeakReference<>(coordinateLine, weakReferenceQueue));
-                    setCoordinateLineVisibleInMap(id);
+                }
+                if (!visibleIds.isEmpty()) {
+                    jsMapView.call("showCoordinateLines", String.join(",", visibleIds));
                 }
             }
         }
         return this;
     }
 
+    /**
+     * creates the JS object for a CoordinateLine and registers the listeners. The line is not shown. Must be called
+     * when synchronized on coordinateLines.
+     *
+     * @param coordinateLine
+     *     the CoordinateLine to add
+     * @return true if the line was added, false if it already was in the map
+     */
+    private boolean addCoordinateLineToMap(final CoordinateLine coordinateLine) {
+        final String id = coordinateLine.getId();
+        if (coordinateLines.containsKey(id)) {
+            return false;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("adding coordinate line {}", coordinateLine);
+        }
+        final JSObject jsCoordinateLine = (JSObject) jsMapView.call("getCoordinateLine", id);
+        final int[] variant = coordinateLineVariantForZoom(coordinateLine);
+        final int[] shown = null == variant ? PENDING_GEOMETRY : variant;
+        addCoordinateLineCoordinates(jsCoordinateLine, coordinateLine, shown);
+        coordinateLineIndices.put(id, shown);
+        final javafx.scene.paint.Color color = coordinateLine.getColor();
+        jsCoordinateLine.call("setColor",
+            color.getRed() * 255, color.getGreen() * 255, color.getBlue() * 255,
+            color.getOpacity());
+        final javafx.scene.paint.Color fillColor = coordinateLine.getFillColor();
+        jsCoordinateLine.call("setFillColor",
+            fillColor.getRed() * 255, fillColor.getGreen() * 255, fillColor.getBlue() * 255,
+            fillColor.getOpacity());
+        jsCoordinateLine.call("setWidth", coordinateLine.getWidth());
+        jsCoordinateLine.call("setClosed", coordinateLine.isClosed());
+        jsCoordinateLine.call("seal");
+
+        final ChangeListener<Boolean> changeListener =
+            (observable, newValue, oldValue) -> setCoordinateLineVisibleInMap(id);
+        coordinateLine.visibleProperty().addListener(changeListener);
+        // only the appended or trimmed coordinates are sent to the existing JS object
+        final CoordinateLine.CoordinatesListener coordinatesListener =
+            new CoordinateLine.CoordinatesListener() {
+                @Override
+                public void coordinatesAppended(final CoordinateLine line, final double[] latLon,
+                                                final int from, final int numValues) {
+                    // all appended coordinates are sent in one call
+                    final StringJoiner values = new StringJoiner(",");
+                    for (int i = from, end = from + numValues; i < end; i++) {
+                        values.add(Double.toString(latLon[i]));
+                    }
+                    jsCoordinateLine.call("appendCoordinates", values.toString());
+                    simplifyCoordinateLineInBackground(id, line);
+                }
+
+                @Override
+                public void headTrimmed(final CoordinateLine line, final int count) {
+                    if (line.getNumCoordinates() > 0) {
+                        // the new first coordinate is needed when a simplified variant is shown
+                        jsCoordinateLine.call("trimHead", count, line.getLatitude(0), line.getLongitude(0));
+                    } else {
+                        jsCoordinateLine.call("trimHead", count);
+                    }
+                }
+            };
+        coordinateLine.addCoordinatesListener(coordinatesListener);
+        // store the listeners as we must unregister on removeCooridnateLine
+        coordinateLineListeners.put(id, new CoordinateLineListener(changeListener, coordinatesListener));
+        // store a weak reference to be able to remove the line from the map if the caller forgets to do so
+        coordinateLines.put(id, new WeakReference<>(coordinateLine, weakReferenceQueue));
+        simplifyCoordinateLineInBackground(id, coordinateLine);
+        return true;
+    }
+
+    /**
+     * returns the variant of a CoordinateLine that should be shown at the current zoom level.
+     *
+     * @param coordinateLine
+     *     the CoordinateLine
+     * @return the indices of the simplification's variant, {@link #FULL_GEOMETRY} or null if the line needs a
+     * simplification that is not yet calculated
+     */
+    private int[] coordinateLineVariantForZoom(final CoordinateLine coordinateLine) {
+        if (!simplifyCoordinateLines || coordinateLine.getNumCoordinates() < MIN_COORDINATES_FOR_SIMPLIFICATION) {
+            return FULL_GEOMETRY;
+        }
+        final CoordinateLineSimplification simplification = coordinateLine.getSimplification();
+        if (null == simplification) {
+            return null;
+        }
+        final int[] indices = simplification.indicesForZoom((int) Math.round(getZoom()));
+        return null == indices ? FULL_GEOMETRY : indices;
+    }
+
+    /**
+     * starts calculating the simplification of a CoordinateLine in the common ForkJoinPool if it is outdated. The
+     * result is published on the JavaFX thread, the previous variant stays shown until then.
+     *
+     * @param id
+     *     the id of the CoordinateLine
+     * @param coordinateLine
+     *     the CoordinateLine
+     */
+    private void simplifyCoordinateLineInBackground(final String id, final CoordinateLine coordinateLine) {
+        if (!simplifyCoordinateLines || coordinateLine.getNumCoordinates() < MIN_COORDINATES_FOR_SIMPLIFICATION) {
+            return;
+        }
+        final CompletableFuture<CoordinateLineSimplification> future =
+            coordinateLine.updateSimplification(ForkJoinPool.commonPool());
+        if (null != future) {
+            future.whenComplete((simplification, throwable) -> Platform.runLater(() -> {
+                coordinateLine.publishSimplification(simplification);
+                if (null != throwable) {
+                    if (logger.isWarnEnabled()) {
+                        logger.warn("could not simplify coordinate line {}", id, throwable);
+                    }
+                } else {
+                    synchronized (coordinateLines) {
+                        if (coordinateLines.containsKey(id)) {
+                            updateCoordinateLineVariant(id, coordinateLine);
+                            // coordinates may have been appended during the calculation
+                            simplifyCoordinateLineInBackground(id, coordinateLine);
+                        }
+                    }
+                }
+            }));
+        }
+    }
+
+    /**
+     * adds the coordinates of a CoordinateLine to the JS object in one call.
+     *
+     * @param jsCoordinateLine
+     *     the JS object
+     * @param coordinateLine
+     *     the CoordinateLine
+     * @param shown
+     *     the variant to add, see {@link #coordinateLineIndices}
+     */
+    private void addCoordinateLineCoordinates(final JSObject jsCoordinateLine, final CoordinateLine coordinateLine,
+                                              final int[] shown) {
+        final StringJoiner latLon = new StringJoiner(",");
+        if (FULL_GEOMETRY == shown) {
+            coordinateLine.forEachCoordinate(
+                (latitude, longitude) -> latLon.add(Double.toString(latitude)).add(Double.toString(longitude)));
+            jsCoordinateLine.call("addCoordinates", latLon.toString());
+        } else {
+            final int[] indices =
+                PENDING_GEOMETRY == shown ? PENDING_GEOMETRY : coordinateLine.getSimplification()
+                    .toLineIndices(shown, coordinateLine.getNumTrimmed(), coordinateLine.getNumCoordinates());
+            final StringJoiner indexValues = new StringJoiner(",");
+            for (final int index : indices) {
+                latLon.add(Double.toString(coordinateLine.getLatitude(index)))
+                    .add(Double.toString(coordinateLine.getLongitude(index)));
+                indexValues.add(Integer.toString(index));
+            }
+            jsCoordinateLine.call("addCoordinates", latLon.toString(), indexValues.toString());
+        }
+        jsCoordinateLine.call("setNextIndex", coordinateLine.getNumCoordinates());
+    }
+
+    /**
+     * replaces the shown coordinates of the CoordinateLines whose simplified variant changes with the zoom level.
+     */
+    private void updateCoordinateLinesForZoom() {
+        if (!getInitialized() || !simplifyCoordinateLines) {
+            return;
+        }
+        synchronized (coordinateLines) {
+            coordinateLines.forEach((id, weakReference) -> {
+                final CoordinateLine coordinateLine = weakReference.get();
+                if (null != coordinateLine) {
+                    updateCoordinateLineVariant(id, coordinateLine);
+                }
+            });
+        }
+    }
+
+    /**
+     * replaces the shown coordinates of a CoordinateLine if another variant should be shown. Must be called when
+     * synchronized on coordinateLines.
+     *
+     * @param id
+     *     the id of the CoordinateLine
+     * @param coordinateLine
+     *     the CoordinateLine
+     */
+    private void updateCoordinateLineVariant(final String id, final CoordinateLine coordinateLine) {
+        final int[] shown = coordinateLineVariantForZoom(coordinateLine);
+        if (null != shown && shown != coordinateLineIndices.get(id)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("showing {} of {} coordinates for coordinate line {}",
+                    FULL_GEOMETRY == shown ? coordinateLine.getNumCoordinates() : shown.length,
+                    coordinateLine.getNumCoordinates(), id);
+            }
+            final JSObject jsCoordinateLine = (JSObject) jsMapView.call("getCoordinateLine", id);
+            jsCoordinateLine.call("clearCoordinates");
+            addCoordinateLineCoordinates(jsCoordinateLine, coordinateLine, shown);
+            jsCoordinateLine.call("updateGeometry");
+            coordinateLineIndices.put(id, shown);
+        }
+    }
+
     /**
      * shows or hides the coordinateline in the map according to it's visible property.
      *
@@ -582,6 +947,9 @@ public final class MapView extends Region implements AutoCloseable {
      * The MapView only keeps a weak reference to the label, so the caller must keep a reference to prevent the Label
      * object from being garbage collected.
      *
+     * If the MapView is configured with {@link Configuration#canvasLabels()}, the label is drawn as text on a canvas
+     * layer; the events are the same as for html labels.
+     *
      * @param mapLabel
      *     the label
      * @return this object
@@ -610,7 +978,11 @@ public final class MapView extends Region implements AutoCloseable {
                 }
                 if (!mapCoordinateElements.containsKey(id)) {
                     addMapCoordinateElement(mapLabel);
-                    jsMapView.call("addLabel", id, mapLabel.getText(), mapLabel.getCssClass(),
+                    if (configuration.canvasLabels()) {
+                        loadJSModule(JS_MODULE_CANVAS_LABEL);
+                    }
+                    jsMapView.call(configuration.canvasLabels() ? "addCanvasLabel" : "addLabel", id,
+                        mapLabel.getText(), mapLabel.getCssClass(),
                         mapLabel.getPosition().getLatitude(), mapLabel.getPosition().getLongitude(),
                         mapLabel.getOffsetX(), mapLabel.getOffsetY());
                     if (logger.isTraceEnabled()) {
@@ -759,7 +1131,7 @@ public final class MapView extends Region implements AutoCloseable {
             synchronized (mapCoordinateElements) {
                 if (!mapCoordinateElements.containsKey(id)) {
                     addMapCoordinateElement(marker);
-                    jsMapView.call("addMarker", id, marker.getImageURL().toExternalForm(),
+                    jsMapView.call("addMarker", id, registerMarkerImage(marker.getImageURL()),
                         marker.getPosition().getLatitude(), marker.getPosition().getLongitude(),
                         marker.getOffsetX(), marker.getOffsetY());
 
@@ -775,57 +1147,53 @@ public final class MapView extends Region implements AutoCloseable {
         return this;
     }
 
-    public SimpleIntegerProperty animationDurationProperty() {
-        return animationDuration;
-    }
-
-    public SimpleObjectProperty<Coordinate> centerProperty() {
-        return center;
-    }
-
     /**
-     * loads an image and converts it's data to a base64 encoded data url.
-     *
-     * NOT NEEDED AT THE MOMENT
+     * registers a marker image in the map if it is not yet registered. The image is taken from the shared {@link
+     * MarkerImageRegistry} as data URL, which may load it in the background; markers can already be added with the
+     * returned id and get their image when it is registered in the map. If the image cannot be converted, the map
+     * loads it from the original URL.
      *
      * @param imageURL
-     *     where to load the image from, may not be null
-     * @return the encoded image as data url
-     */
-    @SuppressWarnings("UnusedDeclaration")
-    private String createDataURI(final URL imageURL) {
-        return imgCache.computeIfAbsent(imageURL, url -> {
-            String dataUrl = null;
-            try (final InputStream isGuess = url.openStream();
-                 final InputStream isConvert = url.openStream();
-                 final ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-                final String contentType = URLConnection.guessContentTypeFromStream(isGuess);
-                if (null != contentType) {
-                    final byte[] chunk = new byte[4096];
-                    int bytesRead;
-                    while ((bytesRead = isConvert.read(chunk)) > 0) {
-                        os.write(chunk, 0, bytesRead);
+     *     the URL of the image
+     * @return the id of the image in the map
+     */
+    private String registerMarkerImage(final URL imageURL) {
+        final String url = imageURL.toExternalForm();
+        String imageId = markerImageIds.get(url);
+        if (null == imageId) {
+            imageId = "markerimage-" + (++numMarkerImages);
+            markerImageIds.put(url, imageId);
+            if (logger.isDebugEnabled()) {
+                logger.debug("registering marker image {} from {}", imageId, url);
+            }
+            final String id = imageId;
+            MarkerImageRegistry.shared().dataUrl(imageURL).whenComplete((dataUrl, throwable) -> {
+                if (null != throwable && logger.isWarnEnabled()) {
+                    logger.warn("could not create data url from {}", url, throwable);
+                }
+                final String src = null == throwable ? dataUrl : url;
+                // the map may have been reset or unloaded while the image was loading
+                final Runnable register = () -> {
+                    if (null != jsMapView && getInitialized() && id.equals(markerImageIds.get(url))) {
+                        jsMapView.call("registerMarkerImage", id, src);
                     }
-                    os.flush();
-                    dataUrl = "data:" + contentType + ";base64," + Base64.getEncoder().encodeToString(os
-                        .toByteArray());
+                };
+                if (Platform.isFxApplicationThread()) {
+                    register.run();
                 } else {
-                    if (logger.isWarnEnabled()) {
-                        logger.warn("could not get content type from {}", imageURL.toExternalForm());
-                    }
-                }
-            } catch (final IOException e) {
-                if (logger.isWarnEnabled()) {
-                    logger.warn("error loading image", e);
+                    Platform.runLater(register);
                 }
-            }
-            if (null == dataUrl) {
-                if (logger.isWarnEnabled()) {
-                    logger.warn("could not create data url from {}", imageURL.toExternalForm());
-                }
-            }
-            return dataUrl;
-        });
+            });
+        }
+        return imageId;
+    }
+
+    public SimpleIntegerProperty animationDurationProperty() {
+        return animationDuration;
+    }
+
+    public SimpleObjectProperty<Coordinate> centerProperty() {
+        return center;
     }
 
     /**
@@ -851,28 +1219,36 @@ public final class MapView extends Region implements AutoCloseable {
 
     /**
      * calls {@link #initialize(Configuration)} with the default values.
+     *
+     * @return a future that is completed with this object when the MapView is initialized
      */
-    public void initialize() {
-        initialize(Configuration.builder().build());
+    public CompletableFuture<MapView> initialize() {
+        return initialize(Configuration.builder().build());
     }
 
     /**
      * initializes the MapView. The internal HTML file is loaded into the contained WebView and the necessary setup is
-     * made for communication between this object and the Javascript elements on the web page.
+     * made for communication between this object and the Javascript elements on the web page. This method does not
+     * wait for the page to be loaded; the returned future is completed on the JavaFX application thread when the
+     * MapView is initialized, at the same time the {@link #initializedProperty()} changes to true. If the page cannot
+     * be loaded, the future is completed exceptionally.
      *
      * @param configuration
      *     the initial configuration for the mapView object.
+     * @return a future that is completed with this object when the MapView is initialized
      */
-    public void initialize(final Configuration configuration) {
+    public CompletableFuture<MapView> initialize(final Configuration configuration) {
         if (logger.isDebugEnabled()) {
             logger.debug("initializing...");
             logger.debug(configuration.toString());
         }
+        this.configuration = configuration;
+        simplifyCoordinateLines = configuration.simplifyCoordinateLines();
 
         // we could load the html via the URL, but then we run into problems loading local images or track files when
         // the mapView is embededded in a jar and loaded via jar: URI. If we load the page with loadContent, these
         // restrictions do not apply.
-        loadMapViewHtml().ifPresent((html) -> {
+        loadMapViewHtml(customMapviewCssURL).ifPresent((html) -> {
             // instantiate the WebView, resize it with this region by letting it observe the changes and add it as child
             final WebView webView = new WebView();
             if (logger.isTraceEnabled()) {
@@ -897,6 +1273,9 @@ public final class MapView extends Region implements AutoCloseable {
                     if (logger.isTraceEnabled()) {
                         logger.trace("WebEngine loader state {} -> {}", oldValue, newValue);
                     }
+                    if (unloaded) {
+                        return;
+                    }
                     if (Worker.State.SUCCEEDED == newValue) {
                         // set an interface object named 'javaConnector' in the web engine
                         final JSObject window = (JSObject) webEngine.executeScript("window");
@@ -905,56 +1284,14 @@ public final class MapView extends Region implements AutoCloseable {
                         // add JS console.log() redirector
                         webEngine.executeScript("console.log = function(msg) { _javaConnector.console(msg) }");
 
-                        // get the Javascript connector object. Even if the html file is loaded, JS may not yet
-                        // be ready, so prepare for an exception and retry
-                        int numRetries = 0;
-                        do {
-                            final Object o;
-                            try {
-                                final String script = "createJSMapView('" + configuration.toJson() + "')";
-                                if (logger.isDebugEnabled()) {
-                                    logger.debug("calling JS \"" + script + '"');
-                                }
-                                o = webEngine.executeScript(script);
-                                jsMapView = (JSObject) o;
-                            } catch (final JSException e) {
-                                if (logger.isWarnEnabled()) {
-                                    logger.warn("JS not ready, retrying...");
-                                }
-                                numRetries++;
-                                try {
-                                    Thread.sleep(500);
-                                } catch (final InterruptedException e1) {
-                                    if (logger.isWarnEnabled()) {
-                                        logger.warn("retry interrupted");
-                                    }
-                                }
-                            } catch (final Exception e) {
-                                if (logger.isWarnEnabled()) {
-                                    logger.warn("getJSMapView: returned (null)");
-                                }
-                                numRetries++;
-                            }
-                        } while (null == jsMapView && numRetries < NUM_RETRIES_FOR_JS);
-
-                        if (null == jsMapView) {
-                            if (logger.isWarnEnabled()) {
-                                logger.warn("error loading {}, JavaScript not ready.", MAPVIEW_HTML);
-                            }
-                        } else {
-                            mapViewReady.set(true);
-                            setMapTypeInMap();
-                            setCenterInMap();
-                            setZoomInMap();
-                            initialized.set(true);
-                            if (logger.isDebugEnabled()) {
-                                logger.debug("initialized.");
-                            }
-                        }
+                        // the Javascript code reports back to the javaConnector when it is ready
+                        connectJavaScript(0);
                     } else if (Worker.State.FAILED == newValue) {
                         if (logger.isWarnEnabled()) {
                             logger.warn("error loading {}", MAPVIEW_HTML);
                         }
+                        initializedFuture.completeExceptionally(
+                            new IllegalStateException("error loading " + MAPVIEW_HTML));
                     }
                 }
             );
@@ -964,6 +1301,92 @@ public final class MapView extends Region implements AutoCloseable {
             }
             webEngine.loadContent(html);
         });
+        if (null == webEngine) {
+            initializedFuture.completeExceptionally(new IllegalStateException("cannot load " + MAPVIEW_HTML));
+        }
+        return initializedFuture;
+    }
+
+    /**
+     * starts the handshake with the Javascript code in the loaded page. Even if the html file is loaded, the Javascript
+     * code may not yet be ready; then the next attempt is scheduled without blocking the JavaFX application thread.
+     *
+     * @param attempt
+     *     the number of the attempt, starting with 0
+     */
+    private void connectJavaScript(final int attempt) {
+        boolean connected = false;
+        try {
+            connected = Boolean.TRUE.equals(webEngine.executeScript(
+                "typeof connectJavaConnector === 'function' && (connectJavaConnector(), true)"));
+        } catch (final JSException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("JS handshake failed", e);
+            }
+        }
+        if (!connected) {
+            if (attempt + 1 < NUM_RETRIES_FOR_JS) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("JS not ready, retrying...");
+                }
+                final PauseTransition retry = new PauseTransition(RETRY_DELAY_FOR_JS);
+                retry.setOnFinished(event -> connectJavaScript(attempt + 1));
+                retry.play();
+            } else {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("error loading {}, JavaScript not ready.", MAPVIEW_HTML);
+                }
+                initializedFuture.completeExceptionally(
+                    new IllegalStateException("JavaScript in " + MAPVIEW_HTML + " not ready"));
+            }
+        }
+    }
+
+    /**
+     * creates the Javascript map object after the Javascript code reported to be ready and sets up the map.
+     */
+    private void createJSMapView() {
+        if (null != jsMapView) {
+            return;
+        }
+        try {
+            final String script = "createJSMapView('" + configuration.toJson() + "')";
+            if (logger.isDebugEnabled()) {
+                logger.debug("calling JS \"" + script + '"');
+            }
+            jsMapView = (JSObject) webEngine.executeScript(script);
+        } catch (final JSException | ClassCastException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("error creating the JS map view", e);
+            }
+            initializedFuture.completeExceptionally(e);
+            return;
+        }
+        mapViewReady.set(true);
+        setMapTypeInMap();
+        setCenterInMap();
+        setZoomInMap();
+        initialized.set(true);
+        if (logger.isDebugEnabled()) {
+            logger.debug("initialized.");
+        }
+        initializedFuture.complete(this);
+    }
+
+    /**
+     * returns the mapview html with all includes. The html is assembled once per custom css and then taken from a
+     * cache, so that creating further MapView instances does not need to read and concatenate the included resources
+     * again. Changes to the custom css file after it was first loaded are not picked up.
+     *
+     * @param customMapviewCssURL
+     *     the optional URL of the custom css
+     * @return the html in an Optional, empty if it could not be loaded
+     */
+    static Optional<String> loadMapViewHtml(final Optional<URL> customMapviewCssURL) {
+        final String key = customMapviewCssURL.map(URL::toExternalForm).orElse("");
+        // computeIfAbsent does not store null, so a failed load is retried with the next call
+        return Optional.ofNullable(
+            MAPVIEW_HTML_CACHE.computeIfAbsent(key, k -> assembleMapViewHtml(customMapviewCssURL)));
     }
 
     /**
@@ -971,11 +1394,13 @@ public final class MapView extends Region implements AutoCloseable {
      * mapview.html file is injected as &lt;base&gt; element after the &lt;head&gt; opening tag, so that css and js
      * files can be found by the WebView.
      *
-     * @return the loaded string in an Optional
+     * @param customMapviewCssURL
+     *     the optional URL of the custom css
+     * @return the loaded string or null if it could not be loaded
      */
-    private Optional<String> loadMapViewHtml() {
+    private static String assembleMapViewHtml(final Optional<URL> customMapviewCssURL) {
         String mapViewHtml = null;
-        final URL mapviewURL = getClass().getResource(MAPVIEW_HTML);
+        final URL mapviewURL = MapView.class.getResource(MAPVIEW_HTML);
         if (null == mapviewURL) {
             if (logger.isWarnEnabled()) {
                 logger.warn("resource not found: {}", MAPVIEW_HTML);
@@ -992,7 +1417,7 @@ public final class MapView extends Region implements AutoCloseable {
                 final String baseURLPath = baseURL.substring(0, baseURL.lastIndexOf('/') + 1);
                 mapViewHtml = lines
                     .map(String::trim)
-                    .map(line -> processHtmlLine(baseURLPath, line))
+                    .map(line -> processHtmlLine(baseURLPath, line, customMapviewCssURL))
                     .flatMap(List::stream)
                     .collect(Collectors.joining("\n"));
 //                logger.finer(mapViewHtml);
@@ -1002,7 +1427,53 @@ public final class MapView extends Region implements AutoCloseable {
                 }
             }
         }
-        return Optional.ofNullable(mapViewHtml);
+        return mapViewHtml;
+    }
+
+    /**
+     * loads an optional Javascript module into the page if it is not already loaded. The modules contain code that is
+     * only needed when the corresponding feature is used, so the page of a simple map does not have to parse it.
+     *
+     * @param module
+     *     the name of the module resource
+     */
+    private void loadJSModule(final String module) {
+        if (loadedJSModules.contains(module)) {
+            return;
+        }
+        // computeIfAbsent does not store null, so a failed load is retried with the next call
+        final String source = JS_MODULE_CACHE.computeIfAbsent(module, MapView::readJSModule);
+        if (null != source) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("loading JS module {}", module);
+            }
+            webEngine.executeScript(source);
+            loadedJSModules.add(module);
+        }
+    }
+
+    /**
+     * reads the source of an optional Javascript module from the classpath.
+     *
+     * @param module
+     *     the name of the module resource
+     * @return the source or null if it could not be read
+     */
+    private static String readJSModule(final String module) {
+        try (final InputStream inputStream = MapView.class.getResourceAsStream('/' + module)) {
+            if (null == inputStream) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("resource not found: {}", module);
+                }
+                return null;
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("loading resource {}", module, e);
+            }
+            return null;
+        }
     }
 
     /**
@@ -1024,16 +1495,19 @@ public final class MapView extends Region implements AutoCloseable {
      *     the URL of the file
      * @param line
      *     the line to process, must be trimmed
+     * @param customMapviewCssURL
+     *     the optional URL of the custom css
      * @return a List with the processed strings
      */
-    private List<String> processHtmlLine(final String baseURL, final String line) {
+    private static List<String> processHtmlLine(final String baseURL, final String line,
+                                                final Optional<URL> customMapviewCssURL) {
         // insert base url
         if ("<head>".equalsIgnoreCase(line)) {
             return Arrays.asList(line, "<base href=\"" + baseURL + "\">");
         }
 
         // check for replacement pattern
-        final Matcher matcher = htmlIncludePattern.matcher(line);
+        final Matcher matcher = HTML_INCLUDE_PATTERN.matcher(line);
         if (matcher.matches()) {
             final String resource = baseURL + matcher.group(1);
             if (CUSTOM_MAPVIEW_CSS.equals(matcher.group(1))) {
@@ -1136,9 +1610,11 @@ public final class MapView extends Region implements AutoCloseable {
                 final CoordinateLineListener coordinateLineListener = coordinateLineListeners.get(id);
                 if (null != coordinateLine && null != coordinateLineListener) {
                     coordinateLine.visibleProperty().removeListener(coordinateLineListener.getVisibileChangeListener());
+                    coordinateLine.removeCoordinatesListener(coordinateLineListener.getCoordinatesListener());
                 }
 
                 coordinateLineListeners.remove(id);
+                coordinateLineIndices.remove(id);
                 coordinateLines.remove(id);
             }
         }
@@ -1236,6 +1712,44 @@ public final class MapView extends Region implements AutoCloseable {
         return this;
     }
 
+    /**
+     * removes all elements from the map: markers, labels, coordinate lines, circles, heatmap layers, tile overlays and
+     * tile layers. Center, zoom and map type are not changed. If the MapView is not yet initialized, nothing happens.
+     *
+     * @return this object
+     */
+    public MapView removeAllElements() {
+        if (!getInitialized()) {
+            if (logger.isWarnEnabled()) {
+                logger.warn(MAP_VIEW_NOT_YET_INITIALIZED);
+            }
+        } else {
+            // copy the ids as the remove methods modify the maps
+            synchronized (mapCoordinateElements) {
+                new ArrayList<>(mapCoordinateElements.keySet()).forEach(this::removeMapCoordinateElementWithId);
+            }
+            synchronized (coordinateLines) {
+                new ArrayList<>(coordinateLines.keySet()).forEach(this::removeCoordinateLineWithId);
+            }
+            synchronized (mapCircles) {
+                new ArrayList<>(mapCircles.keySet()).forEach(this::removeMapCircleWithId);
+            }
+            synchronized (heatmapLayers) {
+                new ArrayList<>(heatmapLayers.keySet()).forEach(this::removeHeatmapLayerWithId);
+            }
+            synchronized (tileOverlays) {
+                new ArrayList<>(tileOverlays.keySet()).forEach(this::removeTileOverlayWithId);
+            }
+            synchronized (tileLayers) {
+                new ArrayList<>(tileLayers.keySet()).forEach(this::removeTileLayerWithId);
+            }
+            // no marker uses the registered images anymore
+            markerImageIds.clear();
+            jsMapView.call("clearMarkerImages");
+        }
+        return this;
+    }
+
     /**
      * sets the Bing Maps API Key.
      *
@@ -1379,7 +1893,7 @@ public final class MapView extends Region implements AutoCloseable {
          *     new longitude value
          */
         public void centerMovedTo(double lat, double lon) {
-            final Coordinate newCenter = new Coordinate(lat, lon);
+            final Coordinate newCenter = Coordinate.of(lat, lon);
             if (logger.isTraceEnabled()) {
                 logger.trace("JS reports center value {}", newCenter);
             }
@@ -1396,7 +1910,7 @@ public final class MapView extends Region implements AutoCloseable {
          *     new longitude value
          */
         public void pointerMovedTo(double lat, double lon) {
-            final Coordinate coordinate = new Coordinate(lat, lon);
+            final Coordinate coordinate = Coordinate.of(lat, lon);
             if (logger.isTraceEnabled()) {
                 logger.trace("JS reports pointer move {}", coordinate);
             }
@@ -1463,7 +1977,7 @@ public final class MapView extends Region implements AutoCloseable {
          *     new longitude value
          */
         public void singleClickAt(double lat, double lon) {
-            final Coordinate coordinate = new Coordinate(lat, lon);
+            final Coordinate coordinate = Coordinate.of(lat, lon);
             if (logger.isTraceEnabled()) {
                 logger.trace("JS reports single click at {}", coordinate);
             }
@@ -1479,7 +1993,7 @@ public final class MapView extends Region implements AutoCloseable {
          *     new longitude value
          */
         public void contextClickAt(double lat, double lon) {
-            final Coordinate coordinate = new Coordinate(lat, lon);
+            final Coordinate coordinate = Coordinate.of(lat, lon);
             if (logger.isTraceEnabled()) {
                 logger.trace("JS reports context click at {}", coordinate);
             }
@@ -1744,13 +2258,57 @@ public final class MapView extends Region implements AutoCloseable {
          *     longitude of lower right corner
          */
         public void extentSelected(double latMin, double lonMin, double latMax, double lonMax) {
-            final Extent extent = Extent.forCoordinates(new Coordinate(latMin, lonMin), new Coordinate(latMax, lonMax));
+            final Extent extent = Extent.forBounds(latMin, lonMin, latMax, lonMax);
             if (logger.isTraceEnabled()) {
                 logger.trace("JS reports extend selected: {}", extent);
             }
             fireEvent(new MapViewEvent(MapViewEvent.MAP_EXTENT, extent));
         }
 
+        /**
+         * called from the JS code in the web page when all scripts are loaded, as answer to the handshake started
+         * when the page was loaded.
+         */
+        public void jsReady() {
+            if (logger.isDebugEnabled()) {
+                logger.debug("JS reports to be ready");
+            }
+            createJSMapView();
+        }
+
+        /**
+         * called when the map needs a tile of a TileOverlay. The tile is rendered in the background and passed to the
+         * map when it is ready, tagged with the revision so that the map can discard tiles of an outdated revision.
+         *
+         * @param tileOverlayId
+         *     the id of the TileOverlay
+         * @param revision
+         *     the revision of the overlay the map shows
+         * @param zoom
+         *     the zoom level of the tile
+         * @param x
+         *     the column of the tile
+         * @param y
+         *     the row of the tile
+         */
+        public void tileRequested(String tileOverlayId, int revision, int zoom, int x, int y) {
+            final TileOverlay tileOverlay = getTileOverlay(tileOverlayId);
+            if (null == tileOverlay) {
+                return;
+            }
+            tileOverlay.tile(zoom, x, y).whenComplete((dataUrl, throwable) -> {
+                if (null != throwable && logger.isWarnEnabled()) {
+                    logger.warn("could not render tile {}/{}/{} of {}", zoom, x, y, tileOverlayId, throwable);
+                }
+                final String url = null == throwable ? dataUrl : TileOverlay.EMPTY_TILE;
+                Platform.runLater(() -> {
+                    if (null != getTileOverlay(tileOverlayId)) {
+                        jsMapView.call("setOverlayTile", tileOverlayId, revision, zoom, x, y, url);
+                    }
+                });
+            });
+        }
+
         /**
          * called when the map extent changed by changing the center or zoom of the map.
          *
@@ -1764,10 +2322,12 @@ public final class MapView extends Region implements AutoCloseable {
          *     longitude of lower right corner
          */
         public void extentChanged(double latMin, double lonMin, double latMax, double lonMax) {
-            final Extent extent = Extent.forCoordinates(new Coordinate(latMin, lonMin), new Coordinate(latMax, lonMax));
+            final Extent extent = Extent.forBounds(latMin, lonMin, latMax, lonMax);
             if (logger.isTraceEnabled()) {
                 logger.trace("JS reports extend change: {}", extent);
             }
+            lastExtentFromMap = extent;
+            scheduleAllHeatmapLayersRefresh();
             fireEvent(new MapViewEvent(MapViewEvent.MAP_BOUNDING_EXTENT, extent));
         }
 
@@ -1802,13 +2362,20 @@ public final class MapView extends Region implements AutoCloseable {
                     if (logger.isDebugEnabled()) {
                         logger.debug("adding circle {}", mapCircle);
                     }
+                    loadJSModule(JS_MODULE_MAP_CIRCLE);
                     final JSObject jsCircle = (JSObject) jsMapView.call("getCircle", id);
 
-                    logger.debug("  - setCenter: (" + mapCircle.getCenter().getLatitude() + ", " + mapCircle.getCenter().getLongitude() + ")");
-                    jsCircle.call("setCenter", mapCircle.getCenter().getLatitude(), mapCircle.getCenter().getLongitude());
-
-                    logger.debug("  - setRadius: " + mapCircle.getRadius());
-                    jsCircle.call("setRadius", mapCircle.getRadius());
+                    // the geodesic polygon is sent in one call as the circle may have several hundred vertices
+                    final double[] vertices = GeodesicCircles.cachedCircle(mapCircle.getCenter(),
+                        mapCircle.getRadius(), mapCircle.getTolerance());
+                    final StringBuilder polygon = new StringBuilder(vertices.length * 12);
+                    for (int i = 0; i < vertices.length; i++) {
+                        if (i > 0) {
+                            polygon.append(',');
+                        }
+                        polygon.append(vertices[i]);
+                    }
+                    jsCircle.call("setPolygon", polygon.toString());
 
                     final javafx.scene.paint.Color color = mapCircle.getColor();
                     jsCircle.call("setColor",
@@ -1886,4 +2453,495 @@ public final class MapView extends Region implements AutoCloseable {
             }
         }
     }
+
+    /**
+     * adds a HeatmapLayer to the map. If it was already added, nothing happens. The MapView only stores a weak
+     * reference to the object, so the caller must keep a reference in order to prevent the layer to be removed from
+     * the map. The points of the layer are aggregated for the current zoom level and sent to the map again when they
+     * change, at most once per JavaFX pulse. This method must only be called after the map is initialized, otherwise a
+     * warning is logged and the layer is not added to the map.
+     *
+     * @param heatmapLayer
+     *     the HeatmapLayer to add
+     * @return this object
+     * @throws java.lang.NullPointerException
+     *     if argument is null
+     */
+    public MapView addHeatmapLayer(final HeatmapLayer heatmapLayer) {
+        if (!getInitialized()) {
+            if (logger.isWarnEnabled()) {
+                logger.warn(MAP_VIEW_NOT_YET_INITIALIZED);
+            }
+        } else {
+            // sync on the heatmapLayers map as the cleaner thread accesses this as well
+            synchronized (heatmapLayers) {
+                final String id = requireNonNull(heatmapLayer).getId();
+                if (!heatmapLayers.containsKey(id)) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("adding heatmap layer {}", heatmapLayer);
+                    }
+                    loadJSModule(JS_MODULE_HEATMAP);
+                    jsMapView.call("addHeatmap", id, heatmapLayer.getRadius(), heatmapLayer.getBlur());
+                    sendHeatmapLayerData(id, heatmapLayer);
+
+                    final ChangeListener<Boolean> visibleListener =
+                        (observable, oldValue, newValue) -> setHeatmapLayerVisibleInMap(id);
+                    heatmapLayer.visibleProperty().addListener(visibleListener);
+                    heatmapLayerVisibleListeners.put(id, visibleListener);
+                    final Runnable changeListener = () -> scheduleHeatmapLayerRefresh(id);
+                    heatmapLayer.addChangeListener(changeListener);
+                    heatmapLayerChangeListeners.put(id, changeListener);
+
+                    heatmapLayers.put(id, new WeakReference<>(heatmapLayer, weakReferenceQueue));
+                    setHeatmapLayerVisibleInMap(id);
+                    updateHeatmapDecayTimeline();
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * removes a HeatmapLayer from the map. If it was not added or the MapView is not yet initialized, nothing happens.
+     *
+     * @param heatmapLayer
+     *     the HeatmapLayer to remove
+     * @return this object
+     * @throws java.lang.NullPointerException
+     *     if argument is null
+     */
+    public MapView removeHeatmapLayer(final HeatmapLayer heatmapLayer) {
+        if (!getInitialized()) {
+            if (logger.isWarnEnabled()) {
+                logger.warn(MAP_VIEW_NOT_YET_INITIALIZED);
+            }
+        } else {
+            removeHeatmapLayerWithId(requireNonNull(heatmapLayer).getId());
+        }
+        return this;
+    }
+
+    /**
+     * removes the HeatmapLayer with the given id. if no such element is found, nothing happens.
+     *
+     * @param id
+     *     id of the heatmap layer, may not be null
+     */
+    private void removeHeatmapLayerWithId(final String id) {
+        // sync on the map as the cleaner thread accesses this as well
+        synchronized (heatmapLayers) {
+            if (heatmapLayers.containsKey(id)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("removing heatmap layer {}", id);
+                }
+
+                jsMapView.call("removeHeatmap", id);
+
+                // if the layer was not gc'ed we need to unregister the listeners
+                final HeatmapLayer heatmapLayer = heatmapLayers.get(id).get();
+                if (null != heatmapLayer) {
+                    heatmapLayer.visibleProperty().removeListener(heatmapLayerVisibleListeners.get(id));
+                    heatmapLayer.removeChangeListener(heatmapLayerChangeListeners.get(id));
+                }
+                heatmapLayerVisibleListeners.remove(id);
+                heatmapLayerChangeListeners.remove(id);
+                heatmapLayers.remove(id);
+                updateHeatmapDecayTimeline();
+            }
+        }
+    }
+
+    /**
+     * shows or hides the heatmap layer in the map according to it's visible property.
+     *
+     * @param heatmapLayerId
+     *     the id of the HeatmapLayer object
+     */
+    private void setHeatmapLayerVisibleInMap(final String heatmapLayerId) {
+        final WeakReference<HeatmapLayer> heatmapLayerWeakReference = heatmapLayers.get(heatmapLayerId);
+        if (null != heatmapLayerWeakReference) {
+            final HeatmapLayer heatmapLayer = heatmapLayerWeakReference.get();
+            if (null != heatmapLayer) {
+                jsMapView.call(heatmapLayer.getVisible() ? "showHeatmap" : "hideHeatmap", heatmapLayerId);
+            }
+        }
+    }
+
+    /**
+     * aggregates the points of a HeatmapLayer for the current zoom in the common ForkJoinPool and sends the cells to
+     * the map on the JavaFX thread. There is at most one aggregation per layer; when the layer is changed during an
+     * aggregation, it is aggregated again afterwards. Must be called on the JavaFX thread.
+     *
+     * @param id
+     *     the id of the layer
+     * @param heatmapLayer
+     *     the layer
+     */
+    private void sendHeatmapLayerData(final String id, final HeatmapLayer heatmapLayer) {
+        if (!heatmapLayersAggregating.add(id)) {
+            heatmapLayersOutdated.add(id);
+            return;
+        }
+        final int zoom = (int) Math.round(getZoom());
+        final Extent extent = lastExtentFromMap;
+        CompletableFuture
+            .supplyAsync(() -> HeatmapLayer.toData(heatmapLayer.aggregate(zoom, extent)), ForkJoinPool.commonPool())
+            .whenComplete((data, throwable) -> Platform.runLater(() -> {
+                heatmapLayersAggregating.remove(id);
+                final boolean outdated = heatmapLayersOutdated.remove(id);
+                synchronized (heatmapLayers) {
+                    if (!heatmapLayers.containsKey(id)) {
+                        return;
+                    }
+                    if (null != throwable) {
+                        if (logger.isWarnEnabled()) {
+                            logger.warn("could not aggregate heatmap layer {}", id, throwable);
+                        }
+                    } else {
+                        if (logger.isTraceEnabled()) {
+                            logger.trace("sending {} characters of cells for heatmap layer {}", data.length(), id);
+                        }
+                        jsMapView.call("setHeatmapData", id, data);
+                    }
+                    if (outdated) {
+                        sendHeatmapLayerData(id, heatmapLayer);
+                    }
+                }
+            }));
+    }
+
+    /**
+     * marks a HeatmapLayer for refresh. The refresh runs on the JavaFX thread, several changes before it runs are
+     * combined.
+     *
+     * @param id
+     *     the id of the layer
+     */
+    private void scheduleHeatmapLayerRefresh(final String id) {
+        final boolean schedule;
+        synchronized (heatmapLayersToRefresh) {
+            schedule = heatmapLayersToRefresh.isEmpty();
+            heatmapLayersToRefresh.add(id);
+        }
+        if (schedule) {
+            Platform.runLater(this::refreshHeatmapLayers);
+        }
+    }
+
+    private void scheduleAllHeatmapLayersRefresh() {
+        if (getInitialized()) {
+            synchronized (heatmapLayers) {
+                heatmapLayers.keySet().forEach(this::scheduleHeatmapLayerRefresh);
+            }
+        }
+    }
+
+    private void refreshHeatmapLayers() {
+        final List<String> ids;
+        synchronized (heatmapLayersToRefresh) {
+            ids = new ArrayList<>(heatmapLayersToRefresh);
+            heatmapLayersToRefresh.clear();
+        }
+        synchronized (heatmapLayers) {
+            for (final String id : ids) {
+                final WeakReference<HeatmapLayer> heatmapLayerWeakReference = heatmapLayers.get(id);
+                final HeatmapLayer heatmapLayer = null == heatmapLayerWeakReference ? null
+                    : heatmapLayerWeakReference.get();
+                if (null != heatmapLayer) {
+                    sendHeatmapLayerData(id, heatmapLayer);
+                }
+            }
+        }
+    }
+
+    /**
+     * starts the timeline that lets the points of heatmaps with a time window fade while heatmaps are in the map and
+     * stops it otherwise. Must be called when synchronized on heatmapLayers.
+     */
+    private void updateHeatmapDecayTimeline() {
+        if (heatmapLayers.isEmpty()) {
+            if (null != heatmapDecayTimeline) {
+                heatmapDecayTimeline.stop();
+                heatmapDecayTimeline = null;
+            }
+        } else if (null == heatmapDecayTimeline) {
+            heatmapDecayTimeline = new Timeline(new KeyFrame(javafx.util.Duration.seconds(1), event -> {
+                synchronized (heatmapLayers) {
+                    heatmapLayers.forEach((id, heatmapLayerWeakReference) -> {
+                        final HeatmapLayer heatmapLayer = heatmapLayerWeakReference.get();
+                        if (null != heatmapLayer && null != heatmapLayer.getTimeWindow()) {
+                            scheduleHeatmapLayerRefresh(id);
+                        }
+                    });
+                }
+            }));
+            heatmapDecayTimeline.setCycleCount(Animation.INDEFINITE);
+            heatmapDecayTimeline.play();
+        }
+    }
+
+    /**
+     * adds a TileOverlay to the map. If it was already added, nothing happens. The MapView only stores a weak
+     * reference to the object, so the caller must keep a reference in order to prevent the overlay to be removed from
+     * the map. This method must only be called after the map is initialized, otherwise a warning is logged and the
+     * overlay is not added to the map.
+     *
+     * @param tileOverlay
+     *     the TileOverlay to add
+     * @return this object
+     * @throws java.lang.NullPointerException
+     *     if argument is null
+     */
+    public MapView addTileOverlay(final TileOverlay tileOverlay) {
+        if (!getInitialized()) {
+            if (logger.isWarnEnabled()) {
+                logger.warn(MAP_VIEW_NOT_YET_INITIALIZED);
+            }
+        } else {
+            // sync on the tileOverlays map as the cleaner thread accesses this as well
+            synchronized (tileOverlays) {
+                final String id = requireNonNull(tileOverlay).getId();
+                if (!tileOverlays.containsKey(id)) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("adding tile overlay {}", tileOverlay);
+                    }
+                    loadJSModule(JS_MODULE_TILE_OVERLAY);
+                    jsMapView.call("addTileOverlay", id, tileOverlay.getTileSize(), tileOverlay.getRevision());
+
+                    final ChangeListener<Boolean> visibleListener =
+                        (observable, oldValue, newValue) -> setTileOverlayVisibleInMap(id);
+                    tileOverlay.visibleProperty().addListener(visibleListener);
+                    tileOverlayVisibleListeners.put(id, visibleListener);
+                    // refresh() may be called from any thread
+                    final Runnable changeListener =
+                        () -> Platform.runLater(() -> refreshTileOverlayInMap(id));
+                    tileOverlay.addChangeListener(changeListener);
+                    tileOverlayChangeListeners.put(id, changeListener);
+
+                    tileOverlays.put(id, new WeakReference<>(tileOverlay, weakReferenceQueue));
+                    setTileOverlayVisibleInMap(id);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * removes a TileOverlay from the map. If it was not added or the MapView is not yet initialized, nothing happens.
+     *
+     * @param tileOverlay
+     *     the TileOverlay to remove
+     * @return this object
+     * @throws java.lang.NullPointerException
+     *     if argument is null
+     */
+    public MapView removeTileOverlay(final TileOverlay tileOverlay) {
+        if (!getInitialized()) {
+            if (logger.isWarnEnabled()) {
+                logger.warn(MAP_VIEW_NOT_YET_INITIALIZED);
+            }
+        } else {
+            removeTileOverlayWithId(requireNonNull(tileOverlay).getId());
+        }
+        return this;
+    }
+
+    /**
+     * removes the TileOverlay with the given id. if no such element is found, nothing happens.
+     *
+     * @param id
+     *     id of the tile overlay, may not be null
+     */
+    private void removeTileOverlayWithId(final String id) {
+        // sync on the map as the cleaner thread accesses this as well
+        synchronized (tileOverlays) {
+            if (tileOverlays.containsKey(id)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("removing tile overlay {}", id);
+                }
+
+                jsMapView.call("removeTileOverlay", id);
+
+                // if the overlay was not gc'ed we need to unregister the listeners
+                final TileOverlay tileOverlay = tileOverlays.get(id).get();
+                if (null != tileOverlay) {
+                    tileOverlay.visibleProperty().removeListener(tileOverlayVisibleListeners.get(id));
+                    tileOverlay.removeChangeListener(tileOverlayChangeListeners.get(id));
+                }
+                tileOverlayVisibleListeners.remove(id);
+                tileOverlayChangeListeners.remove(id);
+                tileOverlays.remove(id);
+            }
+        }
+    }
+
+    /**
+     * shows or hides the tile overlay in the map according to it's visible property.
+     *
+     * @param tileOverlayId
+     *     the id of the TileOverlay object
+     */
+    private void setTileOverlayVisibleInMap(final String tileOverlayId) {
+        final TileOverlay tileOverlay = getTileOverlay(tileOverlayId);
+        if (null != tileOverlay) {
+            jsMapView.call(tileOverlay.getVisible() ? "showTileOverlay" : "hideTileOverlay", tileOverlayId);
+        }
+    }
+
+    /**
+     * has the map load the tiles of an overlay again after it was refreshed.
+     *
+     * @param tileOverlayId
+     *     the id of the TileOverlay object
+     */
+    private void refreshTileOverlayInMap(final String tileOverlayId) {
+        final TileOverlay tileOverlay = getTileOverlay(tileOverlayId);
+        if (null != tileOverlay) {
+            jsMapView.call("refreshTileOverlay", tileOverlayId, tileOverlay.getRevision());
+        }
+    }
+
+    /**
+     * @param tileOverlayId
+     *     the id of the TileOverlay object
+     * @return the TileOverlay if it is in the map and not gc'ed, otherwise null
+     */
+    private TileOverlay getTileOverlay(final String tileOverlayId) {
+        synchronized (tileOverlays) {
+            final WeakReference<TileOverlay> tileOverlayWeakReference = tileOverlays.get(tileOverlayId);
+            return null == tileOverlayWeakReference ? null : tileOverlayWeakReference.get();
+        }
+    }
+
+    /**
+     * adds a TileLayer to the map. If it was already added, nothing happens. The MapView only stores a weak reference
+     * to the object, so the caller must keep a reference in order to prevent the layer to be removed from the map. This
+     * method must only be called after the map is initialized, otherwise a warning is logged and the layer is not
+     * added to the map.
+     *
+     * @param tileLayer
+     *     the TileLayer to add
+     * @return this object
+     * @throws java.lang.NullPointerException
+     *     if argument is null
+     */
+    public MapView addTileLayer(final TileLayer tileLayer) {
+        if (!getInitialized()) {
+            if (logger.isWarnEnabled()) {
+                logger.warn(MAP_VIEW_NOT_YET_INITIALIZED);
+            }
+        } else {
+            // sync on the tileLayers map as the cleaner thread accesses this as well
+            synchronized (tileLayers) {
+                final String id = requireNonNull(tileLayer).getId();
+                if (!tileLayers.containsKey(id)) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("adding tile layer {}", tileLayer);
+                    }
+                    loadJSModule(JS_MODULE_TILE_LAYER);
+                    jsMapView.call("addTileLayer", id, tileLayer.sourceToJson(), tileLayer.optionsToJson());
+
+                    final ChangeListener<Boolean> visibleListener =
+                        (observable, oldValue, newValue) -> setTileLayerVisibleInMap(id);
+                    tileLayer.visibleProperty().addListener(visibleListener);
+                    tileLayerVisibleListeners.put(id, visibleListener);
+                    // the setters may be called from any thread
+                    final Runnable changeListener = () -> Platform.runLater(() -> setTileLayerOptionsInMap(id));
+                    tileLayer.addChangeListener(changeListener);
+                    tileLayerChangeListeners.put(id, changeListener);
+
+                    tileLayers.put(id, new WeakReference<>(tileLayer, weakReferenceQueue));
+                    setTileLayerVisibleInMap(id);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * removes a TileLayer from the map. If it was not added or the MapView is not yet initialized, nothing happens.
+     *
+     * @param tileLayer
+     *     the TileLayer to remove
+     * @return this object
+     * @throws java.lang.NullPointerException
+     *     if argument is null
+     */
+    public MapView removeTileLayer(final TileLayer tileLayer) {
+        if (!getInitialized()) {
+            if (logger.isWarnEnabled()) {
+                logger.warn(MAP_VIEW_NOT_YET_INITIALIZED);
+            }
+        } else {
+            removeTileLayerWithId(requireNonNull(tileLayer).getId());
+        }
+        return this;
+    }
+
+    /**
+     * removes the TileLayer with the given id. if no such element is found, nothing happens.
+     *
+     * @param id
+     *     id of the tile layer, may not be null
+     */
+    private void removeTileLayerWithId(final String id) {
+        // sync on the map as the cleaner thread accesses this as well
+        synchronized (tileLayers) {
+            if (tileLayers.containsKey(id)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("removing tile layer {}", id);
+                }
+
+                jsMapView.call("removeTileLayer", id);
+
+                // if the layer was not gc'ed we need to unregister the listeners
+                final TileLayer tileLayer = tileLayers.get(id).get();
+                if (null != tileLayer) {
+                    tileLayer.visibleProperty().removeListener(tileLayerVisibleListeners.get(id));
+                    tileLayer.removeChangeListener(tileLayerChangeListeners.get(id));
+                }
+                tileLayerVisibleListeners.remove(id);
+                tileLayerChangeListeners.remove(id);
+                tileLayers.remove(id);
+            }
+        }
+    }
+
+    /**
+     * shows or hides the tile layer in the map according to it's visible property.
+     *
+     * @param tileLayerId
+     *     the id of the TileLayer object
+     */
+    private void setTileLayerVisibleInMap(final String tileLayerId) {
+        final TileLayer tileLayer = getTileLayer(tileLayerId);
+        if (null != tileLayer) {
+            jsMapView.call(tileLayer.getVisible() ? "showTileLayer" : "hideTileLayer", tileLayerId);
+        }
+    }
+
+    /**
+     * sets the opacity, z-index, zoom range and preload of the tile layer in the map.
+     *
+     * @param tileLayerId
+     *     the id of the TileLayer object
+     */
+    private void setTileLayerOptionsInMap(final String tileLayerId) {
+        final TileLayer tileLayer = getTileLayer(tileLayerId);
+        if (null != tileLayer) {
+            jsMapView.call("setTileLayerOptions", tileLayerId, tileLayer.optionsToJson());
+        }
+    }
+
+    /**
+     * @param tileLayerId
+     *     the id of the TileLayer object
+     * @return the TileLayer if it is in the map and not gc'ed, otherwise null
+     */
+    private TileLayer getTileLayer(final String tileLayerId) {
+        synchronized (tileLayers) {
+            final WeakReference<TileLayer> tileLayerWeakReference = tileLayers.get(tileLayerId);
+            return null == tileLayerWeakReference ? null : tileLayerWeakReference.get();
+        }
+    }
 }
@@ -0,0 +1,253 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A pool of initialized MapView objects for applications that often show and hide maps, for example in popups.
+ * Creating a MapView loads the WebView with the OpenLayers code, which takes a noticeable time. The pool initializes
+ * the MapViews in advance, one after the other, so that {@link #acquire()} can return one that is ready to use.
+ *
+ * A MapView that is no longer needed is removed from the scene graph by the caller and given back with {@link
+ * #release(MapView)}. The pool removes all elements and restores the center, zoom and map type the MapView had after
+ * initialization; event handlers the caller added must be removed by the caller.
+ *
+ * Like MapView, the pool must only be used from the JavaFX application thread.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public final class MapViewPool {
+
+    /** Logger for the class */
+    private static final Logger logger = LoggerFactory.getLogger(MapViewPool.class);
+
+    /** number of MapViews to keep ready */
+    private final int size;
+    /** creates the MapViews before they are initialized */
+    private final Supplier<MapView> mapViewFactory;
+    /** the configuration to initialize the MapViews */
+    private final Configuration configuration;
+    /** the initialized MapViews that are not in use */
+    private final Deque<MapView> idle = new ArrayDeque<>();
+    /** the view settings of the MapViews created by this pool after their initialization */
+    private final Map<MapView, ViewSettings> viewSettings = new IdentityHashMap<>();
+    /** true while a MapView is initialized for the pool */
+    private boolean warming;
+    /** set when the pool is closed */
+    private boolean closed;
+
+    /**
+     * creates a pool with MapViews with default settings and starts initializing them.
+     *
+     * @param size
+     *         the number of MapViews to keep ready
+     * @param configuration
+     *         the configuration to initialize the MapViews
+     * @throws IllegalArgumentException
+     *         if size is negative
+     * @throws NullPointerException
+     *         if configuration is null
+     */
+    public MapViewPool(final int size, final Configuration configuration) {
+        this(size, configuration, MapView::new);
+    }
+
+    /**
+     * creates a pool and starts initializing the MapViews.
+     *
+     * @param size
+     *         the number of MapViews to keep ready
+     * @param configuration
+     *         the configuration to initialize the MapViews
+     * @param mapViewFactory
+     *         creates the MapViews, used to set values that are needed before initialization like api keys or the
+     *         custom css
+     * @throws IllegalArgumentException
+     *         if size is negative
+     * @throws NullPointerException
+     *         if configuration or mapViewFactory is null
+     */
+    public MapViewPool(final int size, final Configuration configuration, final Supplier<MapView> mapViewFactory) {
+        if (size < 0) {
+            throw new IllegalArgumentException("invalid pool size: " + size);
+        }
+        this.size = size;
+        this.configuration = requireNonNull(configuration);
+        this.mapViewFactory = requireNonNull(mapViewFactory);
+        fill();
+    }
+
+    /**
+     * returns an initialized MapView. If there is none ready in the pool, a new one is created and returned when it is
+     * initialized.
+     *
+     * @return a future that is completed with the MapView when it is initialized
+     * @throws IllegalStateException
+     *         if the pool is closed
+     */
+    public CompletableFuture<MapView> acquire() {
+        if (closed) {
+            throw new IllegalStateException("pool is closed");
+        }
+        final MapView mapView = idle.poll();
+        final CompletableFuture<MapView> future =
+            null != mapView ? CompletableFuture.completedFuture(mapView) : createMapView();
+        fill();
+        return future;
+    }
+
+    /**
+     * gives back a MapView that was returned by {@link #acquire()}. The MapView must already be removed from the
+     * scene graph. It is reset and kept for the next call to acquire, or closed if the pool is full or closed.
+     *
+     * @param mapView
+     *         the MapView to give back
+     * @throws NullPointerException
+     *         if mapView is null
+     */
+    public void release(final MapView mapView) {
+        final ViewSettings settings = viewSettings.get(requireNonNull(mapView));
+        if (closed || null == settings || !mapView.getInitialized() || idle.size() >= size) {
+            discard(mapView);
+            return;
+        }
+        mapView.removeAllElements();
+        mapView.setMapType(settings.mapType);
+        mapView.setZoom(settings.zoom);
+        if (null != settings.center) {
+            mapView.setCenter(settings.center);
+        }
+        idle.add(mapView);
+        if (logger.isDebugEnabled()) {
+            logger.debug("MapView released to pool, {} idle", idle.size());
+        }
+    }
+
+    /**
+     * @return the number of initialized MapViews that are ready to be acquired.
+     */
+    public int getNumIdle() {
+        return idle.size();
+    }
+
+    /**
+     * closes the pool and the MapViews that are not in use.
+     */
+    public void close() {
+        closed = true;
+        while (!idle.isEmpty()) {
+            discard(idle.poll());
+        }
+    }
+
+    /**
+     * initializes the next MapView for the pool if it is not full. The MapViews are initialized one after the other,
+     * so that the JavaFX application thread is not blocked by loading several pages at once.
+     */
+    private void fill() {
+        if (closed || warming || idle.size() >= size) {
+            return;
+        }
+        warming = true;
+        CompletableFuture<MapView> future = null;
+        try {
+            future = createMapView();
+        } finally {
+            // the factory or initialize threw, no MapView is initialized
+            if (null == future) {
+                warming = false;
+            }
+        }
+        future.whenComplete((mapView, throwable) -> {
+            warming = false;
+            if (null != throwable) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("could not initialize MapView for pool", throwable);
+                }
+            } else if (closed || idle.size() >= size) {
+                discard(mapView);
+            } else {
+                idle.add(mapView);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("MapView initialized for pool, {} idle", idle.size());
+                }
+                fill();
+            }
+        });
+    }
+
+    /**
+     * creates and initializes a MapView. A MapView that cannot be initialized is discarded, so that its WebView and
+     * cleaner thread are released.
+     */
+    private CompletableFuture<MapView> createMapView() {
+        final MapView mapView = mapViewFactory.get();
+        final CompletableFuture<MapView> initialized;
+        try {
+            initialized = mapView.initialize(configuration);
+        } catch (final RuntimeException e) {
+            discard(mapView);
+            throw e;
+        }
+        return initialized.whenComplete((initializedMapView, throwable) -> {
+            if (null != throwable) {
+                discard(mapView);
+            }
+        }).thenApply(initializedMapView -> {
+            viewSettings.put(mapView, new ViewSettings(mapView));
+            return mapView;
+        });
+    }
+
+    /**
+     * closes a MapView that is not kept in the pool. The elements are removed and the page is unloaded so that the
+     * WebView does not keep the OpenLayers map alive.
+     */
+    private void discard(final MapView mapView) {
+        viewSettings.remove(mapView);
+        if (mapView.getInitialized()) {
+            mapView.removeAllElements();
+        }
+        mapView.unload();
+        mapView.close();
+    }
+
+    /**
+     * the view settings of a MapView that are restored when it is released.
+     */
+    private static final class ViewSettings {
+        private final Coordinate center;
+        private final double zoom;
+        private final MapType mapType;
+
+        ViewSettings(final MapView mapView) {
+            this.center = mapView.getCenter();
+            this.zoom = mapView.getZoom();
+            this.mapType = mapView.getMapType();
+        }
+    }
+}
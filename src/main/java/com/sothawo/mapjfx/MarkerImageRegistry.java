@@ -0,0 +1,188 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Registry of marker images as data URLs, shared by all MapViews. Each image is loaded once in the background and
+ * converted to a data URL, so that the page does not have to load the image itself, which for jar: URLs or custom
+ * protocols is slow or not possible. The cached data URLs are limited by their total size, the least recently used
+ * ones are dropped.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+final class MarkerImageRegistry {
+
+    /** default maximum of the summed sizes of the cached data URLs in bytes. */
+    static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    /** Logger for the class */
+    private static final Logger logger = LoggerFactory.getLogger(MarkerImageRegistry.class);
+
+    /** maximum of the summed sizes of the cached data URLs */
+    private final long maxBytes;
+    /** executor for loading the images */
+    private final Executor executor;
+    /** data URLs in access order by the external form of the image URL, synchronized on the map */
+    private final LinkedHashMap<String, String> dataUrls = new LinkedHashMap<>(16, 0.75f, true);
+    /** images being loaded, synchronized on dataUrls */
+    private final Map<String, CompletableFuture<String>> pending = new HashMap<>();
+    /** summed size of the cached data URLs, synchronized on dataUrls */
+    private long cachedBytes;
+
+    /**
+     * @return the registry shared by all MapViews.
+     */
+    static MarkerImageRegistry shared() {
+        return Shared.registry;
+    }
+
+    MarkerImageRegistry(final long maxBytes, final Executor executor) {
+        this.maxBytes = maxBytes;
+        this.executor = requireNonNull(executor);
+    }
+
+    /**
+     * returns the data URL for an image, loading it if it is not in the cache. Concurrent requests for the same image
+     * share one load.
+     *
+     * @param imageURL
+     *         the URL of the image
+     * @return the future data URL; it is completed exceptionally if the image cannot be loaded or its content type
+     * cannot be detected
+     */
+    CompletableFuture<String> dataUrl(final URL imageURL) {
+        final String key = imageURL.toExternalForm();
+        final CompletableFuture<String> future;
+        synchronized (dataUrls) {
+            final String dataUrl = dataUrls.get(key);
+            if (null != dataUrl) {
+                return CompletableFuture.completedFuture(dataUrl);
+            }
+            final CompletableFuture<String> running = pending.get(key);
+            if (null != running) {
+                return running;
+            }
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+        }
+        executor.execute(() -> {
+            try {
+                final String dataUrl = load(imageURL);
+                synchronized (dataUrls) {
+                    pending.remove(key);
+                    // an image larger than the whole cache is not kept
+                    if (size(dataUrl) <= maxBytes) {
+                        dataUrls.put(key, dataUrl);
+                        cachedBytes += size(dataUrl);
+                        trim();
+                    }
+                }
+                future.complete(dataUrl);
+            } catch (RuntimeException e) {
+                synchronized (dataUrls) {
+                    pending.remove(key);
+                }
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    long getCachedBytes() {
+        synchronized (dataUrls) {
+            return cachedBytes;
+        }
+    }
+
+    int getNumCachedImages() {
+        synchronized (dataUrls) {
+            return dataUrls.size();
+        }
+    }
+
+    /**
+     * reads the image once into memory and detects the content type from the bytes, or from the name if that fails.
+     */
+    private static String load(final URL imageURL) {
+        final byte[] bytes;
+        try (final InputStream inputStream = imageURL.openStream()) {
+            bytes = inputStream.readAllBytes();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("error loading image " + imageURL.toExternalForm(), e);
+        }
+        String contentType;
+        try {
+            contentType = URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(bytes));
+        } catch (final IOException e) {
+            contentType = null;
+        }
+        if (null == contentType) {
+            contentType = URLConnection.guessContentTypeFromName(imageURL.getPath());
+        }
+        if (null == contentType) {
+            throw new IllegalArgumentException("could not get content type from " + imageURL.toExternalForm());
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace("loaded {} bytes of {} from {}", bytes.length, contentType, imageURL.toExternalForm());
+        }
+        return "data:" + contentType + ";base64," + Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /** the size of a data URL in bytes, it only contains ASCII characters. */
+    private static long size(final String dataUrl) {
+        return dataUrl.length();
+    }
+
+    /** removes the least recently used data URLs, must be called when synchronized on dataUrls. */
+    private void trim() {
+        while (cachedBytes > maxBytes) {
+            final Map.Entry<String, String> eldest = dataUrls.entrySet().iterator().next();
+            cachedBytes -= size(eldest.getValue());
+            dataUrls.remove(eldest.getKey());
+        }
+    }
+
+    /**
+     * holder for the lazily created shared registry.
+     */
+    private static class Shared {
+        private static final MarkerImageRegistry registry = new MarkerImageRegistry(DEFAULT_MAX_BYTES,
+            Executors.newFixedThreadPool(2, r -> {
+                final Thread thread = new Thread(r, "mapjfx-marker-image-loader");
+                thread.setDaemon(true);
+                return thread;
+            }));
+    }
+}
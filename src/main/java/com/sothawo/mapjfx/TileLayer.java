@@ -0,0 +1,292 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A layer of raster tiles from a XYZ or WMS source that is shown in addition to the layers of the map's
+ * {@link MapType}. Any number of TileLayers can be stacked, for example a XYZ base map, a WMS weather overlay and a
+ * hillshade. They are drawn above the map type's layers and below the CoordinateLines and MapCircles; among each other
+ * a layer with a higher z-index is drawn above one with a lower z-index, layers with equal z-index in the order they
+ * were added.
+ *
+ * A layer is only rendered and only loads tiles while the map's zoom is greater than the min zoom and less than or
+ * equal to the max zoom, when it is visible and its opacity is greater than 0. Opacity, z-index, zoom range and
+ * preload can be changed while the layer is in the map; the cache size is used when the layer is added.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class TileLayer extends MapElement {
+
+    /** default number of tiles kept in the layer's tile cache. */
+    public static final int DEFAULT_CACHE_SIZE = 512;
+
+    /** counter for creating the id */
+    private final static AtomicLong nextId = new AtomicLong(1);
+    /** unique id for this object */
+    private final String id;
+    /** the parameters for a XYZ source, null for a WMS layer */
+    private final XYZParam xyzParam;
+    /** the parameters for a WMS source, null for a XYZ layer */
+    private final WMSParam wmsParam;
+    /** listeners that are informed when the layer options change */
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    /** opacity between 0 and 1 */
+    private double opacity = 1.0;
+    /** position in the stack of TileLayers */
+    private int zIndex;
+    /** zoom level above which the layer is shown */
+    private double minZoom = MapView.MIN_ZOOM - 1;
+    /** zoom level up to which the layer is shown */
+    private double maxZoom = MapView.MAX_ZOOM;
+    /** number of lower resolution levels that are loaded while the tiles of the current level are not yet there */
+    private int preload;
+    /** maximum number of tiles in the layer's cache */
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+
+    private TileLayer(final XYZParam xyzParam, final WMSParam wmsParam) {
+        this.xyzParam = xyzParam;
+        this.wmsParam = wmsParam;
+        this.id = "tilelayer-" + nextId.getAndIncrement();
+    }
+
+    /**
+     * creates a TileLayer loading its tiles from a XYZ source. A cache size set in the XYZParam takes precedence over
+     * the one of the layer.
+     *
+     * @param xyzParam
+     *         the parameters of the source
+     * @return the TileLayer
+     * @throws NullPointerException
+     *         if xyzParam is null
+     */
+    public static TileLayer xyz(final XYZParam xyzParam) {
+        return new TileLayer(requireNonNull(xyzParam), null);
+    }
+
+    /**
+     * creates a TileLayer loading its tiles from a WMS server.
+     *
+     * @param wmsParam
+     *         the url and parameters of the server
+     * @return the TileLayer
+     * @throws NullPointerException
+     *         if wmsParam is null
+     */
+    public static TileLayer wms(final WMSParam wmsParam) {
+        return new TileLayer(null, requireNonNull(wmsParam));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public double getOpacity() {
+        return opacity;
+    }
+
+    /**
+     * sets the opacity of the layer.
+     *
+     * @param opacity
+     *         the opacity between 0 (invisible) and 1 (opaque)
+     * @return this object
+     * @throws IllegalArgumentException
+     *         if opacity is not between 0 and 1
+     */
+    public TileLayer setOpacity(final double opacity) {
+        if (!(opacity >= 0.0 && opacity <= 1.0)) {
+            throw new IllegalArgumentException("invalid opacity: " + opacity);
+        }
+        this.opacity = opacity;
+        fireChanged();
+        return this;
+    }
+
+    public int getZIndex() {
+        return zIndex;
+    }
+
+    /**
+     * sets the position of the layer in the stack of TileLayers, layers with a higher z-index are drawn above.
+     *
+     * @param zIndex
+     *         the z-index
+     * @return this object
+     */
+    public TileLayer setZIndex(final int zIndex) {
+        this.zIndex = zIndex;
+        fireChanged();
+        return this;
+    }
+
+    public double getMinZoom() {
+        return minZoom;
+    }
+
+    public double getMaxZoom() {
+        return maxZoom;
+    }
+
+    /**
+     * sets the zoom range in which the layer is shown.
+     *
+     * @param minZoom
+     *         the zoom level above which (exclusive) the layer is shown
+     * @param maxZoom
+     *         the zoom level up to which (inclusive) the layer is shown
+     * @return this object
+     * @throws IllegalArgumentException
+     *         if one of the values is not finite or minZoom is not less than maxZoom
+     */
+    public TileLayer setZoomRange(final double minZoom, final double maxZoom) {
+        if (!Double.isFinite(minZoom) || !Double.isFinite(maxZoom) || !(minZoom < maxZoom)) {
+            throw new IllegalArgumentException("invalid zoom range: " + minZoom + " - " + maxZoom);
+        }
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        fireChanged();
+        return this;
+    }
+
+    public int getPreload() {
+        return preload;
+    }
+
+    /**
+     * sets the number of lower resolution levels whose tiles are loaded and shown while the tiles of the current zoom
+     * level are not yet available.
+     *
+     * @param preload
+     *         the number of levels, 0 disables preloading
+     * @return this object
+     * @throws IllegalArgumentException
+     *         if preload is negative
+     */
+    public TileLayer setPreload(final int preload) {
+        if (preload < 0) {
+            throw new IllegalArgumentException("invalid preload: " + preload);
+        }
+        this.preload = preload;
+        fireChanged();
+        return this;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * sets the number of tiles that the map keeps in the layer's cache. When changing the size, the layer must be
+     * removed and re-added to the map in order to make the change effective.
+     *
+     * @param cacheSize
+     *         the maximum number of tiles
+     * @return this object
+     * @throws IllegalArgumentException
+     *         if cacheSize is not positive
+     */
+    public TileLayer setCacheSize(final int cacheSize) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("invalid cache size: " + cacheSize);
+        }
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    /**
+     * @return a JSON representation of the source of this layer.
+     */
+    String sourceToJson() {
+        if (null != xyzParam) {
+            return "{\"type\":\"XYZ\",\"cacheSize\":" + cacheSize + ",\"options\":" + xyzParam.toJSON() + '}';
+        }
+        final StringJoiner params = new StringJoiner(",", "{", "}");
+        for (final Map.Entry<String, String> param : wmsParam.getParams().entrySet()) {
+            params.add(quote(param.getKey()) + ':' + quote(param.getValue()));
+        }
+        return "{\"type\":\"WMS\",\"cacheSize\":" + cacheSize + ",\"url\":" + quote(wmsParam.getUrl()) +
+            ",\"params\":" + params + '}';
+    }
+
+    /**
+     * @return a JSON representation of the options of this layer that may change while it is in the map.
+     */
+    String optionsToJson() {
+        return "{\"opacity\":" + opacity +
+            ",\"zIndex\":" + zIndex +
+            ",\"minZoom\":" + minZoom +
+            ",\"maxZoom\":" + maxZoom +
+            ",\"preload\":" + preload +
+            '}';
+    }
+
+    private static String quote(final String value) {
+        if (null == value) {
+            return "null";
+        }
+        final StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (final char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private void fireChanged() {
+        changeListeners.forEach(Runnable::run);
+    }
+
+    void addChangeListener(final Runnable listener) {
+        changeListeners.add(requireNonNull(listener));
+    }
+
+    void removeChangeListener(final Runnable listener) {
+        changeListeners.remove(listener);
+    }
+
+    @Override
+    public TileLayer setVisible(boolean visible) {
+        return (TileLayer) super.setVisible(visible);
+    }
+
+    @Override
+    public String toString() {
+        return "TileLayer{" +
+            "id='" + id + '\'' +
+            ", xyzParam=" + (null == xyzParam ? null : xyzParam.getUrl()) +
+            ", wmsParam=" + wmsParam +
+            ", opacity=" + opacity +
+            ", zIndex=" + zIndex +
+            ", minZoom=" + minZoom +
+            ", maxZoom=" + maxZoom +
+            ", preload=" + preload +
+            ", cacheSize=" + cacheSize +
+            "} " + super.toString();
+    }
+}
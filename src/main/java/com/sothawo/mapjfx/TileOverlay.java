@@ -0,0 +1,406 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An overlay of raster tiles that are drawn in Java, intended for data that is too dense to be shown as vector
+ * features in the map, like millions of points or lines. The map requests the tiles it needs in the standard z/x/y
+ * web mercator tiling scheme; a tile is drawn by the {@link Renderer} on an executor, by default the common
+ * ForkJoinPool, encoded as PNG and passed to the map as data URL. The encoded tiles are kept in a LRU cache.
+ *
+ * When the data changes, {@link #refresh()} must be called so that the map requests the tiles again.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class TileOverlay extends MapElement {
+
+    /** default size of a tile in pixels. */
+    public static final int DEFAULT_TILE_SIZE = 256;
+    /** default number of encoded tiles kept in the cache. */
+    public static final int DEFAULT_MAX_CACHED_TILES = 512;
+
+    /** data URL of a transparent image, used for tiles where nothing was drawn. */
+    static final String EMPTY_TILE = encode(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
+
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    /** counter for creating the id */
+    private final static AtomicLong nextId = new AtomicLong(1);
+    /** unique id for this object */
+    private final String id;
+    /** the renderer drawing the tiles */
+    private final Renderer renderer;
+    /** listeners that are informed when the tiles must be loaded again */
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    /** encoded tiles in access order, synchronized on the map */
+    private final LinkedHashMap<String, String> cache = new LinkedHashMap<>(64, 0.75f, true);
+    /** tiles being rendered, synchronized on cache */
+    private final Map<String, CompletableFuture<String>> pending = new HashMap<>();
+    /** size of a tile in pixels */
+    private int tileSize = DEFAULT_TILE_SIZE;
+    /** maximum number of cached tiles */
+    private int maxCachedTiles = DEFAULT_MAX_CACHED_TILES;
+    /** executor to render the tiles */
+    private Executor executor = ForkJoinPool.commonPool();
+    /** incremented on every refresh, tiles of older revisions are discarded */
+    private int revision;
+
+    /**
+     * creates a TileOverlay.
+     *
+     * @param renderer
+     *         the renderer to draw the tiles
+     * @throws NullPointerException
+     *         if renderer is null
+     */
+    public TileOverlay(final Renderer renderer) {
+        this.renderer = requireNonNull(renderer);
+        this.id = "tileoverlay-" + nextId.getAndIncrement();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * sets the size of the tiles. when changing the size, the overlay must be removed and re-added to the map in order
+     * to make the change visible.
+     *
+     * @param tileSize
+     *         the tile size in pixels
+     * @return this object
+     * @throws IllegalArgumentException
+     *         if tileSize is not positive
+     */
+    public TileOverlay setTileSize(final int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("invalid tile size: " + tileSize);
+        }
+        this.tileSize = tileSize;
+        refresh();
+        return this;
+    }
+
+    public int getMaxCachedTiles() {
+        return maxCachedTiles;
+    }
+
+    /**
+     * sets the number of encoded tiles that are kept in the cache.
+     *
+     * @param maxCachedTiles
+     *         the maximum number of tiles, 0 disables the cache
+     * @return this object
+     * @throws IllegalArgumentException
+     *         if maxCachedTiles is negative
+     */
+    public TileOverlay setMaxCachedTiles(final int maxCachedTiles) {
+        if (maxCachedTiles < 0) {
+            throw new IllegalArgumentException("invalid cache size: " + maxCachedTiles);
+        }
+        synchronized (cache) {
+            this.maxCachedTiles = maxCachedTiles;
+            trimCache();
+        }
+        return this;
+    }
+
+    /**
+     * sets the executor that renders the tiles.
+     *
+     * @param executor
+     *         the executor
+     * @return this object
+     * @throws NullPointerException
+     *         if executor is null
+     */
+    public TileOverlay setExecutor(final Executor executor) {
+        this.executor = requireNonNull(executor);
+        return this;
+    }
+
+    /**
+     * discards the cached tiles and has the map load the visible tiles again. Must be called when the data drawn by
+     * the renderer changes.
+     *
+     * @return this object
+     */
+    public TileOverlay refresh() {
+        synchronized (cache) {
+            revision++;
+            cache.clear();
+            pending.clear();
+        }
+        changeListeners.forEach(Runnable::run);
+        return this;
+    }
+
+    int getRevision() {
+        synchronized (cache) {
+            return revision;
+        }
+    }
+
+    int getNumCachedTiles() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * returns a tile from the cache or renders it on the executor. Concurrent requests for the same tile share one
+     * rendering.
+     *
+     * @param zoom
+     *         the zoom level
+     * @param x
+     *         the tile column
+     * @param y
+     *         the tile row, 0 is the northernmost row
+     * @return the future data URL of the PNG encoded tile
+     */
+    CompletableFuture<String> tile(final int zoom, final int x, final int y) {
+        final String key = zoom + "/" + x + '/' + y;
+        final int tileRevision;
+        final int size;
+        final CompletableFuture<String> future;
+        synchronized (cache) {
+            final String dataUrl = cache.get(key);
+            if (null != dataUrl) {
+                return CompletableFuture.completedFuture(dataUrl);
+            }
+            final CompletableFuture<String> running = pending.get(key);
+            if (null != running) {
+                return running;
+            }
+            tileRevision = revision;
+            size = tileSize;
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    final String dataUrl = render(new Tile(zoom, x, y, size));
+                    synchronized (cache) {
+                        if (tileRevision == revision) {
+                            pending.remove(key);
+                            if (maxCachedTiles > 0) {
+                                cache.put(key, dataUrl);
+                                trimCache();
+                            }
+                        }
+                    }
+                    future.complete(dataUrl);
+                } catch (final Throwable t) {
+                    fail(key, future, t);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            fail(key, future, e);
+        }
+        return future;
+    }
+
+    /**
+     * removes a tile that could not be rendered from the pending tiles and completes its future exceptionally.
+     */
+    private void fail(final String key, final CompletableFuture<String> future, final Throwable throwable) {
+        synchronized (cache) {
+            // after invalidation the key may belong to a newer rendering
+            pending.remove(key, future);
+        }
+        future.completeExceptionally(throwable);
+    }
+
+    private String render(final Tile tile) {
+        final BufferedImage image = new BufferedImage(tile.size, tile.size, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            renderer.render(tile, graphics);
+        } finally {
+            graphics.dispose();
+        }
+        return isEmpty(image) ? EMPTY_TILE : encode(image);
+    }
+
+    private static boolean isEmpty(final BufferedImage image) {
+        final int[] argb = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        for (final int pixel : argb) {
+            if ((pixel >>> 24) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String encode(final BufferedImage image) {
+        final ByteArrayOutputStream png = new ByteArrayOutputStream(16 * 1024);
+        try {
+            ImageIO.write(image, "png", png);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(png.toByteArray());
+    }
+
+    /** removes the least recently used tiles, must be called when synchronized on cache. */
+    private void trimCache() {
+        while (cache.size() > maxCachedTiles) {
+            cache.remove(cache.keySet().iterator().next());
+        }
+    }
+
+    void addChangeListener(final Runnable listener) {
+        changeListeners.add(requireNonNull(listener));
+    }
+
+    void removeChangeListener(final Runnable listener) {
+        changeListeners.remove(listener);
+    }
+
+    @Override
+    public TileOverlay setVisible(boolean visible) {
+        return (TileOverlay) super.setVisible(visible);
+    }
+
+    @Override
+    public String toString() {
+        return "TileOverlay{" +
+            "id='" + id + '\'' +
+            ", tileSize=" + tileSize +
+            ", maxCachedTiles=" + maxCachedTiles +
+            "} " + super.toString();
+    }
+
+    /**
+     * Draws the content of a tile. Called concurrently for different tiles, so implementations must be thread safe.
+     */
+    @FunctionalInterface
+    public interface Renderer {
+        /**
+         * draws a tile. The graphics is antialiased and initially transparent; tiles where nothing is drawn are not
+         * encoded.
+         *
+         * @param tile
+         *         the tile with methods to convert coordinates to pixels
+         * @param graphics
+         *         the graphics to draw on
+         */
+        void render(Tile tile, Graphics2D graphics);
+    }
+
+    /**
+     * A web mercator tile to be drawn.
+     */
+    public static final class Tile {
+        private final int zoom;
+        private final int x;
+        private final int y;
+        private final int size;
+        /** size of the world in pixels at the zoom level. */
+        private final double worldSize;
+
+        Tile(final int zoom, final int x, final int y, final int size) {
+            this.zoom = zoom;
+            this.x = x;
+            this.y = y;
+            this.size = size;
+            this.worldSize = (double) size * (1L << zoom);
+        }
+
+        public int getZoom() {
+            return zoom;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @param longitude
+         *         the longitude in degrees
+         * @return the horizontal pixel position in the tile
+         */
+        public double pixelX(final double longitude) {
+            return (longitude + 180.0) / 360.0 * worldSize - (double) x * size;
+        }
+
+        /**
+         * @param latitude
+         *         the latitude in degrees
+         * @return the vertical pixel position in the tile
+         */
+        public double pixelY(final double latitude) {
+            final double clampedLatitude = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+            final double mercatorY = Math.log(Math.tan(Math.PI / 4 + Math.toRadians(clampedLatitude) / 2));
+            return (1.0 - mercatorY / Math.PI) / 2.0 * worldSize - (double) y * size;
+        }
+
+        /**
+         * @return the extent of the tile in WGS84.
+         */
+        public Extent getExtent() {
+            final double lonMin = (double) x * size / worldSize * 360.0 - 180.0;
+            final double lonMax = (double) (x + 1) * size / worldSize * 360.0 - 180.0;
+            return Extent.forBounds(latitude(y + 1), lonMin, latitude(y), lonMax);
+        }
+
+        private double latitude(final int row) {
+            final double mercatorY = Math.PI * (1.0 - 2.0 * row * size / worldSize);
+            return Math.toDegrees(Math.atan(Math.sinh(mercatorY)));
+        }
+
+        @Override
+        public String toString() {
+            return "Tile{" + zoom + '/' + x + '/' + y + ", size=" + size + '}';
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ Copyright 2016-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx.offline;
+
+import com.sothawo.mapjfx.Extent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export and import of cache entries to and from a single zip archive. Each cache entry is stored as two archive
+ * entries, the data file followed by its dataInfo file, both with the name they have in the cache directory. The
+ * entries are stored uncompressed, as map tiles normally are compressed images, so that export and import are mostly
+ * sequential I/O.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+final class CacheArchive {
+
+    /** Logger for the class */
+    private static final Logger logger = LoggerFactory.getLogger(CacheArchive.class);
+
+    /** buffer size for the archive streams. */
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    /** pattern to find the z/x/y values of a tile at the end of the URL path. */
+    private static final Pattern TILE_PATTERN =
+        Pattern.compile(".*/(\\d{1,2})/(\\d+)/(\\d+)(?:\\.[a-zA-Z]+)?(?:\\?.*)?");
+
+    private CacheArchive() {
+    }
+
+    /**
+     * exports the entries of a cache directory to an output stream.
+     *
+     * @param cacheDirectory
+     *     the cache directory
+     * @param out
+     *     the stream to write the archive to, it is not closed
+     * @param filter
+     *     predicate on the decoded URL of an entry to select the entries to export
+     * @return the number of exported cache entries
+     * @throws IOException
+     *     if the directory cannot be read or the archive cannot be written
+     */
+    static int export(final Path cacheDirectory, final OutputStream out, final Predicate<String> filter)
+        throws IOException {
+        final List<String> keys = new ArrayList<>();
+        final Set<String> dataFiles = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDirectory)) {
+            for (final Path path : stream) {
+                final String name = path.getFileName().toString();
+                if (name.endsWith(CacheIndex.DATA_INFO_SUFFIX)) {
+                    keys.add(name.substring(0, name.length() - CacheIndex.DATA_INFO_SUFFIX.length()));
+                } else {
+                    dataFiles.add(name);
+                }
+            }
+        }
+
+        int numExported = 0;
+        final ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        for (final String key : keys) {
+            if (dataFiles.contains(key) && filter.test(URLDecoder.decode(key, StandardCharsets.UTF_8))) {
+                writeEntry(zos, key, Files.readAllBytes(cacheDirectory.resolve(key)));
+                writeEntry(zos, key + CacheIndex.DATA_INFO_SUFFIX,
+                    Files.readAllBytes(cacheDirectory.resolve(key + CacheIndex.DATA_INFO_SUFFIX)));
+                numExported++;
+            }
+        }
+        zos.finish();
+        zos.flush();
+        if (logger.isDebugEnabled()) {
+            logger.debug("exported {} entries from {}", numExported, cacheDirectory);
+        }
+        return numExported;
+    }
+
+    private static void writeEntry(final ZipOutputStream zos, final String name, final byte[] data)
+        throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        final ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc.getValue());
+        zos.putNextEntry(entry);
+        zos.write(data);
+        zos.closeEntry();
+    }
+
+    /**
+     * imports the entries from an archive into a cache directory. A cache entry is imported as a pair of its data file
+     * and the following dataInfo file; it is skipped when the entry is already cached, when it occurs more than once
+     * in the archive or when the archive does not contain both files. Whether an entry is cached is answered by the
+     * index when it is ready, otherwise the entry is skipped when one of its files exists in the cache directory. The files are written to temporary files first and then moved atomically, the data file before the
+     * dataInfo file, so that a failed import never leaves a dataInfo file with incomplete data.
+     *
+     * @param cacheDirectory
+     *     the cache directory
+     * @param in
+     *     the stream to read the archive from, it is not closed
+     * @param index
+     *     the index of the cache directory, the imported entries are added to it; may be null
+     * @return the number of imported files
+     * @throws IOException
+     *     if the archive cannot be read or the files cannot be written
+     */
+    static int importArchive(final Path cacheDirectory, final InputStream in, final CacheIndex index)
+        throws IOException {
+        final Set<String> seen = new HashSet<>();
+        int numImported = 0;
+        final ZipInputStream zis = new ZipInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        // the data file of the entry whose dataInfo is expected next
+        Path pendingTarget = null;
+        Path pendingData = null;
+        try {
+            ZipEntry entry;
+            while (null != (entry = zis.getNextEntry())) {
+                final String name = entry.getName();
+                final boolean isDataInfo = name.endsWith(CacheIndex.DATA_INFO_SUFFIX);
+                final Path target = cacheDirectory.resolve(name).normalize();
+                if (isDataInfo && null != pendingTarget
+                    && name.equals(pendingTarget.getFileName() + CacheIndex.DATA_INFO_SUFFIX)) {
+                    final Path dataInfo = copyToTempFile(cacheDirectory, zis);
+                    try {
+                        Files.move(pendingData, pendingTarget, StandardCopyOption.ATOMIC_MOVE);
+                        pendingData = null;
+                        try {
+                            Files.move(dataInfo, target, StandardCopyOption.ATOMIC_MOVE);
+                        } catch (final IOException e) {
+                            Files.deleteIfExists(pendingTarget);
+                            throw e;
+                        }
+                    } finally {
+                        Files.deleteIfExists(dataInfo);
+                    }
+                    if (null != index) {
+                        index.add(pendingTarget);
+                    }
+                    numImported += 2;
+                    pendingTarget = null;
+                    continue;
+                }
+                // any other entry means that the pending data file has no dataInfo
+                if (null != pendingData) {
+                    Files.delete(pendingData);
+                    pendingData = null;
+                    pendingTarget = null;
+                }
+                if (entry.isDirectory() || isDataInfo || !seen.add(name)) {
+                    continue;
+                }
+                if (!cacheDirectory.normalize().equals(target.getParent())) {
+                    if (logger.isWarnEnabled()) {
+                        logger.warn("ignoring archive entry outside of the cache directory: {}", name);
+                    }
+                    continue;
+                }
+                if (isCached(cacheDirectory, target, index)) {
+                    continue;
+                }
+                pendingData = copyToTempFile(cacheDirectory, zis);
+                pendingTarget = target;
+            }
+        } finally {
+            if (null != pendingData) {
+                Files.deleteIfExists(pendingData);
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("imported {} files into {}", numImported, cacheDirectory);
+        }
+        return numImported;
+    }
+
+    /**
+     * checks if a cache file must not be imported. A ready index knows all cache entries; files without a dataInfo
+     * file are no cache entries and are replaced. Without a ready index, any existing file of the entry prevents the
+     * import, as its data file might just be written.
+     */
+    private static boolean isCached(final Path cacheDirectory, final Path cacheFile, final CacheIndex index) {
+        if (null != index && index.isReady()) {
+            return index.contains(cacheFile);
+        }
+        return Files.exists(cacheFile)
+            || Files.exists(cacheDirectory.resolve(cacheFile.getFileName() + CacheIndex.DATA_INFO_SUFFIX));
+    }
+
+    /**
+     * copies the current archive entry to a temporary file in the cache directory. The file does not have a dataInfo
+     * file, so it is never taken for a cache entry.
+     *
+     * @return the temporary file
+     */
+    private static Path copyToTempFile(final Path cacheDirectory, final InputStream in) throws IOException {
+        final Path tempFile = Files.createTempFile(cacheDirectory, ".import-", ".tmp");
+        try {
+            Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        return tempFile;
+    }
+
+    /**
+     * creates a filter for the URLs of tiles with a z/x/y path that are within an extent and a zoom range. URLs that do
+     * not end with a z/x/y path are not matched.
+     *
+     * @param extent
+     *     the extent
+     * @param minZoom
+     *     minimum zoom level, inclusive
+     * @param maxZoom
+     *     maximum zoom level, inclusive
+     * @return the filter
+     */
+    static Predicate<String> tileFilter(final Extent extent, final int minZoom, final int maxZoom) {
+        return url -> {
+            final Matcher matcher = TILE_PATTERN.matcher(url);
+            if (!matcher.matches()) {
+                return false;
+            }
+            final int z = Integer.parseInt(matcher.group(1));
+            if (z < minZoom || z > maxZoom) {
+                return false;
+            }
+            final long x = Long.parseLong(matcher.group(2));
+            final long y = Long.parseLong(matcher.group(3));
+            return x >= tileX(extent.getMin().longitude(), z) && x <= tileX(extent.getMax().longitude(), z)
+                && y >= tileY(extent.getMax().latitude(), z) && y <= tileY(extent.getMin().latitude(), z);
+        };
+    }
+
+    /**
+     * @return the x index of the web mercator tile containing a longitude.
+     */
+    static long tileX(final double longitude, final int zoom) {
+        final long n = 1L << zoom;
+        return Math.max(0, Math.min(n - 1, (long) Math.floor((longitude + 180.0) / 360.0 * n)));
+    }
+
+    /**
+     * @return the y index of the web mercator tile containing a latitude.
+     */
+    static long tileY(final double latitude, final int zoom) {
+        final long n = 1L << zoom;
+        final double latRad = Math.toRadians(latitude);
+        final double y = (1.0 - Math.log(Math.tan(latRad) + 1.0 / Math.cos(latRad)) / Math.PI) / 2.0 * n;
+        return Math.max(0, Math.min(n - 1, (long) Math.floor(y)));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ Copyright 2016-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx.offline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of the entries in a cache directory. An entry is the name of a cache file for which both a non-empty
+ * data file and the corresponding dataInfo file exist. The index is built by a single directory scan, so that the check
+ * whether an URL is cached does not need any filesystem access. Until the scan is finished, the index is not ready and
+ * the cache must fall back to probing the filesystem.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+class CacheIndex {
+
+    /** Logger for the class */
+    private static final Logger logger = LoggerFactory.getLogger(CacheIndex.class);
+
+    /** the suffix of the files containing the {@link CachedDataInfo}. */
+    static final String DATA_INFO_SUFFIX = ".dataInfo";
+
+    /** the directory this index belongs to. */
+    private final Path cacheDirectory;
+
+    /** the names of the cached files. */
+    private final Set<String> entries = ConcurrentHashMap.newKeySet();
+
+    /** flag if the initial scan is finished. */
+    private volatile boolean ready = false;
+
+    CacheIndex(final Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * starts building the index in a background thread.
+     */
+    void buildAsync() {
+        final Thread thread = new Thread(this::build, "mapjfx-offlinecache-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * scans the cache directory and builds the index. When the directory cannot be read, the index stays not ready.
+     */
+    void build() {
+        final long start = System.currentTimeMillis();
+        final Set<String> dataFiles = new HashSet<>();
+        final Set<String> dataInfoFiles = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDirectory)) {
+            for (final Path path : stream) {
+                final String name = path.getFileName().toString();
+                if (name.endsWith(DATA_INFO_SUFFIX)) {
+                    dataInfoFiles.add(name.substring(0, name.length() - DATA_INFO_SUFFIX.length()));
+                } else if (isNotEmpty(path)) {
+                    dataFiles.add(name);
+                }
+            }
+        } catch (final IOException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("cannot build index for {}: {}", cacheDirectory, e.getMessage());
+            }
+            return;
+        }
+        dataInfoFiles.retainAll(dataFiles);
+        entries.addAll(dataInfoFiles);
+        ready = true;
+        if (logger.isDebugEnabled()) {
+            logger.debug("built index for {} with {} entries in {} ms", cacheDirectory, entries.size(),
+                System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * @param dataFile
+     *     the data file
+     * @return true if the data file has content, empty files are left from failed downloads.
+     */
+    private static boolean isNotEmpty(final Path dataFile) {
+        try {
+            return Files.size(dataFile) > 0;
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the initial scan is finished.
+     */
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * checks if a cache file is contained in the index.
+     *
+     * @param cacheFile
+     *     the cache file
+     * @return true if the entry exists
+     */
+    boolean contains(final Path cacheFile) {
+        return entries.contains(cacheFile.getFileName().toString());
+    }
+
+    /**
+     * adds a cache file to the index.
+     *
+     * @param cacheFile
+     *     the cache file
+     */
+    void add(final Path cacheFile) {
+        entries.add(cacheFile.getFileName().toString());
+    }
+
+    /**
+     * removes a cache file from the index.
+     *
+     * @param cacheFile
+     *     the cache file
+     */
+    void remove(final Path cacheFile) {
+        entries.remove(cacheFile.getFileName().toString());
+    }
+
+    /**
+     * removes all entries from the index.
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of entries in the index
+     */
+    int size() {
+        return entries.size();
+    }
+}
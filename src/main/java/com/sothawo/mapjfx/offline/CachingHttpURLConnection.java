@@ -19,7 +19,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -87,11 +86,16 @@ class CachingHttpURLConnection extends HttpURLConnection {
         this.delegate = delegate;
         this.cacheFile = cache.filenameForURL(delegate.getURL());
 
-        cachedDataInfo = cache.readCachedDataInfo(cacheFile);
-        readFromCache = cache.isCached(delegate.getURL()) && null != cachedDataInfo;
+        final long lookupStart = System.nanoTime();
+        // check the index first, so that a miss does not need any file access
+        if (cache.isCached(delegate.getURL())) {
+            cachedDataInfo = cache.readCachedDataInfo(cacheFile);
+            readFromCache = null != cachedDataInfo;
+        }
         if (!readFromCache) {
             cachedDataInfo = new CachedDataInfo();
         }
+        cache.getStatistics().recordLookup(readFromCache, System.nanoTime() - lookupStart);
 
         if (logger.isTraceEnabled()) {
             logger.trace("in cache: {}, URL: {}, cache file: {}", readFromCache, delegate.getURL().toExternalForm(), cacheFile);
@@ -238,7 +242,8 @@ class CachingHttpURLConnection extends HttpURLConnection {
 
     /**
      * return the delegate's InputStream wrapped in a {@link WriteCacheFileInputStream} or a FileInputStream in case
-     * when the data is already cached.
+     * when the data is already cached. When the cached data file cannot be opened or is empty, the cache entry is
+     * invalidated and the data is loaded from the network.
      *
      * @return wrapping InputStream
      * @throws IOException
@@ -246,11 +251,20 @@ class CachingHttpURLConnection extends HttpURLConnection {
     public InputStream getInputStream() throws IOException {
         if (null == inputStream) {
             if (readFromCache) {
-                inputStream = new FileInputStream(cacheFile.toFile());
-            } else {
-                WriteCacheFileInputStream wis = new WriteCacheFileInputStream(delegate.getInputStream(),
-                        new FileOutputStream(cacheFile.toFile()));
+                final FileInputStream fileInputStream = cache.openCacheFile(cacheFile);
+                if (null != fileInputStream) {
+                    inputStream = new CountingInputStream(fileInputStream, cache.getStatistics()::recordCacheRead);
+                } else {
+                    readFromCache = false;
+                    cachedDataInfo = new CachedDataInfo();
+                }
+            }
+            if (!readFromCache) {
+                final long networkStart = System.nanoTime();
+                WriteCacheFileInputStream wis = new WriteCacheFileInputStream(delegate.getInputStream(), cacheFile,
+                        cache.isWriteBehind());
                 wis.onInputStreamClose(() -> {
+                    cache.getStatistics().recordNetworkRead(wis.getNumBytesWritten(), System.nanoTime() - networkStart);
                     try {
                         cachedDataInfo.setFromHttpUrlConnection(delegate);
                         final int responseCode = delegate.getResponseCode();
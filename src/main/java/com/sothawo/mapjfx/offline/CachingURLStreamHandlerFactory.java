@@ -33,7 +33,8 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Custom URLStreamHandlerFactory that is used to implement caching. The factory creates CachingHttpUrlConnection (and
- * https) instances that wrap the original URLConnection elements.
+ * https) instances that wrap the original URLConnection elements. There is only one factory in the JVM, each request is
+ * routed to the {@link OfflineCache} returned by {@link OfflineCache#cacheForURL(URL)}.
  *
  * @author P.J. Meisch (pj.meisch@sothawo.com).
  */
@@ -45,22 +46,14 @@ class CachingURLStreamHandlerFactory implements URLStreamHandlerFactory {
     /** Logger for the class */
     private static final Logger logger = LoggerFactory.getLogger(CachingURLStreamHandlerFactory.class);
 
-    /** the cache this instance belongs to. */
-    private final OfflineCache cache;
-
     /** the map with the default handlers for different protocols. */
     private final Map<String, URLStreamHandler> handlers = new ConcurrentHashMap<>();
 
 
     /**
      * initializes the {@link #handlers} map with the current handlers for the relevant protocols.
-     *
-     * @param cache
-     *         the cache this instance belongs to
      */
-    CachingURLStreamHandlerFactory(final OfflineCache cache) {
-        this.cache = cache;
-
+    CachingURLStreamHandlerFactory() {
         URLStreamHandler urlStreamHandler = getURLStreamHandler(PROTO_HTTP);
         if (urlStreamHandler != null) {
             handlers.put(PROTO_HTTP, urlStreamHandler);
@@ -121,7 +114,8 @@ class CachingURLStreamHandlerFactory implements URLStreamHandlerFactory {
                             new URL(protocol, url.getHost(), url.getPort(), url.getFile(), handlers.get(protocol))
                                     .openConnection();
 
-                    if (!cache.urlShouldBeCached(url)) {
+                    final OfflineCache cache = OfflineCache.cacheForURL(url);
+                    if (null == cache) {
                         if (logger.isTraceEnabled()) {
                             logger.trace("not using cache for {}", url);
                         }
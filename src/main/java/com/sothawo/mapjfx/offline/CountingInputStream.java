@@ -0,0 +1,77 @@
+/*
+ Copyright 2016-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx.offline;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * FilterInputStream that counts the bytes read and reports the number when the stream is closed.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+class CountingInputStream extends FilterInputStream {
+
+    /** the consumer to be notified with the number of bytes on close. */
+    private final LongConsumer onClose;
+
+    /** the number of bytes read so far. */
+    private long count;
+
+    /** flag to prevent multiple notifications. */
+    private boolean closed;
+
+    CountingInputStream(final InputStream in, final LongConsumer onClose) {
+        super(in);
+        this.onClose = onClose;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+        if (b >= 0) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int numBytes = super.read(b, off, len);
+        if (numBytes > 0) {
+            count += numBytes;
+        }
+        return numBytes;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        if (!closed) {
+            closed = true;
+            onClose.accept(count);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ Copyright 2016-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx.offline;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of direct ByteBuffers of equal size. Direct buffers are expensive to allocate, so they are reused for
+ * writing the cache files.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+class DirectBufferPool {
+
+    /** the size of the buffers. */
+    private final int bufferSize;
+
+    /** the maximum number of buffers to create. */
+    private final int maxBuffers;
+
+    /** the number of buffers created so far. */
+    private final AtomicInteger numCreated = new AtomicInteger();
+
+    /** the buffers that are available. */
+    private final BlockingQueue<ByteBuffer> available;
+
+    DirectBufferPool(final int bufferSize, final int maxBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.available = new ArrayBlockingQueue<>(maxBuffers);
+    }
+
+    /**
+     * gets a cleared buffer from the pool, creating a new one if the limit is not yet reached.
+     *
+     * @return the buffer or null if all buffers are in use
+     */
+    ByteBuffer acquire() {
+        final ByteBuffer buffer = available.poll();
+        if (null != buffer) {
+            return buffer;
+        }
+        if (numCreated.incrementAndGet() <= maxBuffers) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        numCreated.decrementAndGet();
+        return null;
+    }
+
+    /**
+     * returns a buffer to the pool.
+     *
+     * @param buffer
+     *     the buffer, may be null
+     */
+    void release(final ByteBuffer buffer) {
+        if (null != buffer) {
+            buffer.clear();
+            available.offer(buffer);
+        }
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -15,16 +15,24 @@
 */
 package com.sothawo.mapjfx.offline;
 
+import com.sothawo.mapjfx.Extent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
@@ -35,10 +43,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -48,31 +58,98 @@ import java.util.stream.Collectors;
  * returned without a further connect to the network. If it is not in the cache directory, a network request is made and
  * the returned data is stored in the local cache directory.
  *
- * The cache is implemented as singleton.
+ * {@link #INSTANCE} is the default cache which is used by the {@link com.sothawo.mapjfx.MapView}. Further caches, for
+ * example one per map provider, can be created with {@link #OfflineCache(String)}; each of them has it's own
+ * directory, filters and statistics. As the interception of the network calls is set up once for the whole JVM, a
+ * request is routed to one of the active caches: the caches with cache filters set by {@link
+ * #setCacheFilters(Collection)} are asked before the ones without, so a cache that accepts all URLs does not shadow
+ * the more specific ones. Within each of the two groups the cache activated last is asked first; the first cache whose
+ * filters accept the URL handles the request.
  *
  * A list of regexp strings can be set with {@link #setNoCacheFilters(Collection)}. URLs that match any of these
  * patterns will not be cached.
  *
+ * The configuration of a cache may be changed while it is in use, the methods are thread safe.
+ *
+ * Statistics about hits, misses and the loaded data are available with {@link #getStatistics()}. When the cache is
+ * activated, they are registered as MBean under the name {@value OfflineCacheStatistics#OBJECT_NAME} with an additional
+ * name key containing the name of the cache.
+ *
  * @author P.J. Meisch (pj.meisch@sothawo.com).
  */
-public enum OfflineCache {
-    INSTANCE;
+public final class OfflineCache {
 
+    /** the name of the default cache. */
+    public static final String DEFAULT_NAME = "default";
     /** Logger for the class */
     private static final Logger logger = LoggerFactory.getLogger(OfflineCache.class);
     /** the url pattern to be mapped. */
     private static final String TILE_OPENSTREETMAP_ORG = "[a-z]\\.tile\\.openstreetmap\\.org";
     private static final int PRELOAD_DATABUFFER_SIZE = 1024 * 1024;
-    /** list of Patterns that are used to match against urls to prevent caching. */
-    private final Collection<Pattern> noCachePatterns = new ArrayList<>();
-    /** list of Patterns that are used to match against urls to specify caching. */
-    private final Collection<Pattern> cachePatterns = new ArrayList<>();
-    /** flag if the URLStreamHandlerfactory is initialized */
-    private boolean urlStreamHandlerFactoryIsInitialized = false;
+    /** the active caches, the one activated last is the first in the list; see {@link #cacheForURL(URL)}. */
+    private static final List<OfflineCache> activeCaches = new CopyOnWriteArrayList<>();
+    /** flag if the URLStreamHandlerfactory is initialized, guarded by the class lock. */
+    private static boolean urlStreamHandlerFactoryIsInitialized = false;
+
+    /** the default cache. */
+    public static final OfflineCache INSTANCE = new OfflineCache(DEFAULT_NAME);
+
+    /** the name of this cache. */
+    private final String name;
+    /** list of Patterns that are used to match against urls to prevent caching, replaced on change. */
+    private volatile List<Pattern> noCachePatterns = List.of();
+    /** list of Patterns that are used to match against urls to specify caching, replaced on change. */
+    private volatile List<Pattern> cachePatterns = List.of();
     /** flag if the cache is active. */
-    private boolean active = false;
+    private volatile boolean active = false;
     /** the cache directory. */
-    private Path cacheDirectory;
+    private volatile Path cacheDirectory;
+    /** flag if cache files are written in a background thread. */
+    private volatile boolean writeBehind = false;
+    /** the statistics for this cache. */
+    private final OfflineCacheStatistics statistics = new OfflineCacheStatistics();
+    /** the name under which the statistics are registered as MBean, null if not registered. */
+    private ObjectName statisticsObjectName;
+    /** the index of the cached files, built when the cache is activated. */
+    private volatile CacheIndex index;
+
+    /**
+     * creates a new cache. The cache must be configured and activated before it is used.
+     *
+     * @param name
+     *     the name of the cache, used for the statistics MBean
+     * @throws NullPointerException
+     *     if name is null
+     */
+    public OfflineCache(final String name) {
+        this.name = Objects.requireNonNull(name);
+    }
+
+    /**
+     * returns the active cache that should handle an URL. When no active cache accepts the URL, the request is
+     * counted as bypass in the statistics of the default cache if that is active.
+     *
+     * @param url
+     *     the URL
+     * @return the cache, null if no active cache accepts the URL
+     */
+    static OfflineCache cacheForURL(final URL url) {
+        // caches with cache filters are more specific than the ones that accept all URLs not excluded
+        for (final OfflineCache cache : activeCaches) {
+            if (!cache.cachePatterns.isEmpty() && cache.urlShouldBeCached(url)) {
+                return cache;
+            }
+        }
+        for (final OfflineCache cache : activeCaches) {
+            if (cache.cachePatterns.isEmpty() && cache.urlShouldBeCached(url)) {
+                return cache;
+            }
+        }
+        if (INSTANCE.active) {
+            INSTANCE.statistics.recordBypass();
+        }
+        return null;
+    }
 
     /**
      * helper method to recursively delete all files in a directory and the directory itself.
@@ -84,13 +161,17 @@ public enum OfflineCache {
         Files.walkFileTree(path, new DeletingFileVisitor(path));
     }
 
+    public String getName() {
+        return name;
+    }
+
     public Collection<String> getNoCacheFilters() {
         return noCachePatterns.stream().map(Pattern::toString).collect(Collectors.toList());
     }
 
-    public void clearAllCacheFilters() {
-        cachePatterns.clear();
-        noCachePatterns.clear();
+    public synchronized void clearAllCacheFilters() {
+        cachePatterns = List.of();
+        noCachePatterns = List.of();
     }
 
     /**
@@ -99,14 +180,11 @@ public enum OfflineCache {
      * @param cacheFilters
      *     the patterns defining what to cache.
      */
-    public void setCacheFilters(final Collection<String> cacheFilters) {
+    public synchronized void setCacheFilters(final Collection<String> cacheFilters) {
         if (!noCachePatterns.isEmpty()) {
             throw new IllegalStateException("cannot set both cacheFilters and noCacheFilters");
         }
-        this.cachePatterns.clear();
-        if (null != cacheFilters) {
-            cacheFilters.stream().map(Pattern::compile).forEach(this.cachePatterns::add);
-        }
+        this.cachePatterns = compilePatterns(cacheFilters);
     }
 
     /**
@@ -115,14 +193,18 @@ public enum OfflineCache {
      * @param noCacheFilters
      *     the patterns defining what not to cache.
      */
-    public void setNoCacheFilters(final Collection<String> noCacheFilters) {
+    public synchronized void setNoCacheFilters(final Collection<String> noCacheFilters) {
         if (!cachePatterns.isEmpty()) {
             throw new IllegalStateException("cannot set both cacheFilters and noCacheFilters");
         }
-        this.noCachePatterns.clear();
-        if (null != noCacheFilters) {
-            noCacheFilters.stream().map(Pattern::compile).forEach(this.noCachePatterns::add);
+        this.noCachePatterns = compilePatterns(noCacheFilters);
+    }
+
+    private static List<Pattern> compilePatterns(final Collection<String> filters) {
+        if (null == filters) {
+            return List.of();
         }
+        return filters.stream().map(Pattern::compile).collect(Collectors.toUnmodifiableList());
     }
 
     public Path getCacheDirectory() {
@@ -139,12 +221,17 @@ public enum OfflineCache {
      * @throws IllegalArgumentException
      *     if cacheDirectory does not exist or is not writeable
      */
-    public void setCacheDirectory(final Path cacheDirectory) {
+    public synchronized void setCacheDirectory(final Path cacheDirectory) {
         final Path dir = Objects.requireNonNull(cacheDirectory);
         if (!Files.isDirectory(dir) || !Files.isWritable(dir)) {
             throw new IllegalArgumentException("cacheDirectory: " + dir);
         }
         this.cacheDirectory = dir;
+        if (active) {
+            buildIndex();
+        } else {
+            index = null;
+        }
     }
 
     /**
@@ -161,6 +248,21 @@ public enum OfflineCache {
         setCacheDirectory(FileSystems.getDefault().getPath(Objects.requireNonNull(cacheDirectory)));
     }
 
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * sets the write-behind mode. When enabled, the data loaded from the network is written to the cache files in a
+     * background thread, so that the reading WebView is not blocked by disk I/O. Default is false.
+     *
+     * @param writeBehind
+     *     the new value
+     */
+    public void setWriteBehind(final boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
     /**
      * checks whether a URL should be cached at all.
      *
@@ -170,6 +272,8 @@ public enum OfflineCache {
      */
     boolean urlShouldBeCached(final URL u) {
         final String urlString = u.toString();
+        final List<Pattern> noCachePatterns = this.noCachePatterns;
+        final List<Pattern> cachePatterns = this.cachePatterns;
 
         if (!noCachePatterns.isEmpty()) {
             return noCachePatterns.stream()
@@ -189,7 +293,8 @@ public enum OfflineCache {
     }
 
     /**
-     * sets the active state of the cache
+     * sets the active state of the cache. An active cache gets the requests for the URLs it accepts unless an active
+     * cache with precedence accepts them; see the class documentation for the order in which the caches are asked.
      *
      * @param active
      *     new state
@@ -198,27 +303,89 @@ public enum OfflineCache {
      * @throws IllegalStateException
      *     if the factory cannot be initialized.
      */
-    public void setActive(final boolean active) {
+    public synchronized void setActive(final boolean active) {
         if (active && null == cacheDirectory) {
             throw new IllegalArgumentException("cannot setActive when no cacheDirectory is set");
         }
+        if (active == this.active) {
+            return;
+        }
         if (active) {
             setupURLStreamHandlerFactory();
+            registerStatisticsMBean();
+            buildIndex();
+            activeCaches.add(0, this);
+        } else {
+            activeCaches.remove(this);
+            unregisterStatisticsMBean();
         }
         this.active = active;
     }
 
+    /**
+     * starts building the index of the cached files for the current cache directory. Until the index is ready,
+     * lookups probe the filesystem.
+     */
+    private void buildIndex() {
+        final CacheIndex cacheIndex = new CacheIndex(cacheDirectory);
+        index = cacheIndex;
+        cacheIndex.buildAsync();
+    }
+
+    /**
+     * @return the statistics of this cache.
+     */
+    public OfflineCacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * registers the statistics in the platform MBeanServer. Errors are logged and otherwise ignored, the cache works
+     * without the MBean.
+     */
+    private void registerStatisticsMBean() {
+        if (null == statisticsObjectName) {
+            try {
+                final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+                final ObjectName objectName =
+                    new ObjectName(OfflineCacheStatistics.OBJECT_NAME + ",name=" + ObjectName.quote(name));
+                mBeanServer.registerMBean(statistics, objectName);
+                statisticsObjectName = objectName;
+            } catch (final JMException | SecurityException e) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("cannot register statistics MBean. {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * unregisters the statistics from the platform MBeanServer.
+     */
+    private void unregisterStatisticsMBean() {
+        if (null != statisticsObjectName) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsObjectName);
+            } catch (final JMException | SecurityException e) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("cannot unregister statistics MBean. {}", e.getMessage());
+                }
+            }
+            statisticsObjectName = null;
+        }
+    }
+
     /**
      * sets up the URLStreamHandlerFactory.
      *
      * @throws IllegalStateException
      *     if the factory cannot be initialized.
      */
-    private void setupURLStreamHandlerFactory() {
+    private static synchronized void setupURLStreamHandlerFactory() {
         if (!urlStreamHandlerFactoryIsInitialized) {
             final String msg;
             try {
-                URL.setURLStreamHandlerFactory(new CachingURLStreamHandlerFactory(this));
+                URL.setURLStreamHandlerFactory(new CachingURLStreamHandlerFactory());
                 urlStreamHandlerFactoryIsInitialized = true;
                 return;
             } catch (final Error e) {
@@ -246,6 +413,10 @@ public enum OfflineCache {
     boolean isCached(final URL url) {
         try {
             final Path cacheFile = filenameForURL(url);
+            final CacheIndex cacheIndex = index;
+            if (null != cacheIndex && cacheIndex.isReady()) {
+                return cacheIndex.contains(cacheFile);
+            }
             return (Files.exists(cacheFile) && Files.isReadable(cacheFile) && Files.size(cacheFile) > 0);
         } catch (final IOException e) {
             if (logger.isWarnEnabled()) {
@@ -302,10 +473,14 @@ public enum OfflineCache {
      *     the data info
      */
     void saveCachedDataInfo(final Path cacheFile, final CachedDataInfo cachedDataInfo) {
-        final Path cacheDataFile = Paths.get(cacheFile + ".dataInfo");
+        final Path cacheDataFile = Paths.get(cacheFile + CacheIndex.DATA_INFO_SUFFIX);
         try (final ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(cacheDataFile.toFile()))) {
             oos.writeObject(cachedDataInfo);
             oos.flush();
+            final CacheIndex cacheIndex = index;
+            if (null != cacheIndex) {
+                cacheIndex.add(cacheFile);
+            }
             if (logger.isTraceEnabled()) {
                 logger.trace("saving dataInfo {}", cachedDataInfo);
                 logger.trace("saved dataInfo to {}", cacheDataFile);
@@ -318,37 +493,164 @@ public enum OfflineCache {
     }
 
     /**
-     * reads the cached data info for a cache file
+     * reads the cached data info for a cache file. The file is opened directly without checking for its existence
+     * first; if it does not exist, null is returned and the entry is removed from the index.
      *
      * @param cacheFile
      *     the cache file
-     * @return the cached data info.
+     * @return the cached data info, null if it does not exist or cannot be read.
      */
     CachedDataInfo readCachedDataInfo(final Path cacheFile) {
         CachedDataInfo cachedDataInfo = null;
-        final Path cacheDataFile = Paths.get(cacheFile + ".dataInfo");
-        if (Files.exists(cacheDataFile)) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(cacheDataFile.toFile()))) {
-                cachedDataInfo = (CachedDataInfo) ois.readObject();
-            } catch (final Exception e) {
-                if (logger.isWarnEnabled()) {
-                    logger.warn("could not read dataInfo from {}, {}", cacheDataFile, e.getMessage());
-                }
+        final Path cacheDataFile = Paths.get(cacheFile + CacheIndex.DATA_INFO_SUFFIX);
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(cacheDataFile.toFile()))) {
+            cachedDataInfo = (CachedDataInfo) ois.readObject();
+        } catch (final FileNotFoundException e) {
+            final CacheIndex cacheIndex = index;
+            if (null != cacheIndex) {
+                cacheIndex.remove(cacheFile);
+            }
+        } catch (final Exception e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("could not read dataInfo from {}, {}", cacheDataFile, e.getMessage());
             }
         }
         return cachedDataInfo;
     }
 
+    /**
+     * opens the data file of a cache entry. If it cannot be opened or is empty, the entry is invalidated.
+     *
+     * @param cacheFile
+     *     the cache file
+     * @return the stream, null if the data must be loaded from the network
+     */
+    FileInputStream openCacheFile(final Path cacheFile) {
+        try {
+            final FileInputStream fileInputStream = new FileInputStream(cacheFile.toFile());
+            if (fileInputStream.getChannel().size() > 0) {
+                return fileInputStream;
+            }
+            fileInputStream.close();
+        } catch (final IOException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("cannot read cache file {}: {}", cacheFile, e.getMessage());
+            }
+        }
+        invalidate(cacheFile);
+        return null;
+    }
+
+    /**
+     * removes a cache entry whose data file cannot be read or is empty. The entry is removed from the index and its
+     * dataInfo is deleted, so that the data is loaded from the network and cached again.
+     *
+     * @param cacheFile
+     *     the cache file
+     */
+    void invalidate(final Path cacheFile) {
+        final CacheIndex cacheIndex = index;
+        if (null != cacheIndex) {
+            cacheIndex.remove(cacheFile);
+        }
+        final Path cacheDataFile = Paths.get(cacheFile + CacheIndex.DATA_INFO_SUFFIX);
+        try {
+            Files.deleteIfExists(cacheDataFile);
+        } catch (final IOException e) {
+            if (logger.isWarnEnabled()) {
+                logger.warn("could not delete dataInfo {}, {}", cacheDataFile, e.getMessage());
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("invalidated cache file {}", cacheFile);
+        }
+    }
+
     /**
      * deletes all files from the cache directory. Make sure before calling this method, that the cache directory was
      * set to a directory that only contains the cache's files and is not used for something else.
      */
     public void clear() throws IOException {
         if (null != cacheDirectory) {
+            final CacheIndex cacheIndex = index;
+            if (null != cacheIndex) {
+                cacheIndex.clear();
+            }
             clearDirectory(cacheDirectory);
         }
     }
 
+    /**
+     * exports all entries of the cache into a single zip archive.
+     *
+     * @param archive
+     *     the archive file to create, an existing file is overwritten
+     * @return the number of exported cache entries
+     * @throws IOException
+     *     if the cache directory cannot be read or the archive cannot be written
+     * @throws IllegalStateException
+     *     if no cacheDirectory is set
+     */
+    public int exportArchive(final Path archive) throws IOException {
+        return exportArchive(archive, url -> true);
+    }
+
+    /**
+     * exports the tiles of a region into a single zip archive. Only entries for tile URLs ending with a z/x/y path
+     * (like OpenStreetMap or XYZ sources) can be matched against the region, other entries are not exported.
+     *
+     * @param archive
+     *     the archive file to create, an existing file is overwritten
+     * @param extent
+     *     the extent of the region
+     * @param minZoom
+     *     the minimum zoom level, inclusive
+     * @param maxZoom
+     *     the maximum zoom level, inclusive
+     * @return the number of exported cache entries
+     * @throws IOException
+     *     if the cache directory cannot be read or the archive cannot be written
+     * @throws IllegalStateException
+     *     if no cacheDirectory is set
+     * @throws NullPointerException
+     *     if extent is null
+     */
+    public int exportArchive(final Path archive, final Extent extent, final int minZoom, final int maxZoom)
+        throws IOException {
+        return exportArchive(archive, CacheArchive.tileFilter(Objects.requireNonNull(extent), minZoom, maxZoom));
+    }
+
+    private int exportArchive(final Path archive, final Predicate<String> filter) throws IOException {
+        if (null == cacheDirectory) {
+            throw new IllegalStateException("cannot export without cacheDirectory");
+        }
+        try (OutputStream out = Files.newOutputStream(Objects.requireNonNull(archive))) {
+            return CacheArchive.export(cacheDirectory, out, filter);
+        }
+    }
+
+    /**
+     * imports the entries from an archive that was created with one of the exportArchive methods. Entries that
+     * already are in the cache are skipped.
+     *
+     * @param archive
+     *     the archive file
+     * @return the number of imported files
+     * @throws IOException
+     *     if the archive cannot be read or the cache files cannot be written
+     * @throws IllegalStateException
+     *     if no cacheDirectory is set
+     */
+    public int importArchive(final Path archive) throws IOException {
+        if (null == cacheDirectory) {
+            throw new IllegalStateException("cannot import without cacheDirectory");
+        }
+        try (InputStream in = Files.newInputStream(Objects.requireNonNull(archive))) {
+            // the imported entries are added to the live index
+            return CacheArchive.importArchive(cacheDirectory, in, index);
+        }
+    }
+
     /**
      * calls {@link #preloadURLs(Collection, int)} with a paraellism value of zero.
      *
@@ -360,7 +662,9 @@ public enum OfflineCache {
 
     /**
      * loads the given URL and so puts them into the cache. If the cache is disabled, the call is ignored.
-     * Any errors during load are logged and further ignored.
+     * Any errors during load are logged and further ignored. The requests are routed like all others, so the data is
+     * stored in the active cache that gets the URL by the order described in the class documentation; this is another
+     * cache than this one if a cache with precedence accepts the URL.
      *
      * @param urls
      *     the list of URLs
@@ -396,6 +700,15 @@ public enum OfflineCache {
         }
     }
 
+    @Override
+    public String toString() {
+        return "OfflineCache{" +
+            "name='" + name + '\'' +
+            ", active=" + active +
+            ", cacheDirectory=" + cacheDirectory +
+            '}';
+    }
+
     /**
      * class to recursivly delete files.
      */
@@ -0,0 +1,202 @@
+/*
+ Copyright 2016-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx.offline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics about the usage of the {@link OfflineCache}. All methods are thread safe, the values are collected from
+ * the threads that load the map data.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class OfflineCacheStatistics implements OfflineCacheStatisticsMXBean {
+
+    /** the name under which the statistics are registered as MBean, completed with the name of the cache. */
+    public static final String OBJECT_NAME = "com.sothawo.mapjfx:type=OfflineCache";
+
+    /** the number of buckets in the latency histograms, the last bucket collects everything above 2^30 µs. */
+    static final int HISTOGRAM_BUCKETS = 32;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypasses = new LongAdder();
+    private final LongAdder bytesFromCache = new LongAdder();
+    private final LongAdder bytesFromNetwork = new LongAdder();
+    private final LongAdder cacheLookupMicros = new LongAdder();
+    private final LongAdder networkMicros = new LongAdder();
+    private final AtomicLongArray cacheLookupHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    private final AtomicLongArray networkHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+    /**
+     * returns the histogram bucket for a duration.
+     *
+     * @param micros
+     *     the duration in microseconds
+     * @return the bucket index
+     */
+    static int bucketFor(final long micros) {
+        if (micros <= 0) {
+            return 0;
+        }
+        return Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    private static long[] toArray(final AtomicLongArray array) {
+        final long[] values = new long[array.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = array.get(i);
+        }
+        return values;
+    }
+
+    private static void clear(final AtomicLongArray array) {
+        for (int i = 0; i < array.length(); i++) {
+            array.set(i, 0);
+        }
+    }
+
+    /**
+     * records a cache lookup.
+     *
+     * @param hit
+     *     true if the data was found in the cache
+     * @param nanos
+     *     the time needed for the lookup
+     */
+    void recordLookup(final boolean hit, final long nanos) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        cacheLookupMicros.add(micros);
+        cacheLookupHistogram.incrementAndGet(bucketFor(micros));
+    }
+
+    /**
+     * records a request that was not handled by the cache because of the filter settings.
+     */
+    void recordBypass() {
+        bypasses.increment();
+    }
+
+    /**
+     * records data that was returned from a cache file.
+     *
+     * @param numBytes
+     *     the number of bytes
+     */
+    void recordCacheRead(final long numBytes) {
+        bytesFromCache.add(numBytes);
+    }
+
+    /**
+     * records data that was loaded from the network.
+     *
+     * @param numBytes
+     *     the number of bytes
+     * @param nanos
+     *     the time needed to load the data
+     */
+    void recordNetworkRead(final long numBytes, final long nanos) {
+        bytesFromNetwork.add(numBytes);
+        final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        networkMicros.add(micros);
+        networkHistogram.incrementAndGet(bucketFor(micros));
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getBypasses() {
+        return bypasses.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        final long numHits = getHits();
+        final long total = numHits + getMisses();
+        return total == 0 ? 0.0 : (double) numHits / total;
+    }
+
+    @Override
+    public long getBytesFromCache() {
+        return bytesFromCache.sum();
+    }
+
+    @Override
+    public long getBytesFromNetwork() {
+        return bytesFromNetwork.sum();
+    }
+
+    @Override
+    public long getCacheLookupMicros() {
+        return cacheLookupMicros.sum();
+    }
+
+    @Override
+    public long getNetworkMicros() {
+        return networkMicros.sum();
+    }
+
+    @Override
+    public long[] getCacheLookupHistogram() {
+        return toArray(cacheLookupHistogram);
+    }
+
+    @Override
+    public long[] getNetworkHistogram() {
+        return toArray(networkHistogram);
+    }
+
+    @Override
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        bypasses.reset();
+        bytesFromCache.reset();
+        bytesFromNetwork.reset();
+        cacheLookupMicros.reset();
+        networkMicros.reset();
+        clear(cacheLookupHistogram);
+        clear(networkHistogram);
+    }
+
+    @Override
+    public String toString() {
+        return "OfflineCacheStatistics{" +
+            "hits=" + getHits() +
+            ", misses=" + getMisses() +
+            ", bypasses=" + getBypasses() +
+            ", bytesFromCache=" + getBytesFromCache() +
+            ", bytesFromNetwork=" + getBytesFromNetwork() +
+            ", cacheLookupMicros=" + getCacheLookupMicros() +
+            ", networkMicros=" + getNetworkMicros() +
+            '}';
+    }
+}
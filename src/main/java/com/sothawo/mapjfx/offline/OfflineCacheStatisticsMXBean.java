@@ -0,0 +1,88 @@
+/*
+ Copyright 2016-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx.offline;
+
+/**
+ * Management interface for the statistics of the {@link OfflineCache}. The statistics are registered in the platform
+ * MBeanServer under the name {@value OfflineCacheStatistics#OBJECT_NAME},name=&lt;cache name&gt; when the cache is
+ * activated.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public interface OfflineCacheStatisticsMXBean {
+
+    /**
+     * @return the number of requests that were answered from the cache
+     */
+    long getHits();
+
+    /**
+     * @return the number of requests that were not found in the cache and were loaded from the network
+     */
+    long getMisses();
+
+    /**
+     * @return the number of requests that were not handled by any active cache because of the cache filters. Only
+     * counted for the default cache {@link OfflineCache#INSTANCE}
+     */
+    long getBypasses();
+
+    /**
+     * @return the ratio of hits to all cacheable requests, 0 if there were no requests
+     */
+    double getHitRatio();
+
+    /**
+     * @return the number of bytes that were returned from cache files
+     */
+    long getBytesFromCache();
+
+    /**
+     * @return the number of bytes that were loaded from the network and written to the cache
+     */
+    long getBytesFromNetwork();
+
+    /**
+     * @return the accumulated time in microseconds used to check if an URL is cached
+     */
+    long getCacheLookupMicros();
+
+    /**
+     * @return the accumulated time in microseconds used to load data from the network
+     */
+    long getNetworkMicros();
+
+    /**
+     * returns a histogram of the cache lookup times. Entry i contains the number of lookups that took less than
+     * 2<sup>i</sup> microseconds, the last entry contains all the longer ones.
+     *
+     * @return the histogram buckets
+     */
+    long[] getCacheLookupHistogram();
+
+    /**
+     * returns a histogram of the network load times. Entry i contains the number of loads that took less than
+     * 2<sup>i</sup> microseconds, the last entry contains all the longer ones.
+     *
+     * @return the histogram buckets
+     */
+    long[] getNetworkHistogram();
+
+    /**
+     * resets all the counters and histograms.
+     */
+    void reset();
+}
@@ -15,57 +15,271 @@
 */
 package com.sothawo.mapjfx.offline;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 /**
- * FilterInputStream that dumps all data passed through it to a cache file before passing the data on.
+ * FilterInputStream that dumps all data passed through it to a cache file before passing the data on. All read methods
+ * including {@link #read()} and {@link #skip(long)} pass the data to the cache file. The data is collected in a pooled
+ * direct buffer and written to a FileChannel when the buffer is full.
+ *
+ * With write-behind enabled, full buffers are written by a background thread, so that the reader is not blocked by the
+ * disk. The writes of one stream keep their order, and the close notification is run after the last write. If all
+ * pooled buffers are in use, the reader waits for its pending writes.
+ *
+ * When writing the cache file fails, the data is still passed on to the reader, the incomplete cache file is deleted
+ * and the close notification is not run. A stream that is not closed releases its buffer, closes the cache file and
+ * deletes it when it is garbage collected.
  *
  * @author P.J. Meisch (pj.meisch@sothawo.com).
  */
 class WriteCacheFileInputStream extends FilterInputStream {
 
-    /** the output stream where the data is stored. */
-    private final OutputStream out;
+    /** Logger for the class */
+    private static final Logger logger = LoggerFactory.getLogger(WriteCacheFileInputStream.class);
+
+    /** the size of the write buffers. */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /** the maximum number of pooled buffers. */
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    /** the pool of write buffers. */
+    private static final DirectBufferPool bufferPool = new DirectBufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+
+    /** releases the resources of streams that are not closed. */
+    private static final Cleaner cleaner = Cleaner.create();
+
+    /** the file to write. */
+    private final Path cacheFile;
+
+    /** the cache file and buffer, released by the cleaner if the stream is not closed. */
+    private final Resources resources;
+
+    /** flag whether to write in a background thread. */
+    private final boolean writeBehind;
+
+    /** the chain of pending background writes. */
+    private CompletableFuture<Void> pendingWrites = CompletableFuture.completedFuture(null);
+
+    /** flag if writing the cache file failed. */
+    private volatile boolean writeFailed = false;
 
     /** a Runnable to be called when the inputstream is closed. */
     private Runnable notifyOnClose;
 
+    /** the number of bytes written to the cache file. */
+    private long numBytesWritten;
 
     /**
-     * Creates a <code>FilterInputStream</code> by assigning the  argument <code>in</code> to the field
-     * <code>this.in</code> so as to remember it for later use.
+     * creates a WriteCacheFileInputStream.
      *
      * @param in
-     *         the underlying input stream, or <code>null</code> if this instance is to be created without an underlying
-     *         stream.
-     * @param out
-     *         the stream where the data read from in should be written to.
+     *         the underlying input stream
+     * @param cacheFile
+     *         the file where the data read from in should be written to, it is created or truncated.
+     * @param writeBehind
+     *         if true, the data is written in a background thread
+     * @throws IOException
+     *         if the cache file cannot be opened
      */
-    protected WriteCacheFileInputStream(InputStream in, OutputStream out) {
+    WriteCacheFileInputStream(final InputStream in, final Path cacheFile, final boolean writeBehind)
+            throws IOException {
         super(in);
-        this.out = out;
+        this.cacheFile = cacheFile;
+        this.resources = new Resources(cacheFile, FileChannel.open(cacheFile, CREATE, WRITE, TRUNCATE_EXISTING));
+        this.writeBehind = writeBehind;
+        cleaner.register(this, resources);
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+        if (b >= 0 && !writeFailed) {
+            assignBuffer();
+            resources.buffer.put((byte) b);
+            numBytesWritten++;
+            if (!resources.buffer.hasRemaining()) {
+                flushBuffer();
+            }
+        }
+        return b;
     }
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
         final int numBytes = super.read(b, off, len);
-        if (null != out && numBytes > 0) {
-            out.write(b, off, numBytes);
+        if (numBytes > 0) {
+            tee(b, off, numBytes);
         }
         return numBytes;
     }
 
+    /**
+     * skips by reading the data, so that it is stored in the cache file as well.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        final byte[] skipBuffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            final int numBytes = read(skipBuffer, 0, (int) Math.min(n - skipped, skipBuffer.length));
+            if (numBytes < 0) {
+                break;
+            }
+            skipped += numBytes;
+        }
+        return skipped;
+    }
+
+    /**
+     * mark/reset is not supported as the data would be written twice.
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    private void tee(final byte[] b, int off, int len) {
+        while (len > 0 && !writeFailed) {
+            assignBuffer();
+            final ByteBuffer buffer = resources.buffer;
+            final int chunk = Math.min(len, buffer.remaining());
+            buffer.put(b, off, chunk);
+            off += chunk;
+            len -= chunk;
+            numBytesWritten += chunk;
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+        }
+    }
+
+    /**
+     * makes sure there is a buffer to be filled. When the pool is exhausted, pending writes are waited for, and if
+     * there still is no pooled buffer available, a heap buffer is used.
+     */
+    private void assignBuffer() {
+        if (null == resources.buffer) {
+            ByteBuffer buffer = bufferPool.acquire();
+            if (null == buffer && writeBehind) {
+                pendingWrites.join();
+                buffer = bufferPool.acquire();
+            }
+            if (null == buffer) {
+                buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            }
+            resources.buffer = buffer;
+        }
+    }
+
+    /**
+     * writes the current buffer to the cache file, either directly or in the background.
+     */
+    private void flushBuffer() {
+        final ByteBuffer full = resources.buffer;
+        resources.buffer = null;
+        full.flip();
+        if (writeBehind) {
+            // handle runs the write even if an earlier stage failed, so that the buffer is released
+            pendingWrites = pendingWrites.handleAsync((result, throwable) -> {
+                writeAndRelease(full);
+                return null;
+            }, WriteBehind.executor);
+        } else {
+            writeAndRelease(full);
+        }
+    }
+
+    private void writeAndRelease(final ByteBuffer data) {
+        try {
+            if (!writeFailed) {
+                while (data.hasRemaining()) {
+                    resources.channel.write(data);
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            writeFailed = true;
+            if (logger.isWarnEnabled()) {
+                logger.warn("could not write cache file {}: {}", cacheFile, e.getMessage());
+            }
+        } finally {
+            if (data.isDirect()) {
+                bufferPool.release(data);
+            }
+        }
+    }
+
     @Override
     public void close() throws IOException {
-        super.close();
-        if (null != out) {
-            out.flush();
-            out.close();
+        if (resources.closed) {
+            return;
+        }
+        resources.closed = true;
+        try {
+            super.close();
+        } finally {
+            if (null != resources.buffer) {
+                flushBuffer();
+            }
+            if (writeBehind) {
+                // the cache file is closed and an incomplete one deleted even if a write stage failed
+                pendingWrites = pendingWrites.handleAsync((result, throwable) -> {
+                    if (null != throwable) {
+                        writeFailed = true;
+                    }
+                    finish();
+                    return null;
+                }, WriteBehind.executor);
+            } else {
+                finish();
+            }
         }
-        if (null != notifyOnClose) {
+    }
+
+    /**
+     * closes the cache file and notifies the listener. If writing failed, the incomplete file is deleted instead.
+     */
+    private void finish() {
+        try {
+            resources.channel.close();
+        } catch (final IOException e) {
+            writeFailed = true;
+        }
+        if (writeFailed) {
+            try {
+                Files.deleteIfExists(cacheFile);
+            } catch (final IOException e) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("could not delete incomplete cache file {}", cacheFile);
+                }
+            }
+        } else if (null != notifyOnClose) {
             notifyOnClose.run();
         }
     }
@@ -73,4 +287,69 @@ class WriteCacheFileInputStream extends FilterInputStream {
     public void onInputStreamClose(Runnable r) {
         notifyOnClose = r;
     }
+
+    /**
+     * @return the number of bytes that were written to the cache file.
+     */
+    public long getNumBytesWritten() {
+        return numBytesWritten;
+    }
+
+    /**
+     * waits until all pending background writes and the close notification are done. Used in tests and benchmarks.
+     */
+    void awaitPendingWrites() {
+        pendingWrites.join();
+    }
+
+    /**
+     * the resources of a stream that must be released when the stream is garbage collected without being closed. This
+     * object must not reference the stream.
+     */
+    private static final class Resources implements Runnable {
+        private final Path cacheFile;
+        private final FileChannel channel;
+        /** the buffer currently filled, null if none is assigned. */
+        private ByteBuffer buffer;
+        /** set when the stream is closed, the close method then releases the resources. */
+        private volatile boolean closed;
+
+        Resources(final Path cacheFile, final FileChannel channel) {
+            this.cacheFile = cacheFile;
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            if (closed) {
+                return;
+            }
+            if (null != buffer && buffer.isDirect()) {
+                bufferPool.release(buffer);
+            }
+            buffer = null;
+            try {
+                channel.close();
+                Files.deleteIfExists(cacheFile);
+            } catch (final IOException e) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("could not delete incomplete cache file {}", cacheFile);
+                }
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("released cache file {} of a stream that was not closed", cacheFile);
+            }
+        }
+    }
+
+    /**
+     * holder for the lazily created write-behind executor.
+     */
+    private static class WriteBehind {
+        private static final ExecutorService executor = Executors.newFixedThreadPool(2, r -> {
+            final Thread thread = new Thread(r, "mapjfx-offlinecache-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 }
@@ -15,6 +15,8 @@
 */
 module com.sothawo.mapjfx {
     requires java.desktop;
+    requires java.management;
+    requires java.xml;
     requires javafx.base;
     requires javafx.graphics;
     requires javafx.web;
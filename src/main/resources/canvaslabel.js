@@ -0,0 +1,251 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/*******************************************************************************************************************
+ * MapLabels that are drawn as text on a canvas layer instead of being DOM elements in overlays. This module is loaded
+ * into the page when the first label is added to a map that is configured for canvas labels.
+ */
+
+/**
+ * @constructor
+ *
+ * @param {string} name the name of the label
+ * @param {string} text the text of the label, html tags are removed
+ * @param {ol.Feature} feature the feature for the label
+ * @param {number} offsetX x-offset of the top left point of the text to the coordinate
+ * @param {number} offsetY y-offset of the top left point of the text to the coordinate
+ */
+function CanvasLabel(name, text, feature, offsetX, offsetY) {
+    this.isCanvasLabel = true;
+    this.name = name;
+    var element = document.createElement('div');
+    element.innerHTML = text;
+    this.text = element.textContent;
+    this.feature = feature;
+    this.offsetX = offsetX;
+    this.offsetY = offsetY;
+    this.rotation = 0;
+    this.cssClass = '';
+    this.onMap = false;
+}
+
+CanvasLabel.prototype.getOnMap = function () {
+    return this.onMap;
+};
+
+/**
+ * builds the style of the label from the computed css values of its class.
+ *
+ * @param {object} css the text style values for the label's css class
+ */
+CanvasLabel.prototype.updateStyle = function (css) {
+    this.feature.setStyle(new ol.style.Style({
+        text: new ol.style.Text({
+            text: this.text,
+            font: css.font,
+            fill: css.fill,
+            backgroundFill: css.backgroundFill,
+            backgroundStroke: css.backgroundStroke,
+            padding: css.padding,
+            textAlign: 'left',
+            textBaseline: 'top',
+            offsetX: this.offsetX,
+            offsetY: this.offsetY,
+            rotation: this.rotation * Math.PI / 180
+        })
+    }));
+};
+
+/**
+ * creates the canvas label layer and the event handling on first use. Events are found by hit detection on the layer
+ * and reported to java like the events of DOM labels.
+ */
+JSMapView.prototype.initCanvasLabels = function () {
+    if (this.canvasLabelLayer) {
+        return;
+    }
+    // text style values by css class
+    this.canvasLabelCss = {};
+    this.canvasLabelLayer = new ol.layer.Vector({
+        source: new ol.source.Vector(),
+        declutter: true
+    });
+    // not part of the map's layer group with the base, tile and feature layers, rendered on top of it
+    this.canvasLabelLayer.setMap(this.map);
+    this.hoveredCanvasLabel = null;
+
+    var report = (function (type) {
+        return (function (evt) {
+            var name = this.canvasLabelAt(evt.pixel);
+            if (name) {
+                this.javaConnector[type](name);
+                evt.preventDefault();
+                evt.stopPropagation();
+                return false;
+            }
+        }).bind(this);
+    }).bind(this);
+    this.map.on('click', report('labelClicked'));
+    this.map.on('dblclick', report('labelDoubleClicked'));
+    this.map.on('pointerdown', report('labelMouseDown'));
+    this.map.on('pointerup', report('labelMouseUp'));
+    this.map.on('pointermove', (function (evt) {
+        var name = evt.dragging ? null : this.canvasLabelAt(evt.pixel);
+        if (name !== this.hoveredCanvasLabel) {
+            if (this.hoveredCanvasLabel) {
+                this.javaConnector.labelExited(this.hoveredCanvasLabel);
+            }
+            if (name) {
+                this.javaConnector.labelEntered(name);
+            }
+            this.hoveredCanvasLabel = name;
+        }
+    }).bind(this));
+};
+
+/**
+ * @param {array[number]} pixel the pixel in the map
+ * @return {string} the name of the topmost canvas label at the pixel, or null.
+ */
+JSMapView.prototype.canvasLabelAt = function (pixel) {
+    var name = null;
+    var layer = this.canvasLabelLayer;
+    this.map.forEachFeatureAtPixel(pixel, function (feature) {
+        name = feature.get('canvasLabel');
+        return true;
+    }, {
+        layerFilter: function (candidate) {
+            return candidate === layer;
+        }
+    });
+    return name;
+};
+
+/**
+ * gets the text style values for a css class from the computed style of a hidden element with the class, so that the
+ * labels look like DOM labels with the same class as far as canvas text allows.
+ *
+ * @param {string} cssClass the css class of the label
+ * @return {object} font, fill, backgroundFill, backgroundStroke and padding
+ */
+JSMapView.prototype.canvasLabelCssFor = function (cssClass) {
+    var css = this.canvasLabelCss[cssClass];
+    if (!css) {
+        var element = document.createElement('div');
+        element.setAttribute('class', 'mapview-label ' + cssClass);
+        element.style.visibility = 'hidden';
+        element.style.position = 'absolute';
+        document.getElementById('labels').appendChild(element);
+        var style = window.getComputedStyle(element);
+        var borderWidth = parseFloat(style.borderTopWidth) || 0;
+        css = {
+            font: style.fontStyle + ' ' + style.fontWeight + ' ' + style.fontSize + ' ' + style.fontFamily,
+            fill: new ol.style.Fill({color: style.color}),
+            backgroundFill: new ol.style.Fill({color: style.backgroundColor}),
+            backgroundStroke: borderWidth > 0 && style.borderTopStyle !== 'none'
+                ? new ol.style.Stroke({color: style.borderTopColor, width: borderWidth})
+                : undefined,
+            padding: [parseFloat(style.paddingTop) || 0, parseFloat(style.paddingRight) || 0,
+                parseFloat(style.paddingBottom) || 0, parseFloat(style.paddingLeft) || 0]
+        };
+        element.parentNode.removeChild(element);
+        this.canvasLabelCss[cssClass] = css;
+    }
+    return css;
+};
+
+/**
+ * adds a label that is drawn on the canvas label layer. The label is managed with the same functions as DOM labels.
+ *
+ * @param {string} name the name of the Label. must be unique within all markers and labels.
+ * @param {string} text the text of the Label
+ * @param {string} cssClass the css class for the label
+ * @param {number} latitude the latitude of the label's position
+ * @param {number} longitude the longitude of the label's position
+ * @param {number} offsetX x-offset of the top left point of the text to the coordinate
+ * @param {number} offsetY y-offset of the top left point of the text to the coordinate
+ */
+JSMapView.prototype.addCanvasLabel = function (name, text, cssClass, latitude, longitude, offsetX, offsetY) {
+    if (!this.mapObjects[name]) {
+        this.initCanvasLabels();
+        var feature = new ol.Feature(new ol.geom.Point(this.projections.cFromWGS84([longitude, latitude])));
+        feature.set('canvasLabel', name);
+        var label = new CanvasLabel(name, text, feature, offsetX, offsetY);
+        label.cssClass = cssClass;
+        label.updateStyle(this.canvasLabelCssFor(cssClass));
+        this.mapObjects[name] = label;
+        this.javaConnector.debug('created canvas Label object named ' + name);
+    }
+};
+
+/**
+ * moves a canvas label.
+ *
+ * @param {CanvasLabel} label the label
+ * @param {array[number]} position the new position in map coordinates
+ */
+JSMapView.prototype.moveCanvasLabel = function (label, position) {
+    label.feature.getGeometry().setCoordinates(position);
+};
+
+/**
+ * shows a canvas label.
+ *
+ * @param {CanvasLabel} label the label
+ */
+JSMapView.prototype.showCanvasLabel = function (label) {
+    if (!label.onMap) {
+        this.canvasLabelLayer.getSource().addFeature(label.feature);
+        label.onMap = true;
+    }
+};
+
+/**
+ * hides a canvas label.
+ *
+ * @param {CanvasLabel} label the label
+ */
+JSMapView.prototype.hideCanvasLabel = function (label) {
+    if (label.onMap) {
+        this.canvasLabelLayer.getSource().removeFeature(label.feature);
+        label.onMap = false;
+        if (this.hoveredCanvasLabel === label.name) {
+            this.hoveredCanvasLabel = null;
+        }
+    }
+};
+
+/**
+ * rotates a canvas label.
+ *
+ * @param {CanvasLabel} label the label
+ * @param {number} angle the rotation angle in degrees
+ */
+JSMapView.prototype.rotateCanvasLabel = function (label, angle) {
+    label.rotation = angle;
+    label.updateStyle(this.canvasLabelCssFor(label.cssClass));
+};
+
+/**
+ * sets the css class of a canvas label.
+ *
+ * @param {CanvasLabel} label the label
+ * @param {string} cssClass the css class
+ */
+JSMapView.prototype.setCanvasLabelCss = function (label, cssClass) {
+    label.cssClass = cssClass;
+    label.updateStyle(this.canvasLabelCssFor(cssClass));
+};
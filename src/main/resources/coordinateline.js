@@ -20,9 +20,61 @@
  */
 
 /**
+ * Cache of the ol.style.Style objects for CoordinateLines. Lines with the same color, fill color and width share one
+ * style object, which is released when no line uses it anymore.
+ *
  * @constructor
  */
-function CoordinateLine(projections) {
+function LineStyles() {
+    this.entries = {};
+}
+
+/**
+ * returns the style for the given values and increments its usage count.
+ *
+ * @param {string} key the key built from the values
+ * @param {array} color stroke color
+ * @param {array} fillColor fill color
+ * @param {number} width stroke width
+ * @return {ol.style.Style}
+ */
+LineStyles.prototype.acquire = function (key, color, fillColor, width) {
+    var entry = this.entries[key];
+    if (!entry) {
+        entry = {
+            style: new ol.style.Style({
+                stroke: new ol.style.Stroke({
+                    width: width,
+                    color: color
+                }),
+                fill: new ol.style.Fill({
+                    color: fillColor
+                })
+            }),
+            count: 0
+        };
+        this.entries[key] = entry;
+    }
+    entry.count++;
+    return entry.style;
+};
+
+/**
+ * decrements the usage count of a style and removes it when it is not used anymore.
+ *
+ * @param {string} key the key of the style
+ */
+LineStyles.prototype.release = function (key) {
+    var entry = this.entries[key];
+    if (entry && --entry.count <= 0) {
+        delete this.entries[key];
+    }
+};
+
+/**
+ * @constructor
+ */
+function CoordinateLine(projections, lineStyles) {
     this.coordinates = [];
     this.feature = null;
     this.onMap = false;
@@ -35,13 +87,24 @@ function CoordinateLine(projections) {
     // default is not closed
     this.closed = false;
     this.projections = projections;
-
+    this.lineStyles = lineStyles;
+    // key of the shared style, set when sealed
+    this.styleKey = null;
+    // indices of the coordinates in the Java line when only a simplified variant is shown, null for the full line
+    this.indices = null;
+    // index of the first coordinate of the Java line
+    this.firstIndex = 0;
+    // index that the next appended coordinate gets
+    this.nextIndex = 0;
 }
 
 /**
  * @returns {array} the coordinates of this CoordinateLine. Coordinates are in longitude/latitude order.
  */
 CoordinateLine.prototype.getCoordinates = function () {
+    if (this.feature && !this.closed) {
+        return this.feature.getGeometry().getCoordinates();
+    }
     return this.coordinates;
 }
 
@@ -49,10 +112,150 @@ CoordinateLine.prototype.getCoordinates = function () {
  * adds a coordinate to the coordinates array
  * @param {number} latitude value in WGS84
  * @param {number} longitude value in WGS84
+ * @param {number} [index] index of the coordinate in the Java line, only set for a simplified variant
  */
-CoordinateLine.prototype.addCoordinate = function (latitude, longitude) {
+CoordinateLine.prototype.addCoordinate = function (latitude, longitude, index) {
     // lat/lon reversion
     this.coordinates.push(this.projections.cFromWGS84([longitude, latitude]));
+    if (index !== undefined) {
+        if (!this.indices) {
+            this.indices = [];
+        }
+        this.indices.push(index);
+    }
+}
+
+/**
+ * adds coordinates to the coordinates array. Passing all coordinates of a variant in one call is much faster than
+ * calling addCoordinate for each of them.
+ * @param {string} latLon comma separated latitude/longitude pairs in WGS84
+ * @param {string} [indices] comma separated indices of the coordinates in the Java line, only set for a simplified
+ * variant; an empty string for a variant without coordinates
+ */
+CoordinateLine.prototype.addCoordinates = function (latLon, indices) {
+    if (latLon.length > 0) {
+        var values = latLon.split(',');
+        for (var i = 0; i < values.length; i += 2) {
+            // lat/lon reversion
+            this.coordinates.push(this.projections.cFromWGS84([Number(values[i + 1]), Number(values[i])]));
+        }
+    }
+    if (indices !== undefined) {
+        this.indices = indices.length > 0 ? indices.split(',').map(Number) : [];
+    }
+}
+
+/**
+ * removes all coordinates before a new variant of the line is added.
+ */
+CoordinateLine.prototype.clearCoordinates = function () {
+    this.coordinates = [];
+    this.indices = null;
+    this.firstIndex = 0;
+    this.nextIndex = 0;
+}
+
+/**
+ * sets the index the next appended coordinate gets, this is the number of coordinates in the Java line.
+ * @param {number} index
+ */
+CoordinateLine.prototype.setNextIndex = function (index) {
+    this.nextIndex = index;
+}
+
+/**
+ * sets the coordinates that were added after clearCoordinates() in the existing geometry.
+ */
+CoordinateLine.prototype.updateGeometry = function () {
+    if (this.feature) {
+        if (this.closed) {
+            this.feature.getGeometry().setCoordinates([this.coordinates]);
+        } else {
+            this.feature.getGeometry().setCoordinates(this.coordinates);
+            this.coordinates = [];
+        }
+    }
+}
+
+/**
+ * appends coordinates that were appended to the Java line. The geometry is set once for all appended coordinates, as
+ * every change of the geometry makes OpenLayers recalculate its extent.
+ * @param {string} latLon comma separated latitude/longitude pairs in WGS84
+ */
+CoordinateLine.prototype.appendCoordinates = function (latLon) {
+    var values = latLon.split(',');
+    var appended = [];
+    for (var i = 0; i + 1 < values.length; i += 2) {
+        // lat/lon reversion
+        appended.push(this.projections.cFromWGS84([Number(values[i + 1]), Number(values[i])]));
+        if (this.indices) {
+            this.indices.push(this.nextIndex);
+        }
+        this.nextIndex++;
+    }
+    if (!this.feature || this.closed) {
+        Array.prototype.push.apply(this.coordinates, appended);
+        if (this.feature) {
+            this.feature.getGeometry().setCoordinates([this.coordinates]);
+        }
+    } else {
+        var geometry = this.feature.getGeometry();
+        geometry.setCoordinates(geometry.getCoordinates().concat(appended));
+    }
+}
+
+/**
+ * removes coordinates from the start of the Java line. When a simplified variant is shown, the shown coordinates
+ * before the new start are removed and the new first coordinate is inserted if it is not shown.
+ * @param {number} count the number of coordinates removed from the Java line
+ * @param {number} [latitude] latitude of the new first coordinate in WGS84
+ * @param {number} [longitude] longitude of the new first coordinate in WGS84
+ */
+CoordinateLine.prototype.trimHead = function (count, latitude, longitude) {
+    if (!this.indices) {
+        this.spliceHead(count, null);
+        return;
+    }
+    this.firstIndex += count;
+    var remove = 0;
+    while (remove < this.indices.length && this.indices[remove] < this.firstIndex) {
+        remove++;
+    }
+    this.indices.splice(0, remove);
+    var first = null;
+    if (latitude !== undefined && (this.indices.length === 0 || this.indices[0] !== this.firstIndex)) {
+        this.indices.unshift(this.firstIndex);
+        first = this.projections.cFromWGS84([longitude, latitude]);
+    }
+    this.spliceHead(remove, first);
+}
+
+/**
+ * removes coordinates from the start of the shown coordinates and optionally inserts a new first one.
+ * @param {number} count the number of coordinates to remove
+ * @param {array} first projected coordinate to insert, may be null
+ */
+CoordinateLine.prototype.spliceHead = function (count, first) {
+    if (!this.feature || this.closed) {
+        if (first) {
+            this.coordinates.splice(0, count, first);
+        } else {
+            this.coordinates.splice(0, count);
+        }
+        if (this.feature) {
+            this.feature.getGeometry().setCoordinates([this.coordinates]);
+        }
+    } else {
+        // the geometry holds the coordinates of an open line, they are set once for the whole trimmed range
+        var geometry = this.feature.getGeometry();
+        var coordinates = geometry.getCoordinates();
+        if (first) {
+            coordinates.splice(0, count, first);
+        } else {
+            coordinates.splice(0, count);
+        }
+        geometry.setCoordinates(coordinates);
+    }
 }
 
 /**
@@ -63,17 +266,21 @@ CoordinateLine.prototype.seal = function () {
         this.feature = new ol.Feature(new ol.geom.Polygon([this.coordinates]));
     } else {
         this.feature = new ol.Feature(new ol.geom.LineString(this.coordinates));
+        // the geometry holds the coordinates from now on
+        this.coordinates = [];
+    }
+    this.styleKey = this.color.join() + '|' + this.fillColor.join() + '|' + this.width;
+    this.feature.setStyle(this.lineStyles.acquire(this.styleKey, this.color, this.fillColor, this.width));
+};
+
+/**
+ * releases the shared style when the line is removed.
+ */
+CoordinateLine.prototype.releaseStyle = function () {
+    if (this.styleKey) {
+        this.lineStyles.release(this.styleKey);
+        this.styleKey = null;
     }
-    var style = new ol.style.Style({
-        stroke: new ol.style.Stroke({
-            width: this.width,
-            color: this.color
-        }),
-        fill: new ol.style.Fill({
-            color: this.fillColor
-        })
-    });
-    this.feature.setStyle(style);
 };
 
 /**
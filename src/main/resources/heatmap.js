@@ -0,0 +1,99 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/*******************************************************************************************************************
+ * heatmap functions of the JSMapView. This module is loaded into the page when the first heatmap is added.
+ */
+
+/**
+ * creates a heatmap layer. The layer is not part of the map's layer group with the base layers, whose visibility is
+ * switched when the map type changes, the tile layers and the feature layer; it is rendered on top of that group.
+ *
+ * @param {string} name the name of the heatmap
+ * @param {number} radius radius of a point in pixels
+ * @param {number} blur blur size in pixels
+ */
+JSMapView.prototype.addHeatmap = function (name, radius, blur) {
+    if (!this.heatmaps[name]) {
+        this.heatmaps[name] = new ol.layer.Heatmap({
+            source: new ol.source.Vector(),
+            radius: radius,
+            blur: blur,
+            weight: 'weight'
+        });
+        this.javaConnector.debug("created heatmap " + name);
+    }
+};
+
+/**
+ * replaces the points of a heatmap.
+ *
+ * @param {string} name the name of the heatmap
+ * @param {string} data comma separated latitude/longitude/weight triples in WGS84, the weights are in 0..1
+ */
+JSMapView.prototype.setHeatmapData = function (name, data) {
+    var heatmap = this.heatmaps[name];
+    if (heatmap) {
+        var values = data.length > 0 ? data.split(',') : [];
+        var features = new Array(Math.floor(values.length / 3));
+        for (var i = 0; i < features.length; i++) {
+            var feature = new ol.Feature(new ol.geom.Point(
+                this.projections.cFromWGS84([Number(values[3 * i + 1]), Number(values[3 * i])])));
+            feature.set('weight', Number(values[3 * i + 2]));
+            features[i] = feature;
+        }
+        var source = heatmap.getSource();
+        source.clear(true);
+        source.addFeatures(features);
+    }
+};
+
+/**
+ * shows a heatmap.
+ *
+ * @param {string} name the name of the heatmap
+ */
+JSMapView.prototype.showHeatmap = function (name) {
+    var heatmap = this.heatmaps[name];
+    if (heatmap) {
+        heatmap.setMap(this.map);
+    }
+};
+
+/**
+ * hides a heatmap.
+ *
+ * @param {string} name the name of the heatmap
+ */
+JSMapView.prototype.hideHeatmap = function (name) {
+    var heatmap = this.heatmaps[name];
+    if (heatmap) {
+        heatmap.setMap(null);
+    }
+};
+
+/**
+ * removes a heatmap.
+ *
+ * @param {string} name the name of the heatmap
+ */
+JSMapView.prototype.removeHeatmap = function (name) {
+    if (this.heatmaps[name]) {
+        this.hideHeatmap(name);
+        delete this.heatmaps[name];
+        this.javaConnector.debug("deleted heatmap " + name);
+    }
+};
@@ -2,7 +2,6 @@
  * @constructor
  */
 function MapCircle(projections, map) {
-    this.coordinate = projections.cFromWGS84([0, 0]);
     this.feature = null;
     this.onMap = false;
     // default color opaque red
@@ -11,58 +10,43 @@ function MapCircle(projections, map) {
     this.fillColor = [255, 255, 0, 0.3];
     // default width 3
     this.width = 3;
-    this.radius = 0.0;
     this.projections = projections;
     this.map = map;
+    // vertices of the circle polygon in map projection
+    this.polygon = [];
 
 }
 
 /**
- * @returns {array} the centre coordinate of this circle. Coordinates are in longitude/latitude order.
- */
-MapCircle.prototype.getCenter = function () {
-    return this.coordinate;
-}
-
-/**
- * set centre coordinate of this circle
- * @param {number} latitude value in WGS84
- * @param {number} longitude value in WGS84
+ * sets the vertices of the geodesic polygon of the circle.
+ *
+ * @param {string} latLon comma separated latitude/longitude pairs in WGS84
  */
-MapCircle.prototype.setCenter = function (latitude, longitude) {
-    // lat/lon reversion
-    this.coordinate = this.projections.cFromWGS84([longitude, latitude]);
-}
+MapCircle.prototype.setPolygon = function (latLon) {
+    var values = latLon.split(',');
+    var ring = [];
+    for (var i = 0; i + 1 < values.length; i += 2) {
+        // lat/lon reversion
+        ring.push(this.projections.cFromWGS84([Number(values[i + 1]), Number(values[i])]));
+    }
+    if (ring.length > 0) {
+        ring.push(ring[0]);
+    }
+    this.polygon = ring;
+};
 
 /**
- * finishes construction of the object and builds the OL Feature based in the centre coordinate and radius that were set.
+ * finishes construction of the object and builds the OL Feature based in the polygon that was set. As the polygon has
+ * the true size of the circle, the style does not depend on the resolution.
  */
 MapCircle.prototype.seal = function () {
     this.feature = new ol.Feature({
-                   		geometry: new ol.geom.Point(this.coordinate)
-                   	});
-
-    this.map.getView().on('change:resolution', (function (evt) {
-        this.addCircleToFeature();
-    }).bind(this));
-
-    this.addCircleToFeature()
-};
-
-MapCircle.prototype.addCircleToFeature = function() {
-    const circle = new ol.style.Circle({
-        fill: new ol.style.Fill({color: this.fillColor}),
-        stroke: new ol.style.Stroke({color: this.color, width: this.width}),
-        points: 4,
-        radius: this.radius / this.map.getView().getResolution(),
-        angle: Math.PI / 4
+        geometry: new ol.geom.Polygon([this.polygon])
     });
-
-    const style = new ol.style.Style({
-        image: circle
-    });
-
-    this.feature.setStyle( style );
+    this.feature.setStyle(new ol.style.Style({
+        fill: new ol.style.Fill({color: this.fillColor}),
+        stroke: new ol.style.Stroke({color: this.color, width: this.width})
+    }));
 };
 
 /**
@@ -122,15 +106,3 @@ MapCircle.prototype.setFillColor = function (red, green, blue, alpha) {
 MapCircle.prototype.setWidth = function (width) {
     this.width = width;
 };
-
-/**
- * sets the radius of this circle.
- * @param flag
- */
-MapCircle.prototype.setRadius = function (radius) {
-    this.radius = radius;
-};
-
-MapCircle.prototype.getRadius = function () {
-    return this.radius;
-};
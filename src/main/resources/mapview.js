@@ -14,6 +14,18 @@
  limitations under the License.
  */
 
+/**
+ * the Bing Maps imagery sets by map type.
+ */
+var bingImagerySets = {
+    BINGMAPS_ROAD: 'RoadOnDemand',
+    BINGMAPS_AERIAL: 'Aerial',
+    BINGMAPS_AERIAL_WITH_LABELS: 'AerialWithLabelsOnDemand',
+    BINGMAPS_CANVAS_GRAY: 'CanvasGray',
+    BINGMAPS_CANVAS_DARK: 'CanvasDark',
+    BINGMAPS_CANVAS_LIGHT: 'CanvasLight'
+};
+
 /*******************************************************************************************************************
  * Connector object for the java application with the functions to be called.
  * @param javaConnector the javaConnector object
@@ -24,9 +36,23 @@ function JSMapView(javaConnector) {
     this.sourceFeatures = {};
     this.layerFeatures = {};
     this.coordinateLines = {};
+    // ol.style.Style objects shared by coordinateLines with the same colors and width
+    this.lineStyles = new LineStyles();
     this.circles = {};
+    this.heatmaps = {};
+    this.tileOverlays = {};
+    this.tileLayers = {};
     this.mapObjects = {};
+    // loaded <img> elements by image id, the elements of markers are copies of these
+    this.markerImages = {};
+    // elements of markers that were added before their image was registered, by image id
+    this.pendingMarkerImages = {};
     this.mapType = '';
+    // the layer group of the map containing the retained base layers and the feature layer
+    this.layerGroup = {};
+    // retained base layers as {key, layers} objects, the most recently used one is the last
+    this.baseLayers = [];
+    this.maxRetainedMapTypes = 3;
     this.javaConnector = javaConnector;
     this.anchorsPatched = false;
     this.bingMapsApiKey = '';
@@ -61,11 +87,16 @@ JSMapView.prototype.init = function (config) {
     });
 
 
+    if (configuration.maxRetainedMapTypes > 0) {
+        this.maxRetainedMapTypes = configuration.maxRetainedMapTypes;
+    }
+    this.layerGroup = new ol.layer.Group({
+        layers: [this.layerFeatures]
+    });
+
     this.map = new ol.Map({
         target: 'map',
-        layers: new ol.layer.Group({
-            layers: []
-        }),
+        layers: this.layerGroup,
         view: new ol.View({
             zoom: 1,
             projection: configuration.projection
@@ -91,8 +122,14 @@ JSMapView.prototype.init = function (config) {
             this.javaConnector.pointerMovedTo(coordinate[1], coordinate[0]);
         }).bind(this));
 
+    this.initMapObjectEvents();
+
     this.map.on('singleclick',
         (function (evt) {
+            // clicks on canvas labels are reported as label events
+            if (this.canvasLabelLayer && this.canvasLabelAt(evt.pixel)) {
+                return;
+            }
             var coordinate = this.projections.cToWGS84(evt.coordinate);
             // lat/lon reversion
             this.javaConnector.singleClickAt(coordinate[1], coordinate[0]);
@@ -247,148 +284,124 @@ JSMapView.prototype.getMapType = function () {
  * @param {string} newType the new map type
  */
 JSMapView.prototype.setMapType = function (newType) {
+    var key = this.baseLayersKey(newType);
+    if (!key) {
+        return;
+    }
     // reset the patched flag; the new layer can have different attributions
     this.anchorsPatched = false;
-    var mapTypeChanged = true;
-
-    if (newType === 'OSM') {
-        this.map.setLayerGroup(new ol.layer.Group({
-                layers: [
-                    new ol.layer.Tile({
-                        source: new ol.source.OSM({
-                            projection: new ol.proj.Projection(this.projections.openlayers)
-                        })
-                    }),
-                    this.layerFeatures
-                ]
-            })
-        );
-    } else if (newType === 'BINGMAPS_ROAD') {
-        this.map.setLayerGroup(new ol.layer.Group({
-            layers: [
-                new ol.layer.Tile({
-                    source: new ol.source.BingMaps({
-                        imagerySet: 'RoadOnDemand',
-                        key: this.bingMapsApiKey,
-                        projection: new ol.proj.Projection(this.projections.openlayers)
-                    })
-                }),
-                this.layerFeatures
-            ]
-        }));
-    } else if (newType === 'BINGMAPS_AERIAL') {
-        this.map.setLayerGroup(new ol.layer.Group({
-            layers: [
-                new ol.layer.Tile({
-                    source: new ol.source.BingMaps({
-                        imagerySet: 'Aerial',
-                        key: this.bingMapsApiKey,
-                        projection: new ol.proj.Projection(this.projections.openlayers)
-                    })
-                }),
-                this.layerFeatures
-            ]
-        }));
-    } else if (newType === 'BINGMAPS_AERIAL_WITH_LABELS') {
-        this.map.setLayerGroup(new ol.layer.Group({
-            layers: [
-                new ol.layer.Tile({
-                    source: new ol.source.BingMaps({
-                        imagerySet: 'AerialWithLabelsOnDemand',
-                        key: this.bingMapsApiKey,
-                        projection: new ol.proj.Projection(this.projections.openlayers)
-                    })
-                }),
-                this.layerFeatures
-            ]
-        }));
-    } else if (newType === 'BINGMAPS_CANVAS_GRAY') {
-        this.map.setLayerGroup(new ol.layer.Group({
-            layers: [
-                new ol.layer.Tile({
-                    source: new ol.source.BingMaps({
-                        imagerySet: 'CanvasGray',
-                        key: this.bingMapsApiKey,
-                        projection: new ol.proj.Projection(this.projections.openlayers)
-                    })
-                }),
-                this.layerFeatures
-            ]
-        }));
-    } else if (newType === 'BINGMAPS_CANVAS_DARK') {
-        this.map.setLayerGroup(new ol.layer.Group({
-            layers: [
-                new ol.layer.Tile({
-                    source: new ol.source.BingMaps({
-                        imagerySet: 'CanvasDark',
-                        key: this.bingMapsApiKey,
-                        projection: new ol.proj.Projection(this.projections.openlayers)
-                    })
-                }),
-                this.layerFeatures
-            ]
-        }));
-    } else if (newType === 'BINGMAPS_CANVAS_LIGHT') {
-        this.map.setLayerGroup(new ol.layer.Group({
-            layers: [
-                new ol.layer.Tile({
-                    source: new ol.source.BingMaps({
-                        imagerySet: 'CanvasLight',
-                        key: this.bingMapsApiKey,
-                        projection: new ol.proj.Projection(this.projections.openlayers)
-                    })
-                }),
-                this.layerFeatures
-            ]
-        }));
-    } else if (newType === 'STAMEN_WC') {
-        this.map.setLayerGroup(new ol.layer.Group({
-            layers: [
-                new ol.layer.Tile({
-                    source: new ol.source.Stamen({
-                        layer: 'watercolor',
-                        projection: new ol.proj.Projection(this.projections.openlayers)
-                    })
-                }),
-                new ol.layer.Tile({
-                    source: new ol.source.Stamen({
-                        layer: 'terrain-labels',
-                        projection: new ol.proj.Projection(this.projections.openlayers)
-                    })
-                }),
-                this.layerFeatures
-            ]
-        }));
-    } else if (newType === 'WMS' && this.wmsParams.getUrl().length > 0) {
-        this.map.setLayerGroup(new ol.layer.Group({
-            layers: [
-                new ol.layer.Tile({
-                    source: new ol.source.TileWMS({
-                        url: this.wmsParams.getUrl(),
-                        params: this.wmsParams.getParams(),
-                        serverType: 'geoserver'
-                    })
-                }),
-                this.layerFeatures
-            ]
-        }));
-    } else if (newType === 'XYZ' && this.xyzParams.url.length > 0) {
-        this.map.setLayerGroup(new ol.layer.Group({
-            layers: [
-                new ol.layer.Tile({
-                    source: new ol.source.XYZ(this.xyzParams),
-                    projection: new ol.proj.Projection(this.projections.openlayers)
-                }),
-                this.layerFeatures
-            ]
-        }));
-    } else {
-        mapTypeChanged = false;
+
+    var collection = this.layerGroup.getLayers();
+    var entry = null;
+    for (var i = 0; i < this.baseLayers.length; i++) {
+        if (this.baseLayers[i].key === key) {
+            entry = this.baseLayers.splice(i, 1)[0];
+            break;
+        }
+    }
+    if (!entry) {
+        entry = {key: key, layers: this.createBaseLayers(newType)};
+        // base layers are the first ones in the group, followed by the tile layers and the feature layer
+        entry.layers.forEach(function (layer, index) {
+            collection.insertAt(index, layer);
+        });
     }
+    // the most recently used entry is the last one
+    this.baseLayers.push(entry);
+    this.baseLayers.forEach(function (retained) {
+        retained.layers.forEach(function (layer) {
+            layer.setVisible(retained === entry);
+        });
+    });
+    while (this.baseLayers.length > this.maxRetainedMapTypes) {
+        this.baseLayers.shift().layers.forEach(function (layer) {
+            collection.remove(layer);
+            layer.getSource().dispose();
+            layer.dispose();
+        });
+    }
+    this.mapType = newType;
+};
 
-    if (mapTypeChanged) {
-        this.mapType = newType;
+/**
+ * returns the key under which the layers of a map type are retained. The key contains the settings the layers are
+ * created from, so that changed settings produce new layers.
+ *
+ * @param {string} type the map type
+ *
+ * @return {string} the key or null if no layers can be created for the type
+ */
+JSMapView.prototype.baseLayersKey = function (type) {
+    if (type === 'OSM' || type === 'STAMEN_WC') {
+        return type;
+    } else if (bingImagerySets.hasOwnProperty(type)) {
+        return type + '|' + this.bingMapsApiKey;
+    } else if (type === 'WMS' && this.wmsParams.getUrl && this.wmsParams.getUrl().length > 0) {
+        return type + '|' + this.wmsParams.getUrl() + '|' + JSON.stringify(this.wmsParams.getParams());
+    } else if (type === 'XYZ' && this.xyzParams.url && this.xyzParams.url.length > 0) {
+        return type + '|' + JSON.stringify(this.xyzParams);
     }
+    return null;
+};
+
+/**
+ * creates the tile layers for a map type.
+ *
+ * @param {string} type the map type
+ *
+ * @return {Array} the layers
+ */
+JSMapView.prototype.createBaseLayers = function (type) {
+    if (type === 'OSM') {
+        return [
+            new ol.layer.Tile({
+                source: new ol.source.OSM({
+                    projection: new ol.proj.Projection(this.projections.openlayers)
+                })
+            })
+        ];
+    } else if (type === 'STAMEN_WC') {
+        return [
+            new ol.layer.Tile({
+                source: new ol.source.Stamen({
+                    layer: 'watercolor',
+                    projection: new ol.proj.Projection(this.projections.openlayers)
+                })
+            }),
+            new ol.layer.Tile({
+                source: new ol.source.Stamen({
+                    layer: 'terrain-labels',
+                    projection: new ol.proj.Projection(this.projections.openlayers)
+                })
+            })
+        ];
+    } else if (type === 'WMS') {
+        return [
+            new ol.layer.Tile({
+                source: new ol.source.TileWMS({
+                    url: this.wmsParams.getUrl(),
+                    params: this.wmsParams.getParams(),
+                    serverType: 'geoserver'
+                })
+            })
+        ];
+    } else if (type === 'XYZ') {
+        return [
+            new ol.layer.Tile({
+                source: new ol.source.XYZ(this.xyzParams),
+                projection: new ol.proj.Projection(this.projections.openlayers)
+            })
+        ];
+    }
+    return [
+        new ol.layer.Tile({
+            source: new ol.source.BingMaps({
+                imagerySet: bingImagerySets[type],
+                key: this.bingMapsApiKey,
+                projection: new ol.proj.Projection(this.projections.openlayers)
+            })
+        })
+    ];
 };
 
 /**
@@ -401,7 +414,7 @@ JSMapView.prototype.setMapType = function (newType) {
 JSMapView.prototype.getCoordinateLine = function (name) {
     var coordinateLine = this.coordinateLines[name];
     if (!coordinateLine) {
-        coordinateLine = new CoordinateLine(this.projections);
+        coordinateLine = new CoordinateLine(this.projections, this.lineStyles);
         this.coordinateLines[name] = coordinateLine;
         this.javaConnector.debug("created CoordinateLine object named " + name);
     }
@@ -424,6 +437,25 @@ JSMapView.prototype.showCoordinateLine = function (name) {
     }
 };
 
+/**
+ * shows several coordinateLines by adding their features to the source in one call.
+ *
+ * @param {string} names the comma separated names of the coordinateLines
+ */
+JSMapView.prototype.showCoordinateLines = function (names) {
+    var features = [];
+    var nameArray = names.split(',');
+    for (var i = 0; i < nameArray.length; i++) {
+        var coordinateLine = this.coordinateLines[nameArray[i]];
+        if (coordinateLine && !coordinateLine.getOnMap()) {
+            features.push(coordinateLine.getFeature());
+            coordinateLine.setOnMap(true);
+        }
+    }
+    this.sourceFeatures.addFeatures(features);
+    this.javaConnector.debug("showed " + features.length + " CoordinateLine objects");
+};
+
 /**
  * hides a coordinateLine.
  *
@@ -448,93 +480,164 @@ JSMapView.prototype.removeCoordinateLine = function (name) {
     this.javaConnector.debug("should delete CoordinateLine object named " + name);
     if (this.coordinateLines[name]) {
         this.hideCoordinateLine(name);
+        this.coordinateLines[name].releaseStyle();
         delete this.coordinateLines[name];
         this.javaConnector.debug("deleted CoordinateLine object named " + name);
     }
 };
 
+/**
+ * sets up the event handling for markers and labels. Instead of handlers on every element there is one listener per
+ * event type on the map's container for overlays that stop events, which contains the elements of the markers and
+ * labels. The marker or label is found from the event target.
+ */
+JSMapView.prototype.initMapObjectEvents = function () {
+    var container = this.map.getOverlayContainerStopEvent();
+    // javaConnector method suffixes for the events
+    var events = {
+        mousedown: 'MouseDown',
+        mouseup: 'MouseUp',
+        click: 'Clicked',
+        dblclick: 'DoubleClicked',
+        contextmenu: 'RightClicked'
+    };
+    Object.keys(events).forEach(function (type) {
+        container.addEventListener(type, (function (evt) {
+            var element = this.mapObjectElement(evt.target);
+            if (element) {
+                this.javaConnector[element.getAttribute('data-mapjfx') + events[type]](element.id);
+                evt.stopPropagation();
+                evt.preventDefault();
+            }
+        }).bind(this));
+    }, this);
+    // enter and exit only when the pointer crosses the element's border, not when moving between its children
+    container.addEventListener('mouseover', (function (evt) {
+        var element = this.mapObjectElement(evt.target);
+        if (element && element !== this.mapObjectElement(evt.relatedTarget)) {
+            this.javaConnector[element.getAttribute('data-mapjfx') + 'Entered'](element.id);
+            evt.stopPropagation();
+            evt.preventDefault();
+        }
+    }).bind(this));
+    container.addEventListener('mouseout', (function (evt) {
+        var element = this.mapObjectElement(evt.target);
+        if (element && element !== this.mapObjectElement(evt.relatedTarget)) {
+            this.javaConnector[element.getAttribute('data-mapjfx') + 'Exited'](element.id);
+            evt.stopPropagation();
+            evt.preventDefault();
+        }
+    }).bind(this));
+    container.addEventListener('wheel', (function (evt) {
+        if (this.mapObjectElement(evt.target)) {
+            this.javaConnector.wheelEvent(evt.deltaY);
+            evt.stopPropagation();
+            evt.preventDefault();
+        }
+    }).bind(this));
+    container.addEventListener('mousemove', (function (evt) {
+        if (this.mapObjectElement(evt.target)) {
+            var coordinate = this.projections.cToWGS84(this.map.getEventCoordinate(evt));
+            // lat/lon reversion
+            this.javaConnector.pointerMovedTo(coordinate[1], coordinate[0]);
+            evt.stopPropagation();
+            evt.preventDefault();
+        }
+    }).bind(this));
+    container.addEventListener('dragstart', (function (evt) {
+        if (this.mapObjectElement(evt.target)) {
+            evt.preventDefault();
+        }
+    }).bind(this));
+};
+
+/**
+ * finds the element of a marker or label that contains an event target.
+ *
+ * @param {Node} target the event target
+ * @return {Element} the element of the marker or label, or null
+ */
+JSMapView.prototype.mapObjectElement = function (target) {
+    var node = target;
+    while (node && node.nodeType === Node.ELEMENT_NODE) {
+        if (node.hasAttribute('data-mapjfx')) {
+            return node;
+        }
+        node = node.parentNode;
+    }
+    return null;
+};
+
+/**
+ * registers an image for markers. The image is loaded once, markers refer to it by its id and get a copy of the
+ * loaded element, so that all markers with the same image share the loaded and decoded image data. Markers that were
+ * added with this image id before get the image now.
+ *
+ * @param {string} imageId the id of the image
+ * @param {string} url the url of the image, normally a data url
+ */
+JSMapView.prototype.registerMarkerImage = function (imageId, url) {
+    if (!this.markerImages[imageId]) {
+        var image = document.createElement('img');
+        image.onload = (function () {
+            this.javaConnector.debug('marker image ' + imageId + ' loaded');
+        }).bind(this);
+        image.onerror = (function () {
+            this.javaConnector.debug('marker image ' + imageId + ' load error');
+        }).bind(this);
+        image.src = url;
+        this.markerImages[imageId] = image;
+        var pending = this.pendingMarkerImages[imageId];
+        if (pending) {
+            delete this.pendingMarkerImages[imageId];
+            for (var i = 0; i < pending.length; i++) {
+                pending[i].src = url;
+            }
+        }
+    }
+};
+
+/**
+ * removes all registered marker images, called when all markers were removed.
+ */
+JSMapView.prototype.clearMarkerImages = function () {
+    this.markerImages = {};
+    this.pendingMarkerImages = {};
+};
+
 /**
  * adds a marker to the map
  * @param {string} name the name of the marker. must be unique within all markers and labels.
- * @param {string} url the url of the marker's image
+ * @param {string} imageId the id of the marker's image which must be registered with registerMarkerImage
  * @param {number} latitude the latitude of the marker's position
  * @param {number} longitude the longitude of the marker's position
  * @param {number} offsetX x-offset of the top left point of the image to the coordinate
  * @param {number} offsetY y-offset of the top left point of the image to the coordinate
  */
-JSMapView.prototype.addMarker = function (name, url, latitude, longitude, offsetX, offsetY) {
+JSMapView.prototype.addMarker = function (name, imageId, latitude, longitude, offsetX, offsetY) {
     var marker = this.mapObjects[name];
     if (!marker) {
         marker = new MapObject(this.projections.cFromWGS84([longitude, latitude]));
         this.javaConnector.debug('created Marker object named ' + name);
 
-        // add a new <img> element to <div id='markers'>
+        // add a copy of the registered <img> element to <div id='markers'>
         var markersElement = document.getElementById('markers');
-        var imgElement = document.createElement('img');
+        var markerImage = this.markerImages[imageId];
+        var imgElement;
+        if (markerImage) {
+            imgElement = markerImage.cloneNode(false);
+        } else {
+            imgElement = document.createElement('img');
+            (this.pendingMarkerImages[imageId] = this.pendingMarkerImages[imageId] || []).push(imgElement);
+            marker.pendingImageId = imageId;
+        }
         markersElement.appendChild(imgElement);
 
         imgElement.setAttribute('id', name);
         imgElement.setAttribute('alt', name);
         imgElement.setAttribute('draggable', 'false');
-        imgElement.ondragstart = function () {
-            return false;
-        };
-        imgElement.onload = (function () {
-            this.javaConnector.debug('image loaded from ' + url);
-        }).bind(this);
-        imgElement.onerror = (function () {
-            this.javaConnector.debug('image load error from ' + url);
-        }).bind(this);
-        imgElement.src = url;
-        this.javaConnector.debug('started loading img from ' + url);
-
-        imgElement.onmousedown = (function (evt) {
-            this.javaConnector.markerMouseDown(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        imgElement.onmouseup = (function (evt) {
-            this.javaConnector.markerMouseUp(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        imgElement.onclick = (function (evt) {
-            this.javaConnector.markerClicked(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        imgElement.ondblclick = (function (evt) {
-            this.javaConnector.markerDoubleClicked(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        imgElement.oncontextmenu = (function (evt) {
-            this.javaConnector.markerRightClicked(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        imgElement.onmouseover = (function (evt) {
-            this.javaConnector.markerEntered(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        imgElement.onmouseout = (function (evt) {
-            this.javaConnector.markerExited(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        imgElement.onwheel = (function (evt) {
-            this.javaConnector.wheelEvent(evt.deltaY);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        imgElement.onmousemove = (function (evt) {
-            var coordinate = this.projections.cToWGS84(this.map.getEventCoordinate(evt));
-            // lat/lon reversion
-            this.javaConnector.pointerMovedTo(coordinate[1], coordinate[0]);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
+        // events are handled by the listeners on the overlay container, see initMapObjectEvents
+        imgElement.setAttribute('data-mapjfx', 'marker');
 
         var overlay = new ol.Overlay({
             offset: [offsetX, offsetY],
@@ -573,54 +676,8 @@ JSMapView.prototype.addLabel = function (name, text, cssClass, latitude, longitu
         labelElement.setAttribute('id', name);
         labelElement.setAttribute("class", "mapview-label " + cssClass);
         labelElement.innerHTML = text;
-
-        labelElement.onmousedown = (function (evt) {
-            this.javaConnector.labelMouseDown(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        labelElement.onmouseup = (function (evt) {
-            this.javaConnector.labelMouseUp(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        labelElement.onclick = (function (evt) {
-            this.javaConnector.labelClicked(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        labelElement.ondblclick = (function (evt) {
-            this.javaConnector.labelDoubleClicked(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        labelElement.oncontextmenu = (function (evt) {
-            this.javaConnector.labelRightClicked(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        labelElement.onmouseover = (function (evt) {
-            this.javaConnector.labelEntered(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        labelElement.onmouseout = (function (evt) {
-            this.javaConnector.labelExited(name);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        labelElement.onwheel = (function (evt) {
-            this.javaConnector.wheelEvent(evt.deltaY);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
-        labelElement.onmousemove = (function (evt) {
-            var coordinate = this.projections.cToWGS84(this.map.getEventCoordinate(evt));
-            // lat/lon reversion
-            this.javaConnector.pointerMovedTo(coordinate[1], coordinate[0]);
-            evt.stopPropagation();
-            evt.preventDefault();
-        }).bind(this);
+        // events are handled by the listeners on the overlay container, see initMapObjectEvents
+        labelElement.setAttribute('data-mapjfx', 'label');
 
         var overlay = new ol.Overlay({
             offset: [offsetX, offsetY],
@@ -643,7 +700,10 @@ JSMapView.prototype.addLabel = function (name, text, cssClass, latitude, longitu
  */
 JSMapView.prototype.moveMapObject = function (name, latitude, longitude) {
     var mapObject = this.mapObjects[name];
-    if (mapObject) {
+    if (mapObject && mapObject.isCanvasLabel) {
+        this.moveCanvasLabel(mapObject, this.projections.cFromWGS84([longitude, latitude]));
+        this.javaConnector.debug('moved ' + name);
+    } else if (mapObject) {
         mapObject.setPosition(this.projections.cFromWGS84([longitude, latitude]));
         if (mapObject.getOnMap()) {
             var overlay = mapObject.getOverlay();
@@ -662,13 +722,18 @@ JSMapView.prototype.moveMapObject = function (name, latitude, longitude) {
 JSMapView.prototype.removeMapObject = function (name) {
     this.javaConnector.debug('should remove ' + name);
     var mapObject = this.mapObjects[name];
-    if (mapObject) {
+    if (mapObject && mapObject.isCanvasLabel) {
+        this.hideCanvasLabel(mapObject);
+        delete this.mapObjects[name];
+        this.javaConnector.debug('removed ' + name);
+    } else if (mapObject) {
         this.hideMapObject(mapObject);
         var overlay = mapObject.getOverlay();
         if (overlay) {
             this.map.removeOverlay(overlay);
             var element = overlay.getElement();
             if (element) {
+                this.removePendingMarkerImage(mapObject.pendingImageId, element);
                 delete element;
             }
             delete overlay;
@@ -678,6 +743,26 @@ JSMapView.prototype.removeMapObject = function (name) {
     }
 };
 
+/**
+ * removes the element of a removed marker from the elements that wait for the registration of their image, so that
+ * they are not kept until the image is registered.
+ *
+ * @param {string} imageId the id of the marker's image, undefined if the image was registered when the marker was added
+ * @param {Element} element the marker's element
+ */
+JSMapView.prototype.removePendingMarkerImage = function (imageId, element) {
+    var pending = imageId !== undefined ? this.pendingMarkerImages[imageId] : undefined;
+    if (pending) {
+        var index = pending.indexOf(element);
+        if (index >= 0) {
+            pending.splice(index, 1);
+        }
+        if (pending.length === 0) {
+            delete this.pendingMarkerImages[imageId];
+        }
+    }
+};
+
 /**
  * hides a MapObject from the map. the overlay is set to an undefined position which removes it from the map
  * @param {string} name the name of the MapObject
@@ -685,7 +770,9 @@ JSMapView.prototype.removeMapObject = function (name) {
 JSMapView.prototype.hideMapObject = function (name) {
     this.javaConnector.debug("should hide " + name);
     var mapObject = this.mapObjects[name];
-    if (mapObject && mapObject.getOnMap()) {
+    if (mapObject && mapObject.isCanvasLabel) {
+        this.hideCanvasLabel(mapObject);
+    } else if (mapObject && mapObject.getOnMap()) {
         var overlay = mapObject.getOverlay();
         if (overlay) {
             overlay.setPosition(undefined);
@@ -704,7 +791,9 @@ JSMapView.prototype.hideMapObject = function (name) {
 JSMapView.prototype.rotateMapObject = function (name, angle) {
     this.javaConnector.debug("should rotate " + name + " to " + angle);
     let mapObject = this.mapObjects[name];
-    if (mapObject) {
+    if (mapObject && mapObject.isCanvasLabel) {
+        this.rotateCanvasLabel(mapObject, angle);
+    } else if (mapObject) {
         let element = mapObject.getElement();
         let previousTransform = element.style["transform"];
         let newTransform = previousTransform.replace(/rotate\(.*?\)/, '').trim() + ' rotate(' + angle + 'deg)';
@@ -719,7 +808,9 @@ JSMapView.prototype.rotateMapObject = function (name, angle) {
 JSMapView.prototype.showMapObject = function (name) {
     this.javaConnector.debug("should show " + name);
     var mapObject = this.mapObjects[name];
-    if (mapObject && !mapObject.getOnMap()) {
+    if (mapObject && mapObject.isCanvasLabel) {
+        this.showCanvasLabel(mapObject);
+    } else if (mapObject && !mapObject.getOnMap()) {
         var overlay = mapObject.getOverlay();
         if (overlay) {
             overlay.setPosition(mapObject.getPosition());
@@ -732,7 +823,9 @@ JSMapView.prototype.showMapObject = function (name) {
 JSMapView.prototype.setLabelCss = function (name, cssClass) {
     this.javaConnector.debug("should css of " + name + " to " + cssClass);
     var mapLabel = this.mapObjects[name];
-    if (mapLabel) {
+    if (mapLabel && mapLabel.isCanvasLabel) {
+        this.setCanvasLabelCss(mapLabel, cssClass);
+    } else if (mapLabel) {
         var overlay = mapLabel.getOverlay();
         if (overlay) {
             var element = overlay.getElement();
@@ -796,6 +889,13 @@ JSMapView.prototype.addWMSParamsParams = function (key, value) {
  * @param browserEvent the browser event
  */
 JSMapView.prototype.contextmenu = function (browserEvent) {
+    if (this.canvasLabelLayer) {
+        var label = this.canvasLabelAt(this.map.getEventPixel(browserEvent));
+        if (label) {
+            this.javaConnector.labelRightClicked(label);
+            return;
+        }
+    }
     var coordinate = this.projections.cToWGS84(this.map.getEventCoordinate(browserEvent));
     // lat/lon reversion
     this.javaConnector.contextClickAt(coordinate[1], coordinate[0]);
@@ -831,6 +931,20 @@ function getJSMapView() {
     return _jsMapView;
 }
 
+/**
+ * handshake with java, called after java has set the _javaConnector. The javaConnector is told that the Javascript
+ * code is ready as soon as the page with all scripts is loaded.
+ */
+function connectJavaConnector() {
+    if (document.readyState === 'complete') {
+        _javaConnector.jsReady();
+    } else {
+        window.addEventListener('load', function () {
+            _javaConnector.jsReady();
+        });
+    }
+}
+
 
 //==================================================================================================================
 // Map circle
@@ -858,8 +972,6 @@ JSMapView.prototype.showCircle = function (name) {
     if (circle && !circle.getOnMap()) {
         var feature = circle.getFeature()
 
-        this.javaConnector.debug(" - center: " + circle.getCenter());
-        this.javaConnector.debug(" - radius: " + circle.getRadius());
         this.javaConnector.debug(" - feature: " + JSON.stringify(feature));
 
         this.sourceFeatures.addFeature(feature);
@@ -896,5 +1008,3 @@ JSMapView.prototype.removeCircle = function (name) {
         this.javaConnector.debug("deleted Circle object named " + name);
     }
 };
-
-
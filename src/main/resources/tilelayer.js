@@ -0,0 +1,159 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/*******************************************************************************************************************
+ * tile layer functions of the JSMapView. This module is loaded into the page when the first tile layer is added.
+ */
+
+/**
+ * creates a tile layer from a XYZ or WMS source. The layer is part of the map's layer group, it is placed above the
+ * layers of the map type and below the feature layer, ordered by its z-index among the other tile layers.
+ *
+ * @param {string} name the name of the tile layer
+ * @param {string} sourceJson JSON with the type, the cache size and the options of the source
+ * @param {string} optionsJson JSON with opacity, zIndex, minZoom, maxZoom and preload of the layer
+ */
+JSMapView.prototype.addTileLayer = function (name, sourceJson, optionsJson) {
+    if (!this.tileLayers[name]) {
+        var sourceDef = JSON.parse(sourceJson);
+        var source;
+        if (sourceDef.type === 'WMS') {
+            source = new ol.source.TileWMS({
+                url: sourceDef.url,
+                params: sourceDef.params,
+                serverType: 'geoserver',
+                cacheSize: sourceDef.cacheSize
+            });
+        } else {
+            var xyzOptions = sourceDef.options;
+            if (xyzOptions.cacheSize === undefined) {
+                xyzOptions.cacheSize = sourceDef.cacheSize;
+            }
+            source = new ol.source.XYZ(xyzOptions);
+        }
+        var tileLayer = {
+            layer: new ol.layer.Tile({
+                source: source,
+                visible: false
+            }),
+            visible: false,
+            opacity: 1,
+            zIndex: 0
+        };
+        this.tileLayers[name] = tileLayer;
+        this.applyTileLayerOptions(tileLayer, JSON.parse(optionsJson));
+        this.insertTileLayer(tileLayer);
+        this.javaConnector.debug("created tile layer " + name);
+    }
+};
+
+/**
+ * inserts the layer of a tile layer into the map's layer group, after the last tile layer with a z-index less than or
+ * equal to its own and before the feature layer.
+ *
+ * @param {object} tileLayer the tile layer
+ */
+JSMapView.prototype.insertTileLayer = function (tileLayer) {
+    var collection = this.layerGroup.getLayers();
+    var index = collection.getLength() - 1;
+    for (var i = 0; i < collection.getLength() - 1; i++) {
+        var zIndex = collection.item(i).get('tileLayerZIndex');
+        if (zIndex !== undefined && zIndex > tileLayer.zIndex) {
+            index = i;
+            break;
+        }
+    }
+    tileLayer.layer.set('tileLayerZIndex', tileLayer.zIndex);
+    collection.insertAt(index, tileLayer.layer);
+};
+
+/**
+ * sets the options of a tile layer object and its ol layer. The min and max zoom have OpenLayers skip the layer
+ * outside of the zoom range; a layer with opacity 0 is not rendered either.
+ *
+ * @param {object} tileLayer the tile layer
+ * @param {object} options opacity, zIndex, minZoom, maxZoom and preload
+ */
+JSMapView.prototype.applyTileLayerOptions = function (tileLayer, options) {
+    var layer = tileLayer.layer;
+    tileLayer.opacity = options.opacity;
+    tileLayer.zIndex = options.zIndex;
+    layer.setOpacity(options.opacity);
+    layer.setMinZoom(options.minZoom);
+    layer.setMaxZoom(options.maxZoom);
+    layer.setPreload(options.preload);
+    layer.setVisible(tileLayer.visible && tileLayer.opacity > 0);
+};
+
+/**
+ * changes the options of a tile layer, moving it in the stack when the z-index changed.
+ *
+ * @param {string} name the name of the tile layer
+ * @param {string} optionsJson JSON with opacity, zIndex, minZoom, maxZoom and preload of the layer
+ */
+JSMapView.prototype.setTileLayerOptions = function (name, optionsJson) {
+    var tileLayer = this.tileLayers[name];
+    if (tileLayer) {
+        var oldZIndex = tileLayer.zIndex;
+        this.applyTileLayerOptions(tileLayer, JSON.parse(optionsJson));
+        if (tileLayer.zIndex !== oldZIndex) {
+            this.layerGroup.getLayers().remove(tileLayer.layer);
+            this.insertTileLayer(tileLayer);
+        }
+    }
+};
+
+/**
+ * shows a tile layer.
+ *
+ * @param {string} name the name of the tile layer
+ */
+JSMapView.prototype.showTileLayer = function (name) {
+    var tileLayer = this.tileLayers[name];
+    if (tileLayer) {
+        tileLayer.visible = true;
+        tileLayer.layer.setVisible(tileLayer.opacity > 0);
+    }
+};
+
+/**
+ * hides a tile layer.
+ *
+ * @param {string} name the name of the tile layer
+ */
+JSMapView.prototype.hideTileLayer = function (name) {
+    var tileLayer = this.tileLayers[name];
+    if (tileLayer) {
+        tileLayer.visible = false;
+        tileLayer.layer.setVisible(false);
+    }
+};
+
+/**
+ * removes a tile layer.
+ *
+ * @param {string} name the name of the tile layer
+ */
+JSMapView.prototype.removeTileLayer = function (name) {
+    var tileLayer = this.tileLayers[name];
+    if (tileLayer) {
+        this.layerGroup.getLayers().remove(tileLayer.layer);
+        tileLayer.layer.getSource().dispose();
+        tileLayer.layer.dispose();
+        delete this.tileLayers[name];
+        this.javaConnector.debug("deleted tile layer " + name);
+    }
+};
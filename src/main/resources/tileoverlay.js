@@ -0,0 +1,140 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/*******************************************************************************************************************
+ * tile overlay functions of the JSMapView. This module is loaded into the page when the first tile overlay is added.
+ */
+
+/**
+ * creates a tile layer whose tiles are rendered in java. Like heatmaps, the layer is not part of the map's layer group
+ * with the base, tile and feature layers and is rendered on top of it. The tile load function asks java for the tile,
+ * java answers asynchronously by calling setOverlayTile.
+ *
+ * @param {string} name the name of the tile overlay
+ * @param {number} tileSize the tile size in pixels
+ * @param {number} revision the current revision of the overlay's data
+ */
+JSMapView.prototype.addTileOverlay = function (name, tileSize, revision) {
+    if (!this.tileOverlays[name]) {
+        var overlay = {
+            // tiles waiting for their data URL by their src, which is revision/z/x/y
+            pending: {},
+            layer: {}
+        };
+        var source = new ol.source.XYZ({
+            projection: 'EPSG:3857',
+            tileSize: tileSize,
+            tileUrlFunction: function (tileCoord) {
+                return overlay.revision + '/' + tileCoord[0] + '/' + tileCoord[1] + '/' + tileCoord[2];
+            },
+            tileLoadFunction: (function (tile, src) {
+                var parts = src.split('/');
+                var tiles = overlay.pending[src];
+                if (tiles) {
+                    tiles.push(tile);
+                } else {
+                    overlay.pending[src] = [tile];
+                    this.javaConnector.tileRequested(name, Number(parts[0]), Number(parts[1]), Number(parts[2]),
+                        Number(parts[3]));
+                }
+            }).bind(this)
+        });
+        overlay.revision = revision;
+        overlay.layer = new ol.layer.Tile({
+            source: source
+        });
+        this.tileOverlays[name] = overlay;
+        this.javaConnector.debug("created tile overlay " + name);
+    }
+};
+
+/**
+ * sets the image of a tile that was requested from java.
+ *
+ * @param {string} name the name of the tile overlay
+ * @param {number} revision the revision the tile was requested for
+ * @param {number} z zoom level of the tile
+ * @param {number} x column of the tile
+ * @param {number} y row of the tile
+ * @param {string} url data URL of the tile image
+ */
+JSMapView.prototype.setOverlayTile = function (name, revision, z, x, y, url) {
+    var overlay = this.tileOverlays[name];
+    if (overlay) {
+        var src = revision + '/' + z + '/' + x + '/' + y;
+        var tiles = overlay.pending[src];
+        if (tiles) {
+            delete overlay.pending[src];
+            for (var i = 0; i < tiles.length; i++) {
+                tiles[i].getImage().src = url;
+            }
+        }
+    }
+};
+
+/**
+ * loads the tiles of an overlay again after the data has changed in java.
+ *
+ * @param {string} name the name of the tile overlay
+ * @param {number} revision the new revision of the overlay's data
+ */
+JSMapView.prototype.refreshTileOverlay = function (name, revision) {
+    var overlay = this.tileOverlays[name];
+    if (overlay) {
+        overlay.revision = revision;
+        overlay.pending = {};
+        var source = overlay.layer.getSource();
+        // a new key has the source discard the cached tiles
+        source.setTileUrlFunction(source.getTileUrlFunction(), 'revision-' + revision);
+    }
+};
+
+/**
+ * shows a tile overlay.
+ *
+ * @param {string} name the name of the tile overlay
+ */
+JSMapView.prototype.showTileOverlay = function (name) {
+    var overlay = this.tileOverlays[name];
+    if (overlay) {
+        overlay.layer.setMap(this.map);
+    }
+};
+
+/**
+ * hides a tile overlay.
+ *
+ * @param {string} name the name of the tile overlay
+ */
+JSMapView.prototype.hideTileOverlay = function (name) {
+    var overlay = this.tileOverlays[name];
+    if (overlay) {
+        overlay.layer.setMap(null);
+    }
+};
+
+/**
+ * removes a tile overlay.
+ *
+ * @param {string} name the name of the tile overlay
+ */
+JSMapView.prototype.removeTileOverlay = function (name) {
+    if (this.tileOverlays[name]) {
+        this.hideTileOverlay(name);
+        delete this.tileOverlays[name];
+        this.javaConnector.debug("deleted tile overlay " + name);
+    }
+};
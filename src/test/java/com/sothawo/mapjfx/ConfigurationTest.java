@@ -33,6 +33,15 @@ public class ConfigurationTest {
         assertThat(configuration.getProjection()).isEqualTo(Projection.WEB_MERCATOR);
         assertThat(configuration.getInteractive()).isTrue();
         assertThat(configuration.showZoomControls()).isTrue();
+        assertThat(configuration.simplifyCoordinateLines()).isFalse();
+        assertThat(configuration.canvasLabels()).isFalse();
+        assertThat(configuration.maxRetainedMapTypes()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldNotAcceptLessThanOneRetainedMapType() {
+        assertThatThrownBy(() -> Configuration.builder().maxRetainedMapTypes(0))
+            .isInstanceOf(IllegalArgumentException.class);
     }
 
     @Test
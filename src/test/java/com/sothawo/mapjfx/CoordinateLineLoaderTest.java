@@ -0,0 +1,159 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class CoordinateLineLoaderTest {
+
+    private static final Path directory = FileSystems.getDefault().getPath("./target/coordinateline-loader");
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Files.createDirectories(directory);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try (var files = Files.list(directory)) {
+            for (final Path path : (Iterable<Path>) files::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void loadCsvWithHeaderAndExtent() throws Exception {
+        final Path path = directory.resolve("track.csv");
+        Files.writeString(path, "lat,lon,name\r\n49.0,8.4,start\r\n-49.5, 8.25 ,\"middle\"\r\n49.25,-8.125\r\n");
+
+        final CoordinateLineLoader.Result result = new CoordinateLineLoader().load(path);
+
+        assertThat(result.getCoordinateLine().toLatLonArray()).containsExactly(49.0, 8.4, -49.5, 8.25, 49.25, -8.125);
+        assertThat(result.getNumCoordinatesRead()).isEqualTo(3);
+        assertThat(result.getExtent()).contains(Extent.forBounds(-49.5, -8.125, 49.25, 8.4));
+    }
+
+    @Test
+    public void loadCsvWithColumnsAndSeparator() throws Exception {
+        final Path path = directory.resolve("track.txt");
+        Files.writeString(path, "2021-05-01T10:00:00;8.4;49.0\n2021-05-01T10:00:01;8.5;49.1\nno;numbers;here\n");
+
+        final CoordinateLineLoader.Result result = new CoordinateLineLoader()
+            .setCsvSeparator(';')
+            .setCsvColumns(2, 1)
+            .load(path);
+
+        assertThat(result.getCoordinateLine().toLatLonArray()).containsExactly(49.0, 8.4, 49.1, 8.5);
+    }
+
+    @Test
+    public void loadCsvAcrossMappedWindows() throws Exception {
+        final Random random = new Random(42);
+        final StringBuilder csv = new StringBuilder();
+        final double[] expected = new double[2000];
+        for (int i = 0; i < expected.length; i += 2) {
+            expected[i] = Math.round((random.nextDouble() * 180 - 90) * 1e7) / 1e7;
+            expected[i + 1] = Math.round((random.nextDouble() * 360 - 180) * 1e7) / 1e7;
+            csv.append(expected[i]).append(',').append(expected[i + 1]).append('\n');
+        }
+        final Path path = directory.resolve("random.csv");
+        Files.writeString(path, csv);
+
+        final CoordinateLineLoader loader = new CoordinateLineLoader();
+        loader.setWindowSize(1000);
+
+        assertThat(loader.load(path).getCoordinateLine().toLatLonArray()).containsExactly(expected);
+    }
+
+    @Test
+    public void loadGeoJson() throws Exception {
+        final Path path = directory.resolve("track.geojson");
+        Files.writeString(path, "{\"type\":\"FeatureCollection\",\"features\":[" +
+            "{\"type\":\"Feature\",\"properties\":{\"name\":\"coordinates\",\"x\":\"\\\"coordinates\\\"\"}," +
+            "\"bbox\":[1.0,2.0,3.0,4.0]," +
+            "\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[8.4, 49.0, 115.0], [8.5,49.1]]}}," +
+            "{\"type\":\"Feature\",\"geometry\":{\"type\":\"MultiLineString\",\"coordinates\":" +
+            "[[[8.6,49.2]],[[-1.5e-1,4.9E1]]]}}]}");
+
+        final CoordinateLineLoader.Result result = new CoordinateLineLoader().load(path);
+
+        assertThat(result.getCoordinateLine().toLatLonArray())
+            .containsExactly(49.0, 8.4, 49.1, 8.5, 49.2, 8.6, 49.0, -0.15);
+    }
+
+    @Test
+    public void invalidGeoJsonIsRejected() {
+        final ByteArrayInputStream in =
+            new ByteArrayInputStream("{\"coordinates\":[[8.4,49.0}".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> new CoordinateLineLoader().load(in, CoordinateLineLoader.Format.GEOJSON))
+            .isInstanceOf(java.io.IOException.class);
+    }
+
+    @Test
+    public void loadGpxFromStream() throws Exception {
+        final String gpx = "<?xml version=\"1.0\"?><gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\">" +
+            "<wpt lat=\"1.0\" lon=\"1.0\"/>" +
+            "<trk><trkseg><trkpt lat=\"49.0\" lon=\"8.4\"><ele>115</ele></trkpt><trkpt lat=\"49.1\" lon=\"8.5\"/>" +
+            "</trkseg></trk><rte><rtept lat=\"49.2\" lon=\"8.6\"/></rte></gpx>";
+
+        final CoordinateLineLoader.Result result = new CoordinateLineLoader()
+            .load(new ByteArrayInputStream(gpx.getBytes(StandardCharsets.UTF_8)), CoordinateLineLoader.Format.GPX);
+
+        assertThat(result.getCoordinateLine().toLatLonArray()).containsExactly(49.0, 8.4, 49.1, 8.5, 49.2, 8.6);
+    }
+
+    @Test
+    public void closePointsAreDroppedButTheLastIsKept() throws Exception {
+        final StringBuilder csv = new StringBuilder();
+        for (int i = 0; i <= 100; i++) {
+            // about 1.1 m per step
+            csv.append(49.0 + i * 0.00001).append(",8.4\n");
+        }
+
+        final CoordinateLineLoader.Result result = new CoordinateLineLoader()
+            .setMinDistance(10.0)
+            .load(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),
+                CoordinateLineLoader.Format.CSV);
+
+        final CoordinateLine coordinateLine = result.getCoordinateLine();
+        assertThat(result.getNumCoordinatesRead()).isEqualTo(101);
+        assertThat(coordinateLine.getNumCoordinates()).isBetween(11, 13);
+        assertThat(coordinateLine.getLatitude(coordinateLine.getNumCoordinates() - 1)).isEqualTo(49.001);
+        assertThat(result.getExtent().orElseThrow().getMax().latitude()).isEqualTo(49.001);
+    }
+
+    @Test
+    public void unknownExtensionIsRejected() {
+        assertThatThrownBy(() -> new CoordinateLineLoader().load(directory.resolve("track.bin")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Simple benchmark for the simplification of a long track, run with the main method. Compares a single threaded pool
+ * with the common pool.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com)
+ */
+public class CoordinateLineSimplificationBenchmark {
+
+    private static final int NUM_POINTS = 200_000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        final double[] latLon = CoordinateLineSimplificationTest.randomTrack(new Random(42), NUM_POINTS);
+        final ForkJoinPool singleThreaded = new ForkJoinPool(1);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                for (final ForkJoinPool pool : new ForkJoinPool[]{singleThreaded, ForkJoinPool.commonPool()}) {
+                    final long start = System.nanoTime();
+                    final CoordinateLineSimplification simplification =
+                        CoordinateLineSimplification.compute(latLon, pool);
+                    final long computeNanos = System.nanoTime() - start;
+                    final int[] zoom5 = simplification.indicesForZoom(5);
+                    final int[] zoom12 = simplification.indicesForZoom(12);
+                    System.out.printf("parallelism=%2d: %8.1f Mpoints/s, zoom 5: %6d points, zoom 12: %6d points%n",
+                        pool.getParallelism(), NUM_POINTS / (computeNanos / 1e3), zoom5.length, zoom12.length);
+                }
+            }
+        } finally {
+            singleThreaded.shutdown();
+        }
+    }
+}
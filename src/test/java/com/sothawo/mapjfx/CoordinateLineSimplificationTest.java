@@ -0,0 +1,200 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * @author P.J. Meisch (pj.meisch@sothawo.com)
+ */
+public class CoordinateLineSimplificationTest {
+
+    /**
+     * creates a random walk in the area of Karlsruhe.
+     */
+    static double[] randomTrack(final Random random, final int numPoints) {
+        final double[] latLon = new double[numPoints * 2];
+        double latitude = 49.0;
+        double longitude = 8.4;
+        for (int i = 0; i < numPoints; i++) {
+            latitude += (random.nextDouble() - 0.5) * 0.0005;
+            longitude += (random.nextDouble() - 0.5) * 0.0005;
+            latLon[2 * i] = latitude;
+            latLon[2 * i + 1] = longitude;
+        }
+        return latLon;
+    }
+
+    @Test
+    public void straightLineIsReducedToEndPoints() {
+        final double[] latLon = new double[200];
+        for (int i = 0; i < 100; i++) {
+            latLon[2 * i] = 49.0;
+            latLon[2 * i + 1] = 8.0 + i * 0.001;
+        }
+
+        final CoordinateLineSimplification simplification =
+            CoordinateLineSimplification.compute(latLon, ForkJoinPool.commonPool());
+
+        assertThat(simplification.indicesForZoom(10)).containsExactly(0, 99);
+    }
+
+    @Test
+    public void fullGeometryAtHighZoom() {
+        final CoordinateLineSimplification simplification =
+            CoordinateLineSimplification.compute(randomTrack(new Random(1), 100), ForkJoinPool.commonPool());
+
+        assertThat(simplification.indicesForZoom(CoordinateLineSimplification.FULL_GEOMETRY_ZOOM)).isNull();
+    }
+
+    @Test
+    public void variantsAreCachedAndGrowWithZoom() {
+        final CoordinateLineSimplification simplification =
+            CoordinateLineSimplification.compute(randomTrack(new Random(2), 20_000), ForkJoinPool.commonPool());
+
+        final int[] zoom5 = simplification.indicesForZoom(5);
+        final int[] zoom12 = simplification.indicesForZoom(12);
+
+        assertThat(simplification.indicesForZoom(5)).isSameAs(zoom5);
+        assertThat(zoom5.length).isLessThan(zoom12.length);
+        assertThat(zoom12.length).isLessThan(20_000);
+        assertThat(zoom12).startsWith(0).endsWith(19_999).isSorted();
+    }
+
+    @Test
+    public void parallelResultMatchesClassicDouglasPeucker() {
+        final double[] latLon = randomTrack(new Random(3), 50_000);
+        final double tolerance = CoordinateLineSimplification.toleranceForZoom(11);
+
+        final int[] indices = CoordinateLineSimplification.compute(latLon, ForkJoinPool.commonPool()).filter(tolerance);
+
+        assertThat(indices).containsExactly(douglasPeucker(latLon, tolerance));
+    }
+
+    @Test
+    public void extendedSimplificationKeepsTheSignificanceOfTheCoveredPoints() {
+        final double[] latLon = randomTrack(new Random(4), 3_000);
+        final CoordinateLineSimplification head =
+            CoordinateLineSimplification.compute(Arrays.copyOf(latLon, 4_000), ForkJoinPool.commonPool());
+
+        final CoordinateLineSimplification extended =
+            head.extend(Arrays.copyOfRange(latLon, 3_998, 6_000), 0, ForkJoinPool.commonPool());
+
+        assertThat(extended.getFirst()).isEqualTo(0);
+        assertThat(extended.getNumPoints()).isEqualTo(3_000);
+        final int[] variant = extended.indicesForZoom(12);
+        assertThat(variant).startsWith(head.indicesForZoom(12)).contains(1_999).endsWith(2_999).isSorted();
+    }
+
+    @Test
+    public void extendingATrimmedLineDropsTheTrimmedPoints() {
+        final double[] latLon = randomTrack(new Random(5), 3_000);
+        final CoordinateLineSimplification head =
+            CoordinateLineSimplification.compute(Arrays.copyOf(latLon, 4_000), ForkJoinPool.commonPool());
+
+        final CoordinateLineSimplification extended =
+            head.extend(Arrays.copyOfRange(latLon, 3_998, 6_000), 500, ForkJoinPool.commonPool());
+
+        assertThat(extended.getFirst()).isEqualTo(500);
+        assertThat(extended.getNumPoints()).isEqualTo(2_500);
+        assertThat(extended.indicesForZoom(5)).startsWith(0).endsWith(2_499);
+    }
+
+    @Test
+    public void variantIsConvertedToTheCurrentCoordinates() {
+        final CoordinateLineSimplification simplification =
+            CoordinateLineSimplification.compute(randomTrack(new Random(6), 10), ForkJoinPool.commonPool(), 100);
+
+        // 3 coordinates trimmed since the calculation, 2 appended
+        final int[] indices = simplification.toLineIndices(new int[]{0, 2, 5, 9}, 103, 9);
+
+        assertThat(indices).containsExactly(0, 2, 6, 7, 8);
+    }
+
+    @Test
+    public void coordinateLineUpdatesTheSimplificationInTheBackground() {
+        final CoordinateLine coordinateLine = new CoordinateLine(randomTrack(new Random(7), 2_000));
+        assertThat(coordinateLine.getSimplification()).isNull();
+        assertThat(coordinateLine.isSimplificationOutdated()).isTrue();
+
+        final CompletableFuture<CoordinateLineSimplification> future =
+            coordinateLine.updateSimplification(ForkJoinPool.commonPool());
+        assertThat(coordinateLine.updateSimplification(ForkJoinPool.commonPool())).isNull();
+        coordinateLine.publishSimplification(future.join());
+        final CoordinateLineSimplification simplification = coordinateLine.getSimplification();
+        assertThat(simplification.getNumPoints()).isEqualTo(2_000);
+        assertThat(coordinateLine.isSimplificationOutdated()).isFalse();
+
+        coordinateLine.trimHead(100);
+        coordinateLine.appendCoordinates(randomTrack(new Random(8), CoordinateLineSimplification.MIN_TAIL_POINTS));
+        assertThat(coordinateLine.getSimplification()).isSameAs(simplification);
+        assertThat(coordinateLine.isSimplificationOutdated()).isTrue();
+
+        coordinateLine.publishSimplification(coordinateLine.updateSimplification(ForkJoinPool.commonPool()).join());
+        assertThat(coordinateLine.getSimplification().getFirst()).isEqualTo(100);
+        assertThat(coordinateLine.getSimplification().getNumPoints()).isEqualTo(coordinateLine.getNumCoordinates());
+    }
+
+    /**
+     * reference implementation, recursive with the tolerance.
+     */
+    private static int[] douglasPeucker(final double[] latLon, final double tolerance) {
+        final int numPoints = latLon.length / 2;
+        final double[] x = new double[numPoints];
+        final double[] y = new double[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            x[i] = 6_378_137.0 * Math.toRadians(latLon[2 * i + 1]);
+            y[i] = 6_378_137.0 * Math.log(Math.tan(Math.PI / 4 + Math.toRadians(latLon[2 * i]) / 2));
+        }
+        final List<Integer> kept = new ArrayList<>();
+        kept.add(0);
+        douglasPeucker(x, y, 0, numPoints - 1, tolerance * tolerance, kept);
+        kept.add(numPoints - 1);
+        return kept.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void douglasPeucker(final double[] x, final double[] y, final int first, final int last,
+                                       final double squaredTolerance, final List<Integer> kept) {
+        int index = -1;
+        double max = -1.0;
+        for (int i = first + 1; i < last; i++) {
+            final double dx = x[last] - x[first];
+            final double dy = y[last] - y[first];
+            final double px = x[i] - x[first];
+            final double py = y[i] - y[first];
+            final double t = Math.max(0.0, Math.min(1.0, (px * dx + py * dy) / (dx * dx + dy * dy)));
+            final double distance = (px - t * dx) * (px - t * dx) + (py - t * dy) * (py - t * dy);
+            if (distance > max) {
+                max = distance;
+                index = i;
+            }
+        }
+        if (index >= 0 && max >= squaredTolerance) {
+            douglasPeucker(x, y, first, index, squaredTolerance, kept);
+            kept.add(index);
+            douglasPeucker(x, y, index, last, squaredTolerance, kept);
+        }
+    }
+}
@@ -18,6 +18,9 @@ package com.sothawo.mapjfx;
 import javafx.scene.paint.Color;
 import org.junit.jupiter.api.Test;
 
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -104,4 +107,111 @@ public class CoordinateLineTest implements TestBase {
         coordinateLine.setClosed(true);
         assertThat(coordinateLine.isClosed()).isTrue();
     }
+
+    @Test
+    public void packedCoordinatesAreCopied() {
+        final double[] latLon = {49.0, 8.4, 49.1, 8.5};
+        final CoordinateLine coordinateLine = new CoordinateLine(latLon);
+        latLon[0] = 0.0;
+
+        assertThat(coordinateLine.getNumCoordinates()).isEqualTo(2);
+        assertThat(coordinateLine.getLatitude(0)).isEqualTo(49.0);
+        assertThat(coordinateLine.getLongitude(1)).isEqualTo(8.5);
+        assertThat(coordinateLine.toLatLonArray()).containsExactly(49.0, 8.4, 49.1, 8.5);
+    }
+
+    @Test
+    public void coordinatesFromDoubleBuffer() {
+        final DoubleBuffer buffer = DoubleBuffer.wrap(new double[]{1.0, 49.0, 8.4, 49.1, 8.5});
+        buffer.position(1);
+
+        final CoordinateLine coordinateLine = new CoordinateLine(buffer);
+
+        assertThat(buffer.position()).isEqualTo(1);
+        assertThat(coordinateLine.getCoordinateStream())
+            .containsExactly(new Coordinate(49.0, 8.4), new Coordinate(49.1, 8.5));
+    }
+
+    @Test
+    public void oddNumberOfValuesIsRejected() {
+        assertThatThrownBy(() -> new CoordinateLine(new double[]{1.0, 2.0, 3.0}))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void forEachCoordinateKeepsOrder() {
+        final CoordinateLine coordinateLine = new CoordinateLine(coordKarlsruheHarbour, coordKarlsruheStation);
+        final List<Coordinate> coordinates = new ArrayList<>();
+
+        coordinateLine.forEachCoordinate((lat, lon) -> coordinates.add(new Coordinate(lat, lon)));
+
+        assertThat(coordinates).containsExactly(coordKarlsruheHarbour, coordKarlsruheStation);
+    }
+
+    @Test
+    public void coordinatesCanBeAppendedAndTrimmed() {
+        final CoordinateLine coordinateLine = new CoordinateLine(new double[]{1.0, 2.0});
+        coordinateLine.appendCoordinate(3.0, 4.0).appendCoordinates(5.0, 6.0, 7.0, 8.0);
+        coordinateLine.appendCoordinates(List.of(Coordinate.of(9.0, 10.0)));
+
+        assertThat(coordinateLine.toLatLonArray())
+            .containsExactly(1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0, 10.0);
+
+        coordinateLine.trimHead(3);
+
+        assertThat(coordinateLine.getNumCoordinates()).isEqualTo(2);
+        assertThat(coordinateLine.getLatitude(0)).isEqualTo(7.0);
+        assertThat(coordinateLine.getLongitude(1)).isEqualTo(10.0);
+        assertThat(coordinateLine.getCoordinateStream()).containsExactly(Coordinate.of(7.0, 8.0), Coordinate.of(9.0, 10.0));
+    }
+
+    @Test
+    public void slidingWindowKeepsTheLatestCoordinates() {
+        final CoordinateLine coordinateLine = new CoordinateLine();
+        for (int i = 0; i < 10_000; i++) {
+            coordinateLine.appendCoordinate(i, -i);
+            if (coordinateLine.getNumCoordinates() > 100) {
+                coordinateLine.trimHead(1);
+            }
+        }
+
+        assertThat(coordinateLine.getNumCoordinates()).isEqualTo(100);
+        assertThat(coordinateLine.getLatitude(0)).isEqualTo(9_900.0);
+        assertThat(coordinateLine.getLongitude(99)).isEqualTo(-9_999.0);
+    }
+
+    @Test
+    public void invalidTrimIsRejected() {
+        final CoordinateLine coordinateLine = new CoordinateLine(coordKarlsruheHarbour);
+        assertThatThrownBy(() -> coordinateLine.trimHead(2)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> coordinateLine.trimHead(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void listenersGetOnlyTheChanges() {
+        final CoordinateLine coordinateLine = new CoordinateLine(new double[]{1.0, 2.0});
+        final List<Double> appended = new ArrayList<>();
+        final List<Integer> trimmed = new ArrayList<>();
+        final CoordinateLine.CoordinatesListener listener = new CoordinateLine.CoordinatesListener() {
+            @Override
+            public void coordinatesAppended(CoordinateLine line, double[] latLon, int from, int numValues) {
+                for (int i = from; i < from + numValues; i++) {
+                    appended.add(latLon[i]);
+                }
+            }
+
+            @Override
+            public void headTrimmed(CoordinateLine line, int count) {
+                trimmed.add(count);
+            }
+        };
+        coordinateLine.addCoordinatesListener(listener);
+
+        coordinateLine.appendCoordinates(3.0, 4.0, 5.0, 6.0).trimHead(2);
+        coordinateLine.removeCoordinatesListener(listener);
+        coordinateLine.appendCoordinate(7.0, 8.0);
+
+        assertThat(appended).containsExactly(3.0, 4.0, 5.0, 6.0);
+        assertThat(trimmed).containsExactly(2);
+    }
 }
@@ -67,4 +67,19 @@ public class CoordinateTest {
         assertThat(176.5).isCloseTo(new Coordinate(10.0, -183.5).normalize().getLongitude(), offset(0.01));
         assertThat(137.5).isCloseTo(new Coordinate(10.0, -222.5).normalize().getLongitude(), offset(0.01));
     }
+
+    @Test
+    public void primitiveFactoryAndAccessors() {
+        final Coordinate coordinate = Coordinate.of(12.345, 67.89);
+        assertThat(coordinate.latitude()).isEqualTo(12.345);
+        assertThat(coordinate.longitude()).isEqualTo(67.89);
+        assertThat(coordinate).isEqualTo(new Coordinate(12.345, 67.89));
+        assertThat(coordinate.hashCode()).isEqualTo(new Coordinate(12.345, 67.89).hashCode());
+    }
+
+    @Test
+    public void equalsHasDoubleSemantics() {
+        assertThat(Coordinate.of(Double.NaN, 1.0)).isEqualTo(Coordinate.of(Double.NaN, 1.0));
+        assertThat(Coordinate.of(0.0, 1.0)).isNotEqualTo(Coordinate.of(-0.0, 1.0));
+    }
 }
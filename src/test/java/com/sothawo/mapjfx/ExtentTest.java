@@ -113,4 +113,11 @@ public class ExtentTest implements TestBase {
             Extent.forCoordinates((Collection<Coordinate>) null);
         }).isInstanceOf(NullPointerException.class);
     }
+
+    @Test
+    public void createForBoundsInAnyOrder() {
+        Extent extent = Extent.forBounds(49.1, 8.5, 48.9, 8.3);
+        assertThat(extent.getMin()).isEqualTo(Coordinate.of(48.9, 8.3));
+        assertThat(extent.getMax()).isEqualTo(Coordinate.of(49.1, 8.5));
+    }
 }
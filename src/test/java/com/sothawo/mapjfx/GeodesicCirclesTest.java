@@ -0,0 +1,84 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class GeodesicCirclesTest implements TestBase {
+
+    private static double distance(final double lat1, final double lon1, final double lat2, final double lon2) {
+        final double dLat = Math.toRadians(lat2 - lat1);
+        final double dLon = Math.toRadians(lon2 - lon1);
+        final double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * GeodesicCircles.EARTH_RADIUS * Math.asin(Math.sqrt(a));
+    }
+
+    @Test
+    public void verticesHaveTheRadiusAsDistance() {
+        final double[] vertices = GeodesicCircles.circle(coordKarlsruheCastle, 50_000.0, 10.0);
+
+        assertThat(vertices.length / 2).isEqualTo(GeodesicCircles.numVertices(50_000.0, 10.0));
+        for (int i = 0; i < vertices.length; i += 2) {
+            assertThat(distance(coordKarlsruheCastle.latitude(), coordKarlsruheCastle.longitude(), vertices[i],
+                vertices[i + 1])).isCloseTo(50_000.0, within(0.01));
+        }
+        // the first vertex is north of the center
+        assertThat(vertices[1]).isCloseTo(coordKarlsruheCastle.longitude(), within(1e-9));
+        assertThat(vertices[0]).isGreaterThan(coordKarlsruheCastle.latitude());
+    }
+
+    @Test
+    public void numberOfVerticesAdaptsToTheTolerance() {
+        assertThat(GeodesicCircles.numVertices(10.0, 1.0)).isEqualTo(GeodesicCircles.MIN_VERTICES);
+        assertThat(GeodesicCircles.numVertices(10_000.0, 1.0)).isEqualTo(223);
+        assertThat(GeodesicCircles.numVertices(10_000.0, 10.0)).isEqualTo(71);
+        assertThat(GeodesicCircles.numVertices(1e7, 0.01)).isEqualTo(GeodesicCircles.MAX_VERTICES);
+    }
+
+    @Test
+    public void circlesAreCached() {
+        final double[] first = GeodesicCircles.cachedCircle(coordKarlsruheHarbour, 1234.0, 1.0);
+
+        assertThat(GeodesicCircles.cachedCircle(Coordinate.of(coordKarlsruheHarbour.latitude(),
+            coordKarlsruheHarbour.longitude()), 1234.0, 1.0)).isSameAs(first);
+        assertThat(GeodesicCircles.cachedCircle(coordKarlsruheHarbour, 1234.0, 2.0)).isNotSameAs(first);
+        assertThat(GeodesicCircles.circle(coordKarlsruheHarbour, 1234.0, 1.0)).isNotSameAs(first).isEqualTo(first);
+    }
+
+    @Test
+    public void circleLineIsClosed() {
+        final CoordinateLine coordinateLine = GeodesicCircles.circleLine(coordKarlsruheStation, 500.0, 1.0);
+
+        assertThat(coordinateLine.isClosed()).isTrue();
+        assertThat(coordinateLine.getNumCoordinates()).isEqualTo(GeodesicCircles.numVertices(500.0, 1.0));
+    }
+
+    @Test
+    public void invalidArgumentsAreRejected() {
+        assertThatThrownBy(() -> GeodesicCircles.circle(coordKarlsruheStation, -1.0, 1.0))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> GeodesicCircles.circle(coordKarlsruheStation, 1.0, 0.0))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MapCircle(coordKarlsruheStation, 1.0).setTolerance(-1.0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Simple benchmark for a heatmap with a million points, run with the main method. Measures the ingest rate of appended
+ * points, the time to aggregate the points for a map frame at different zoom levels and the time of the refresh that
+ * runs every second for a layer with a time window. Aggregation and encoding run in a worker thread, only the call
+ * passing the encoded cells to the map runs on the JavaFX thread.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com)
+ */
+public class HeatmapLayerBenchmark {
+
+    private static final int NUM_POINTS = 1_000_000;
+    private static final int CHUNK_SIZE = 1_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        final Random random = new Random(42);
+        final double[] chunk = new double[CHUNK_SIZE * 3];
+        for (int round = 0; round < ROUNDS; round++) {
+            final HeatmapLayer heatmapLayer = new HeatmapLayer();
+            final long start = System.nanoTime();
+            for (int i = 0; i < NUM_POINTS / CHUNK_SIZE; i++) {
+                for (int j = 0; j < chunk.length; j += 3) {
+                    // points around some hot spots in Germany
+                    final int spot = random.nextInt(10);
+                    chunk[j] = 48.0 + spot * 0.3 + random.nextGaussian() * 0.05;
+                    chunk[j + 1] = 7.0 + spot * 0.5 + random.nextGaussian() * 0.05;
+                    chunk[j + 2] = random.nextDouble();
+                }
+                heatmapLayer.appendPoints(chunk);
+            }
+            final long ingestNanos = System.nanoTime() - start;
+            System.out.printf("ingest: %6.1f Mpoints/s", NUM_POINTS / (ingestNanos / 1e3));
+            for (final int zoom : new int[]{5, 10, 14}) {
+                final long aggregateStart = System.nanoTime();
+                // at high zoom levels only the visible part is aggregated
+                final double[] cells = heatmapLayer.aggregate(zoom,
+                    zoom < 14 ? null : Extent.forBounds(49.0, 8.0, 49.3, 8.6));
+                System.out.printf(", zoom %2d: %6.1f ms for %6d cells", zoom,
+                    (System.nanoTime() - aggregateStart) / 1e6, cells.length / 3);
+            }
+            heatmapLayer.setTimeWindow(Duration.ofMinutes(10));
+            final long refreshStart = System.nanoTime();
+            final String data = HeatmapLayer.toData(heatmapLayer.aggregate(10, null));
+            System.out.printf(", time window refresh: %6.1f ms off the FX thread for %7d characters",
+                (System.nanoTime() - refreshStart) / 1e6, data.length());
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class HeatmapLayerTest {
+
+    @Test
+    public void pointsInOneCellAreSummed() {
+        final HeatmapLayer heatmapLayer = new HeatmapLayer()
+            .appendPoints(new double[]{49.0, 8.4, 1.0, 49.0000001, 8.4000001, 2.0, -33.9, 151.2, 1.5});
+
+        final double[] cells = heatmapLayer.aggregate(10, null);
+
+        assertThat(heatmapLayer.getNumPoints()).isEqualTo(3);
+        assertThat(cells).hasSize(6);
+        for (int i = 0; i < cells.length; i += 3) {
+            if (cells[i] > 0) {
+                assertThat(cells[i]).isCloseTo(49.0, within(0.01));
+                assertThat(cells[i + 1]).isCloseTo(8.4, within(0.01));
+                assertThat(cells[i + 2]).isEqualTo(1.0);
+            } else {
+                assertThat(cells[i]).isCloseTo(-33.9, within(0.01));
+                assertThat(cells[i + 2]).isEqualTo(0.5);
+            }
+        }
+    }
+
+    @Test
+    public void cellsGetSmallerWithHigherZoom() {
+        final HeatmapLayer heatmapLayer = new HeatmapLayer();
+        for (int i = 0; i < 100; i++) {
+            heatmapLayer.appendPoint(49.0 + i * 0.001, 8.4, 1.0);
+        }
+
+        assertThat(heatmapLayer.aggregate(3, null)).hasSize(3);
+        assertThat(heatmapLayer.aggregate(16, null)).hasSize(300);
+    }
+
+    @Test
+    public void onlyPointsAroundTheExtentAreUsed() {
+        final HeatmapLayer heatmapLayer = new HeatmapLayer()
+            .appendPoints(new double[]{49.0, 8.45, 1.0, 49.0, 8.6, 1.0, 49.0, 9.0, 1.0});
+
+        // extent enlarged by half its width on each side is 8.4 .. 8.8
+        assertThat(heatmapLayer.aggregate(10, Extent.forBounds(48.9, 8.5, 49.1, 8.7))).hasSize(6);
+    }
+
+    @Test
+    public void pointsDecayAndExpireInTheTimeWindow() {
+        final AtomicLong now = new AtomicLong(1_000_000L);
+        final HeatmapLayer heatmapLayer = new HeatmapLayer();
+        heatmapLayer.setClock(now::get);
+        heatmapLayer.setTimeWindow(Duration.ofSeconds(10));
+
+        heatmapLayer.appendPoint(10.0, 10.0, 1.0);
+        now.addAndGet(5_000);
+        heatmapLayer.appendPoint(-10.0, -10.0, 1.0);
+
+        final double[] cells = heatmapLayer.aggregate(5, null);
+        assertThat(cells).hasSize(6);
+        for (int i = 0; i < cells.length; i += 3) {
+            // the older point has half its weight left
+            assertThat(cells[i + 2]).isEqualTo(cells[i] > 0 ? 0.5 : 1.0);
+        }
+
+        now.addAndGet(5_000);
+        assertThat(heatmapLayer.getNumPoints()).isEqualTo(1);
+        now.addAndGet(5_000);
+        assertThat(heatmapLayer.getNumPoints()).isEqualTo(0);
+        assertThat(heatmapLayer.aggregate(5, null)).isEmpty();
+    }
+
+    @Test
+    public void storageIsReusedForASlidingWindow() {
+        final AtomicLong now = new AtomicLong();
+        final HeatmapLayer heatmapLayer = new HeatmapLayer();
+        heatmapLayer.setClock(now::get);
+        heatmapLayer.setTimeWindow(Duration.ofMillis(100));
+        for (int i = 0; i < 100_000; i++) {
+            now.incrementAndGet();
+            heatmapLayer.appendPoint(i % 80, i % 170, 1.0);
+        }
+
+        assertThat(heatmapLayer.getNumPoints()).isEqualTo(100);
+    }
+
+    @Test
+    public void listenersAreInformed() {
+        final AtomicInteger count = new AtomicInteger();
+        final HeatmapLayer heatmapLayer = new HeatmapLayer();
+        final Runnable listener = count::incrementAndGet;
+        heatmapLayer.addChangeListener(listener);
+
+        heatmapLayer.appendPoint(1.0, 2.0, 3.0).appendPoints(new double[]{4.0, 5.0, 6.0}).clear();
+        heatmapLayer.removeChangeListener(listener);
+        heatmapLayer.appendPoint(1.0, 2.0, 3.0);
+
+        assertThat(count.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void invalidValuesAreRejected() {
+        assertThatThrownBy(() -> new HeatmapLayer().appendPoints(new double[]{1.0, 2.0}))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HeatmapLayer().setTimeWindow(Duration.ZERO))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HeatmapLayer().setCellSize(0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import java.util.Optional;
+
+/**
+ * Measures the time to get the mapview html for a dashboard with 8 MapViews. The first call assembles the html from
+ * the resources, which is what every MapView.initialize call did before the html was cached.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class MapViewHtmlBenchmark {
+
+    private static final int NUM_MAP_VIEWS = 8;
+
+    public static void main(String[] args) {
+        final long start = System.nanoTime();
+        final int length = MapView.loadMapViewHtml(Optional.empty()).orElseThrow().length();
+        final long assembled = System.nanoTime();
+        for (int i = 1; i < NUM_MAP_VIEWS; i++) {
+            MapView.loadMapViewHtml(Optional.empty());
+        }
+        final long cached = System.nanoTime();
+        System.out.printf("html size %d chars, assembling: %.1f ms, %d cached lookups: %.3f ms%n", length,
+            (assembled - start) / 1e6, NUM_MAP_VIEWS - 1, (cached - assembled) / 1e6);
+    }
+}
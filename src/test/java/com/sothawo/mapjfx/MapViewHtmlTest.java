@@ -0,0 +1,66 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class MapViewHtmlTest {
+
+    @Test
+    public void htmlContainsBaseAndIncludes() {
+        final String html = MapView.loadMapViewHtml(Optional.empty()).orElseThrow();
+
+        assertThat(html).contains("<base href=\"");
+        assertThat(html).contains("JSMapView.prototype.init");
+        assertThat(html).doesNotContain("#mapview.js#");
+    }
+
+    @Test
+    public void optionalModulesAreNotIncluded() {
+        final String html = MapView.loadMapViewHtml(Optional.empty()).orElseThrow();
+
+        assertThat(html).doesNotContain("function MapCircle(");
+        assertThat(html).doesNotContain("function WMSParams(");
+        assertThat(html).doesNotContain("JSMapView.prototype.addHeatmap");
+        assertThat(html).doesNotContain("JSMapView.prototype.addTileOverlay");
+    }
+
+    @Test
+    public void htmlIsAssembledOnce() {
+        final String first = MapView.loadMapViewHtml(Optional.empty()).orElseThrow();
+        final String second = MapView.loadMapViewHtml(Optional.empty()).orElseThrow();
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void customCssIsIncludedInSeparateEntry() {
+        final String html = MapView.loadMapViewHtml(Optional.empty()).orElseThrow();
+        final String withCss = MapView.loadMapViewHtml(
+            Optional.of(MapViewHtmlTest.class.getResource("/custom-test.css"))).orElseThrow();
+
+        assertThat(withCss).isNotSameAs(html);
+        assertThat(withCss).contains(".mapjfx-custom-test");
+        assertThat(html).doesNotContain(".mapjfx-custom-test");
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Measures the time from requesting a map pane until the first frame with the initialized map is rendered, once with
+ * a new MapView and then with MapViews from a warmed up pool. Needs a display.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class MapViewPoolBenchmark extends Application {
+
+    private static final int NUM_PANES = 5;
+
+    private final StackPane root = new StackPane();
+    private MapViewPool pool;
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+    @Override
+    public void start(final Stage primaryStage) {
+        primaryStage.setScene(new Scene(root, 800, 600));
+        primaryStage.show();
+
+        final long start = System.nanoTime();
+        final MapView mapView = new MapView();
+        root.getChildren().setAll(mapView);
+        mapView.initialize(Configuration.builder().build()).thenAccept(initialized -> afterNextFrame(() -> {
+            System.out.printf("without pool: %.1f ms%n", (System.nanoTime() - start) / 1e6);
+            root.getChildren().clear();
+            mapView.close();
+
+            pool = new MapViewPool(2, Configuration.builder().build());
+            waitForPool(() -> showPooled(0));
+        }));
+    }
+
+    /**
+     * runs an action after the next pulse has laid out and rendered the scene.
+     */
+    private void afterNextFrame(final Runnable action) {
+        final Scene scene = root.getScene();
+        final Runnable[] listener = new Runnable[1];
+        listener[0] = () -> Platform.runLater(() -> {
+            // the listener is removed outside of the pulse that calls it
+            if (null != listener[0]) {
+                scene.removePostLayoutPulseListener(listener[0]);
+                listener[0] = null;
+                action.run();
+            }
+        });
+        scene.addPostLayoutPulseListener(listener[0]);
+        Platform.requestNextPulse();
+    }
+
+    private void waitForPool(final Runnable whenFull) {
+        if (pool.getNumIdle() < 2) {
+            final PauseTransition pause = new PauseTransition(Duration.millis(50));
+            pause.setOnFinished(event -> waitForPool(whenFull));
+            pause.play();
+        } else {
+            whenFull.run();
+        }
+    }
+
+    private void showPooled(final int pane) {
+        if (pane == NUM_PANES) {
+            pool.close();
+            Platform.exit();
+            return;
+        }
+        final long start = System.nanoTime();
+        final CompletableFuture<MapView> future = pool.acquire();
+        future.thenAccept(mapView -> {
+            root.getChildren().setAll(mapView);
+            afterNextFrame(() -> {
+                System.out.printf("with pool, pane %d: %.1f ms%n", pane, (System.nanoTime() - start) / 1e6);
+                root.getChildren().clear();
+                pool.release(mapView);
+                waitForPool(() -> showPooled(pane + 1));
+            });
+        });
+    }
+}
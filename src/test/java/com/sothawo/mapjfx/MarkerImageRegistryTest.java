@@ -0,0 +1,90 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class MarkerImageRegistryTest {
+
+    private static URL marker(final Marker.Provided provided) {
+        return Marker.class.getResource("/markers/" + provided.getFilename());
+    }
+
+    @Test
+    public void imageIsConvertedToDataUrl() {
+        final MarkerImageRegistry registry = new MarkerImageRegistry(MarkerImageRegistry.DEFAULT_MAX_BYTES,
+            Runnable::run);
+
+        final String dataUrl = registry.dataUrl(marker(Marker.Provided.BLUE)).join();
+
+        assertThat(dataUrl).startsWith("data:image/png;base64,iVBORw0KGgo");
+        assertThat(registry.getNumCachedImages()).isEqualTo(1);
+        assertThat(registry.getCachedBytes()).isEqualTo(dataUrl.length());
+    }
+
+    @Test
+    public void imageIsLoadedOnce() {
+        final Runnable[] task = new Runnable[1];
+        final MarkerImageRegistry registry = new MarkerImageRegistry(MarkerImageRegistry.DEFAULT_MAX_BYTES,
+            runnable -> {
+                assertThat(task[0]).isNull();
+                task[0] = runnable;
+            });
+
+        final CompletableFuture<String> first = registry.dataUrl(marker(Marker.Provided.RED));
+        final CompletableFuture<String> second = registry.dataUrl(marker(Marker.Provided.RED));
+        task[0].run();
+        final CompletableFuture<String> third = registry.dataUrl(marker(Marker.Provided.RED));
+
+        assertThat(second).isSameAs(first);
+        assertThat(third.join()).isSameAs(first.join());
+    }
+
+    @Test
+    public void cacheIsBoundedBySize() {
+        final MarkerImageRegistry probe = new MarkerImageRegistry(MarkerImageRegistry.DEFAULT_MAX_BYTES,
+            Runnable::run);
+        final long size = probe.dataUrl(marker(Marker.Provided.BLUE)).join().length();
+        final MarkerImageRegistry registry = new MarkerImageRegistry(size + 100, Runnable::run);
+
+        registry.dataUrl(marker(Marker.Provided.BLUE)).join();
+        registry.dataUrl(marker(Marker.Provided.GREEN)).join();
+
+        assertThat(registry.getNumCachedImages()).isEqualTo(1);
+        assertThat(registry.getCachedBytes()).isLessThanOrEqualTo(size + 100);
+    }
+
+    @Test
+    public void missingImageCompletesExceptionally() throws Exception {
+        final MarkerImageRegistry registry = new MarkerImageRegistry(MarkerImageRegistry.DEFAULT_MAX_BYTES,
+            Runnable::run);
+
+        final CompletableFuture<String> future =
+            registry.dataUrl(new URL("file:/this/file/does/not/exist.png"));
+
+        assertThatThrownBy(future::join).isInstanceOf(CompletionException.class);
+        assertThat(registry.getNumCachedImages()).isZero();
+    }
+}
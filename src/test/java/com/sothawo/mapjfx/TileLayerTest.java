@@ -0,0 +1,86 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.skyscreamer.jsonassert.JSONAssert.*;
+
+/**
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class TileLayerTest {
+
+    @Test
+    public void xyzSourceJsonContainsTheParams() throws JSONException {
+        final TileLayer tileLayer = TileLayer.xyz(new XYZParam().withUrl("https://tiles/{z}/{x}/{y}.png"))
+            .setCacheSize(100);
+
+        assertEquals("{\"type\":\"XYZ\",\"cacheSize\":100,\"options\":{\"url\":\"https://tiles/{z}/{x}/{y}.png\"}}",
+            tileLayer.sourceToJson(), true);
+    }
+
+    @Test
+    public void wmsSourceJsonIsEscaped() throws JSONException {
+        final TileLayer tileLayer = TileLayer.wms(new WMSParam()
+            .setUrl("https://wms/\"weather\"")
+            .addParam("layers", "rain\\radar"));
+
+        assertEquals("{\"type\":\"WMS\",\"cacheSize\":512,\"url\":\"https://wms/\\\"weather\\\"\"," +
+            "\"params\":{\"layers\":\"rain\\\\radar\"}}", tileLayer.sourceToJson(), true);
+    }
+
+    @Test
+    public void optionsJsonContainsTheLayerSettings() throws JSONException {
+        final TileLayer tileLayer = TileLayer.xyz(new XYZParam().withUrl("u"))
+            .setOpacity(0.5)
+            .setZIndex(2)
+            .setZoomRange(4, 12)
+            .setPreload(1);
+
+        assertEquals("{\"opacity\":0.5,\"zIndex\":2,\"minZoom\":4,\"maxZoom\":12,\"preload\":1}",
+            tileLayer.optionsToJson(), true);
+    }
+
+    @Test
+    public void settersInformTheChangeListeners() {
+        final AtomicInteger changes = new AtomicInteger();
+        final TileLayer tileLayer = TileLayer.xyz(new XYZParam().withUrl("u"));
+        tileLayer.addChangeListener(changes::incrementAndGet);
+
+        tileLayer.setOpacity(0.3).setZIndex(1).setZoomRange(0, 10).setPreload(2);
+
+        assertThat(changes.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void invalidValuesAreRejected() {
+        final TileLayer tileLayer = TileLayer.xyz(new XYZParam().withUrl("u"));
+
+        assertThatThrownBy(() -> tileLayer.setOpacity(1.5)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> tileLayer.setZoomRange(10, 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> tileLayer.setZoomRange(Double.NEGATIVE_INFINITY, 10))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> tileLayer.setZoomRange(0, Double.POSITIVE_INFINITY))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> tileLayer.setPreload(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> tileLayer.setCacheSize(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
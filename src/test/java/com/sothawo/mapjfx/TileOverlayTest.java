@@ -0,0 +1,184 @@
+/*
+ Copyright 2015-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class TileOverlayTest {
+
+    private static final String DATA_URL_PREFIX = "data:image/png;base64,";
+
+    @Test
+    public void tileConvertsCoordinatesToPixels() {
+        final TileOverlay.Tile world = new TileOverlay.Tile(0, 0, 0, 256);
+        final TileOverlay.Tile northEast = new TileOverlay.Tile(1, 1, 0, 256);
+
+        assertThat(world.pixelX(0.0)).isCloseTo(128.0, within(1e-9));
+        assertThat(world.pixelY(0.0)).isCloseTo(128.0, within(1e-9));
+        assertThat(world.pixelX(-180.0)).isCloseTo(0.0, within(1e-9));
+        assertThat(northEast.pixelX(90.0)).isCloseTo(128.0, within(1e-9));
+        assertThat(northEast.pixelY(0.0)).isCloseTo(256.0, within(1e-9));
+    }
+
+    @Test
+    public void tileHasWebMercatorExtent() {
+        final Extent extent = new TileOverlay.Tile(1, 1, 0, 256).getExtent();
+
+        assertThat(extent.getMin().getLatitude()).isCloseTo(0.0, within(1e-9));
+        assertThat(extent.getMin().getLongitude()).isCloseTo(0.0, within(1e-9));
+        assertThat(extent.getMax().getLatitude()).isCloseTo(85.0511287, within(1e-6));
+        assertThat(extent.getMax().getLongitude()).isCloseTo(180.0, within(1e-9));
+    }
+
+    @Test
+    public void renderedTileIsPngDataUrl() throws Exception {
+        final TileOverlay tileOverlay = new TileOverlay((tile, graphics) -> {
+            graphics.setColor(Color.RED);
+            graphics.fillRect(0, 0, 10, 10);
+        }).setExecutor(Runnable::run);
+
+        final String dataUrl = tileOverlay.tile(3, 4, 5).get();
+
+        assertThat(dataUrl).startsWith(DATA_URL_PREFIX);
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(
+            Base64.getDecoder().decode(dataUrl.substring(DATA_URL_PREFIX.length()))));
+        assertThat(image.getWidth()).isEqualTo(TileOverlay.DEFAULT_TILE_SIZE);
+        assertThat(image.getRGB(5, 5)).isEqualTo(Color.RED.getRGB());
+        assertThat(image.getRGB(100, 100) >>> 24).isEqualTo(0);
+    }
+
+    @Test
+    public void emptyTileIsNotEncoded() throws Exception {
+        final TileOverlay tileOverlay = new TileOverlay((tile, graphics) -> {
+        }).setExecutor(Runnable::run);
+
+        assertThat(tileOverlay.tile(0, 0, 0).get()).isSameAs(TileOverlay.EMPTY_TILE);
+    }
+
+    @Test
+    public void tilesAreCached() throws Exception {
+        final AtomicInteger renderCount = new AtomicInteger();
+        final TileOverlay tileOverlay = new TileOverlay((tile, graphics) -> renderCount.incrementAndGet())
+            .setExecutor(Runnable::run);
+
+        tileOverlay.tile(1, 0, 0).get();
+        tileOverlay.tile(1, 0, 0).get();
+
+        assertThat(renderCount.get()).isEqualTo(1);
+        assertThat(tileOverlay.getNumCachedTiles()).isEqualTo(1);
+    }
+
+    @Test
+    public void leastRecentlyUsedTileIsEvicted() throws Exception {
+        final AtomicInteger renderCount = new AtomicInteger();
+        final TileOverlay tileOverlay = new TileOverlay((tile, graphics) -> renderCount.incrementAndGet())
+            .setExecutor(Runnable::run)
+            .setMaxCachedTiles(2);
+
+        tileOverlay.tile(1, 0, 0).get();
+        tileOverlay.tile(1, 1, 0).get();
+        tileOverlay.tile(1, 0, 0).get();
+        tileOverlay.tile(1, 0, 1).get();
+        tileOverlay.tile(1, 0, 0).get();
+        assertThat(renderCount.get()).isEqualTo(3);
+
+        tileOverlay.tile(1, 1, 0).get();
+        assertThat(renderCount.get()).isEqualTo(4);
+        assertThat(tileOverlay.getNumCachedTiles()).isEqualTo(2);
+    }
+
+    @Test
+    public void concurrentRequestsShareOneRendering() {
+        final AtomicInteger renderCount = new AtomicInteger();
+        final Runnable[] task = new Runnable[1];
+        final TileOverlay tileOverlay = new TileOverlay((tile, graphics) -> renderCount.incrementAndGet())
+            .setExecutor(runnable -> task[0] = runnable);
+
+        final CompletableFuture<String> first = tileOverlay.tile(2, 1, 1);
+        final CompletableFuture<String> second = tileOverlay.tile(2, 1, 1);
+        task[0].run();
+
+        assertThat(second).isSameAs(first);
+        assertThat(first).isCompleted();
+        assertThat(renderCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void refreshDiscardsCachedTilesAndNotifiesListeners() throws Exception {
+        final AtomicInteger renderCount = new AtomicInteger();
+        final AtomicInteger changeCount = new AtomicInteger();
+        final TileOverlay tileOverlay = new TileOverlay((tile, graphics) -> renderCount.incrementAndGet())
+            .setExecutor(Runnable::run);
+        tileOverlay.addChangeListener(changeCount::incrementAndGet);
+        tileOverlay.tile(1, 0, 0).get();
+        final int revision = tileOverlay.getRevision();
+
+        tileOverlay.refresh();
+        tileOverlay.tile(1, 0, 0).get();
+
+        assertThat(tileOverlay.getRevision()).isEqualTo(revision + 1);
+        assertThat(changeCount.get()).isEqualTo(1);
+        assertThat(renderCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void renderingErrorCompletesExceptionally() {
+        final TileOverlay tileOverlay = new TileOverlay((tile, graphics) -> {
+            throw new IllegalStateException("no data");
+        }).setExecutor(Runnable::run);
+
+        assertThat(tileOverlay.tile(0, 0, 0)).isCompletedExceptionally();
+        assertThat(tileOverlay.getNumCachedTiles()).isZero();
+    }
+
+    @Test
+    public void rejectedRenderingCompletesExceptionallyAndIsRetried() {
+        final AtomicInteger renderCount = new AtomicInteger();
+        final TileOverlay tileOverlay = new TileOverlay((tile, graphics) -> renderCount.incrementAndGet())
+            .setExecutor(runnable -> {
+                throw new RejectedExecutionException("shut down");
+            });
+
+        assertThat(tileOverlay.tile(0, 0, 0)).isCompletedExceptionally();
+
+        tileOverlay.setExecutor(Runnable::run);
+        assertThat(tileOverlay.tile(0, 0, 0)).isCompleted();
+        assertThat(renderCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void renderingErrorThatIsNoExceptionCompletesExceptionally() {
+        final TileOverlay tileOverlay = new TileOverlay((tile, graphics) -> {
+            throw new AssertionError("no data");
+        }).setExecutor(Runnable::run);
+
+        assertThat(tileOverlay.tile(0, 0, 0)).isCompletedExceptionally();
+    }
+}
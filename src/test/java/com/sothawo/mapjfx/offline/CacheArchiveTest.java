@@ -0,0 +1,162 @@
+/*
+ Copyright 2016-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx.offline;
+
+import com.sothawo.mapjfx.Coordinate;
+import com.sothawo.mapjfx.Extent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class CacheArchiveTest {
+
+    private static final Path sourceDirectory = FileSystems.getDefault().getPath("./target/archive-source");
+    private static final Path targetDirectory = FileSystems.getDefault().getPath("./target/archive-target");
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Files.createDirectories(sourceDirectory);
+        Files.createDirectories(targetDirectory);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        OfflineCache.clearDirectory(sourceDirectory);
+        OfflineCache.clearDirectory(targetDirectory);
+    }
+
+    private static String writeEntry(final Path directory, final String url, final String content) throws Exception {
+        final String name = URLEncoder.encode(url, StandardCharsets.UTF_8);
+        Files.writeString(directory.resolve(name), content);
+        Files.writeString(directory.resolve(name + CacheIndex.DATA_INFO_SUFFIX), "info");
+        return name;
+    }
+
+    @Test
+    public void exportAndImport() throws Exception {
+        final String name1 = writeEntry(sourceDirectory, "https://x.tile.openstreetmap.org/1/0/0.png", "tile1");
+        final String name2 = writeEntry(sourceDirectory, "https://x.tile.openstreetmap.org/1/1/0.png", "tile2");
+        Files.writeString(sourceDirectory.resolve("incomplete"), "not exported");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(CacheArchive.export(sourceDirectory, out, url -> true)).isEqualTo(2);
+
+        final int numImported = CacheArchive.importArchive(targetDirectory, new ByteArrayInputStream(out.toByteArray()),
+            null);
+
+        assertThat(numImported).isEqualTo(4);
+        assertThat(Files.readString(targetDirectory.resolve(name1))).isEqualTo("tile1");
+        assertThat(Files.readString(targetDirectory.resolve(name2))).isEqualTo("tile2");
+        assertThat(Files.exists(targetDirectory.resolve(name2 + CacheIndex.DATA_INFO_SUFFIX))).isTrue();
+        assertThat(Files.exists(targetDirectory.resolve("incomplete"))).isFalse();
+    }
+
+    @Test
+    public void importSkipsExistingEntries() throws Exception {
+        writeEntry(sourceDirectory, "https://x.tile.openstreetmap.org/1/0/0.png", "new");
+        final String name = writeEntry(targetDirectory, "https://x.tile.openstreetmap.org/1/0/0.png", "old");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CacheArchive.export(sourceDirectory, out, url -> true);
+        final int numImported = CacheArchive.importArchive(targetDirectory, new ByteArrayInputStream(out.toByteArray()),
+            null);
+
+        assertThat(numImported).isZero();
+        assertThat(Files.readString(targetDirectory.resolve(name))).isEqualTo("old");
+    }
+
+    @Test
+    public void importUsesAndUpdatesTheReadyIndex() throws Exception {
+        final String existing = writeEntry(sourceDirectory, "https://x.tile.openstreetmap.org/1/0/0.png", "new");
+        final String imported = writeEntry(sourceDirectory, "https://x.tile.openstreetmap.org/1/1/0.png", "tile");
+        writeEntry(targetDirectory, "https://x.tile.openstreetmap.org/1/0/0.png", "old");
+        final CacheIndex index = new CacheIndex(targetDirectory);
+        index.build();
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CacheArchive.export(sourceDirectory, out, url -> true);
+        final int numImported = CacheArchive.importArchive(targetDirectory, new ByteArrayInputStream(out.toByteArray()),
+            index);
+
+        assertThat(numImported).isEqualTo(2);
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.contains(targetDirectory.resolve(imported))).isTrue();
+        assertThat(Files.readString(targetDirectory.resolve(existing))).isEqualTo("old");
+    }
+
+    @Test
+    public void importSkipsEntriesWithExistingDataFileWithoutDataInfo() throws Exception {
+        final String name = writeEntry(sourceDirectory, "https://x.tile.openstreetmap.org/1/0/0.png", "new");
+        Files.writeString(targetDirectory.resolve(name), "unrelated");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CacheArchive.export(sourceDirectory, out, url -> true);
+        final int numImported = CacheArchive.importArchive(targetDirectory, new ByteArrayInputStream(out.toByteArray()),
+            null);
+
+        assertThat(numImported).isZero();
+        assertThat(Files.readString(targetDirectory.resolve(name))).isEqualTo("unrelated");
+        assertThat(Files.exists(targetDirectory.resolve(name + CacheIndex.DATA_INFO_SUFFIX))).isFalse();
+    }
+
+    @Test
+    public void importOfTruncatedArchiveLeavesNoPartialEntries() throws Exception {
+        final String name = writeEntry(sourceDirectory, "https://x.tile.openstreetmap.org/1/0/0.png", "tile");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(out)) {
+            zos.putNextEntry(new ZipEntry(name));
+            zos.write("tile".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+        final int numImported = CacheArchive.importArchive(targetDirectory, new ByteArrayInputStream(out.toByteArray()),
+            null);
+
+        assertThat(numImported).isZero();
+        try (Stream<Path> files = Files.list(targetDirectory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    public void tileFilter() {
+        final Extent extent = Extent.forCoordinates(new Coordinate(53.0, 9.0), new Coordinate(54.0, 10.0));
+        final Predicate<String> filter = CacheArchive.tileFilter(extent, 8, 10);
+
+        // Hamburg is in tile 10/540/329
+        assertThat(filter.test("https://x.tile.openstreetmap.org/10/540/329.png")).isTrue();
+        assertThat(filter.test("https://x.tile.openstreetmap.org/10/0/0.png")).isFalse();
+        assertThat(filter.test("https://x.tile.openstreetmap.org/11/1080/658.png")).isFalse();
+        assertThat(filter.test("https://www.sothawo.com/")).isFalse();
+    }
+}
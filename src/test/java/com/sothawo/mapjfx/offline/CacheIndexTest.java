@@ -0,0 +1,92 @@
+/*
+ Copyright 2016-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx.offline;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class CacheIndexTest {
+
+    private static final Path cacheDirectory = FileSystems.getDefault().getPath("./target/cacheindex");
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Files.createDirectories(cacheDirectory);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        OfflineCache.clearDirectory(cacheDirectory);
+    }
+
+    @Test
+    public void indexContainsOnlyEntriesWithDataInfo() throws Exception {
+        Files.writeString(cacheDirectory.resolve("complete"), "42");
+        Files.writeString(cacheDirectory.resolve("complete" + CacheIndex.DATA_INFO_SUFFIX), "42");
+        Files.writeString(cacheDirectory.resolve("incomplete"), "42");
+
+        final CacheIndex index = new CacheIndex(cacheDirectory);
+        assertThat(index.isReady()).isFalse();
+        index.build();
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.contains(cacheDirectory.resolve("complete"))).isTrue();
+        assertThat(index.contains(cacheDirectory.resolve("incomplete"))).isFalse();
+    }
+
+    @Test
+    public void indexSkipsEmptyDataFiles() throws Exception {
+        Files.writeString(cacheDirectory.resolve("empty"), "");
+        Files.writeString(cacheDirectory.resolve("empty" + CacheIndex.DATA_INFO_SUFFIX), "42");
+
+        final CacheIndex index = new CacheIndex(cacheDirectory);
+        index.build();
+
+        assertThat(index.contains(cacheDirectory.resolve("empty"))).isFalse();
+    }
+
+    @Test
+    public void indexIsUpdatedIncrementally() {
+        final CacheIndex index = new CacheIndex(cacheDirectory);
+        index.build();
+        final Path cacheFile = cacheDirectory.resolve("file");
+
+        index.add(cacheFile);
+        assertThat(index.contains(cacheFile)).isTrue();
+
+        index.remove(cacheFile);
+        assertThat(index.contains(cacheFile)).isFalse();
+    }
+
+    @Test
+    public void indexOfMissingDirectoryIsNotReady() {
+        final CacheIndex index = new CacheIndex(cacheDirectory.resolve("missing"));
+        index.build();
+
+        assertThat(index.isReady()).isFalse();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ Copyright 2016-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx.offline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class OfflineCacheStatisticsTest {
+
+    private final OfflineCacheStatistics statistics = new OfflineCacheStatistics();
+
+    @Test
+    public void countsHitsMissesAndBypasses() {
+        statistics.recordLookup(true, 0);
+        statistics.recordLookup(true, 0);
+        statistics.recordLookup(true, 0);
+        statistics.recordLookup(false, 0);
+        statistics.recordBypass();
+
+        assertThat(statistics.getHits()).isEqualTo(3);
+        assertThat(statistics.getMisses()).isEqualTo(1);
+        assertThat(statistics.getBypasses()).isEqualTo(1);
+        assertThat(statistics.getHitRatio()).isEqualTo(0.75);
+    }
+
+    @Test
+    public void hitRatioWithoutRequestsIsZero() {
+        assertThat(statistics.getHitRatio()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void countsBytesAndTimes() {
+        statistics.recordCacheRead(100);
+        statistics.recordNetworkRead(200, TimeUnit.MILLISECONDS.toNanos(3));
+
+        assertThat(statistics.getBytesFromCache()).isEqualTo(100);
+        assertThat(statistics.getBytesFromNetwork()).isEqualTo(200);
+        assertThat(statistics.getNetworkMicros()).isEqualTo(3000);
+        assertThat(statistics.getNetworkHistogram()[OfflineCacheStatistics.bucketFor(3000)]).isEqualTo(1);
+    }
+
+    @Test
+    public void histogramBuckets() {
+        assertThat(OfflineCacheStatistics.bucketFor(0)).isEqualTo(0);
+        assertThat(OfflineCacheStatistics.bucketFor(1)).isEqualTo(1);
+        assertThat(OfflineCacheStatistics.bucketFor(3)).isEqualTo(2);
+        assertThat(OfflineCacheStatistics.bucketFor(4)).isEqualTo(3);
+        assertThat(OfflineCacheStatistics.bucketFor(Long.MAX_VALUE))
+            .isEqualTo(OfflineCacheStatistics.HISTOGRAM_BUCKETS - 1);
+    }
+
+    @Test
+    public void reset() {
+        statistics.recordLookup(true, 1000);
+        statistics.recordCacheRead(42);
+
+        statistics.reset();
+
+        assertThat(statistics.getHits()).isZero();
+        assertThat(statistics.getBytesFromCache()).isZero();
+        assertThat(statistics.getCacheLookupHistogram()).containsOnly(0L);
+    }
+}
@@ -102,6 +102,97 @@ public class OfflineCacheTest {
         assertThat(filenamePath).isEqualTo(cache.filenameForURL(url));
     }
 
+    @Test
+    public void instancesHaveSeparateConfiguration() throws Exception {
+        final OfflineCache other = new OfflineCache("other");
+        other.setCacheFilters(Arrays.asList("https?://www\\.sothawo\\.com.*"));
+
+        assertThat(other.getName()).isEqualTo("other");
+        assertThat(other.getCacheDirectory()).isNull();
+        assertThat(other.urlShouldBeCached(new URL("http://www.github.com/"))).isFalse();
+        assertThat(cache.urlShouldBeCached(new URL("http://www.github.com/"))).isTrue();
+    }
+
+    @Test
+    public void urlsAreRoutedToTheLastActivatedMatchingCache() throws Exception {
+        final Path otherDirectory = cacheDirectory.resolve("other");
+        Files.createDirectories(otherDirectory);
+        final OfflineCache catchAll = new OfflineCache("catchAll");
+        catchAll.setCacheDirectory(otherDirectory);
+        final OfflineCache sothawo = new OfflineCache("sothawo");
+        sothawo.setCacheDirectory(otherDirectory);
+        sothawo.setCacheFilters(Arrays.asList("https?://www\\.sothawo\\.com.*"));
+
+        try {
+            catchAll.setActive(true);
+            sothawo.setActive(true);
+
+            assertThat(OfflineCache.cacheForURL(new URL("http://www.sothawo.com/"))).isSameAs(sothawo);
+            assertThat(OfflineCache.cacheForURL(new URL("http://www.github.com/"))).isSameAs(catchAll);
+            assertThat(sothawo.getStatistics().getBypasses()).isZero();
+            assertThat(catchAll.getStatistics().getBypasses()).isZero();
+
+            catchAll.setActive(false);
+            assertThat(OfflineCache.cacheForURL(new URL("http://www.github.com/"))).isNull();
+        } finally {
+            sothawo.setActive(false);
+            catchAll.setActive(false);
+        }
+    }
+
+    @Test
+    public void cachesWithFiltersHavePrecedenceOverLaterActivatedCachesWithoutFilters() throws Exception {
+        final Path otherDirectory = cacheDirectory.resolve("other");
+        Files.createDirectories(otherDirectory);
+        final OfflineCache sothawo = new OfflineCache("sothawo");
+        sothawo.setCacheDirectory(otherDirectory);
+        sothawo.setCacheFilters(Arrays.asList("https?://www\\.sothawo\\.com.*"));
+        final OfflineCache catchAll = new OfflineCache("catchAll");
+        catchAll.setCacheDirectory(otherDirectory);
+
+        try {
+            sothawo.setActive(true);
+            catchAll.setActive(true);
+
+            assertThat(OfflineCache.cacheForURL(new URL("http://www.sothawo.com/"))).isSameAs(sothawo);
+            assertThat(OfflineCache.cacheForURL(new URL("http://www.github.com/"))).isSameAs(catchAll);
+        } finally {
+            catchAll.setActive(false);
+            sothawo.setActive(false);
+        }
+    }
+
+    @Test
+    public void bypassIsCountedOnTheDefaultCacheWhenNoCacheAcceptsTheUrl() throws Exception {
+        cache.setCacheFilters(Arrays.asList("https?://www\\.sothawo\\.com.*"));
+        cache.getStatistics().reset();
+        try {
+            cache.setActive(true);
+
+            assertThat(OfflineCache.cacheForURL(new URL("http://www.sothawo.com/"))).isSameAs(cache);
+            assertThat(OfflineCache.cacheForURL(new URL("http://www.github.com/"))).isNull();
+
+            assertThat(cache.getStatistics().getBypasses()).isEqualTo(1);
+        } finally {
+            cache.setActive(false);
+        }
+    }
+
+    @Test
+    public void missingOrEmptyDataFilesAreInvalidated() throws Exception {
+        final Path missing = cacheDirectory.resolve("missing");
+        final Path empty = cacheDirectory.resolve("empty");
+        Files.writeString(empty, "");
+        for (final Path cacheFile : Arrays.asList(missing, empty)) {
+            cache.saveCachedDataInfo(cacheFile, new CachedDataInfo());
+            assertThat(Files.exists(Path.of(cacheFile + CacheIndex.DATA_INFO_SUFFIX))).isTrue();
+
+            assertThat(cache.openCacheFile(cacheFile)).isNull();
+
+            assertThat(Files.exists(Path.of(cacheFile + CacheIndex.DATA_INFO_SUFFIX))).isFalse();
+        }
+    }
+
     @Test
     public void clearCache() throws Exception {
         for (int i = 1; i < 3; i++) {
@@ -0,0 +1,67 @@
+/*
+ Copyright 2016-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx.offline;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Simple benchmark for filling the cache with tile sized files, run with the main method. Compares the write-through
+ * and the write-behind mode of {@link WriteCacheFileInputStream}.
+ *
+ * @author P.J. Meisch (pj.meisch@sothawo.com)
+ */
+public class WriteCacheFileInputStreamBenchmark {
+
+    private static final int TILE_SIZE = 20 * 1024;
+    private static final int NUM_TILES = 5000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        final byte[] tile = new byte[TILE_SIZE];
+        new Random(42).nextBytes(tile);
+        final Path directory = Files.createTempDirectory("mapjfx-benchmark");
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                for (final boolean writeBehind : new boolean[]{false, true}) {
+                    final long start = System.nanoTime();
+                    WriteCacheFileInputStream last = null;
+                    for (int i = 0; i < NUM_TILES; i++) {
+                        final WriteCacheFileInputStream wis = new WriteCacheFileInputStream(
+                            new ByteArrayInputStream(tile), directory.resolve("tile_" + i), writeBehind);
+                        final byte[] readBuffer = new byte[4096];
+                        while (wis.read(readBuffer, 0, readBuffer.length) >= 0) {
+                            // NOOP
+                        }
+                        wis.close();
+                        last = wis;
+                    }
+                    final long readerNanos = System.nanoTime() - start;
+                    last.awaitPendingWrites();
+                    final long totalNanos = System.nanoTime() - start;
+                    final double megabytes = (double) NUM_TILES * TILE_SIZE / (1024 * 1024);
+                    System.out.printf("writeBehind=%-5s reader: %8.1f MB/s, total: %8.1f MB/s%n", writeBehind,
+                        megabytes / (readerNanos / 1e9), megabytes / (totalNanos / 1e9));
+                }
+            }
+        } finally {
+            OfflineCache.clearDirectory(directory);
+            Files.deleteIfExists(directory);
+        }
+    }
+}
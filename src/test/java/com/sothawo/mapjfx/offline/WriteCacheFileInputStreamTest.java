@@ -0,0 +1,74 @@
+/*
+ Copyright 2016-2021 Peter-Josef Meisch (pj.meisch@sothawo.com)
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+*/
+package com.sothawo.mapjfx.offline;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * @author P.J. Meisch (pj.meisch@sothawo.com).
+ */
+public class WriteCacheFileInputStreamTest {
+
+    private static final Path cacheDirectory = FileSystems.getDefault().getPath("./target/writecache");
+
+    private final byte[] data = new byte[3 * WriteCacheFileInputStream.BUFFER_SIZE + 17];
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Files.createDirectories(cacheDirectory);
+        new Random(42).nextBytes(data);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        OfflineCache.clearDirectory(cacheDirectory);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void allReadMethodsWriteToCacheFile(final boolean writeBehind) throws Exception {
+        final Path cacheFile = cacheDirectory.resolve("file");
+        final AtomicBoolean notified = new AtomicBoolean(false);
+        final WriteCacheFileInputStream wis =
+            new WriteCacheFileInputStream(new ByteArrayInputStream(data), cacheFile, writeBehind);
+        wis.onInputStreamClose(() -> notified.set(true));
+
+        final byte[] readBuffer = new byte[1000];
+        assertThat(wis.read()).isEqualTo(data[0] & 0xff);
+        assertThat(wis.skip(10)).isEqualTo(10);
+        while (wis.read(readBuffer, 0, readBuffer.length) >= 0) {
+            // NOOP
+        }
+        wis.close();
+        wis.awaitPendingWrites();
+
+        assertThat(notified).isTrue();
+        assertThat(wis.getNumBytesWritten()).isEqualTo(data.length);
+        assertThat(Files.readAllBytes(cacheFile)).isEqualTo(data);
+    }
+}